@@ -0,0 +1,86 @@
+package com.alecor.batch.benchmark;
+
+
+import com.alecor.batch.BatchProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author yuan_kf
+ * @ClassName AddThroughputBenchmark
+ * @date 2026/10/19 02:10
+ * @Description add() 吞吐量, 按生产线程数(1/4/16/64)、批次大小及分段数组合
+ *
+ * 处理器不做任何处理, 批次在封存它的生产线程上执行, 测量的是写入、封存与分发的开销
+ *
+ * @Version V1.0
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AddThroughputBenchmark {
+
+    private static final Integer VALUE = 42;
+
+    @Param({"100", "1000"})
+    int batchSize;
+
+    @Param({"1", "16"})
+    int stripes;
+
+    private BatchProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // 并发许可足够大, 避免生产线程在分发上串行
+        this.processor = BatchProcessor.builder(Sinks.noop()).setBatchSize(this.batchSize).setStripes(this.stripes)
+                .setConcurrentRequests(64).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        this.processor.awaitClose(10L, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void producers01() {
+        this.processor.add(VALUE);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void producers04() {
+        this.processor.add(VALUE);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void producers16() {
+        this.processor.add(VALUE);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public void producers64() {
+        this.processor.add(VALUE);
+    }
+}
@@ -0,0 +1,71 @@
+package com.alecor.batch.benchmark;
+
+
+import com.alecor.batch.BatchProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author yuan_kf
+ * @ClassName AllocationBenchmark
+ * @date 2026/10/19 02:10
+ * @Description 每条数据的分配量: 装箱 add() 与原始类型 addInt() 对比, 以及是否复用 BatchRequest
+ *
+ * 配合 -prof gc 查看 gc.alloc.rate.norm(每次操作分配的字节数)
+ *
+ * @Version V1.0
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AllocationBenchmark {
+
+    @Param({"boxed", "primitive"})
+    String mode;
+
+    @Param({"false", "true"})
+    boolean recycle;
+
+    private BatchProcessor processor;
+
+    private int value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BatchProcessor.Builder builder = "primitive".equals(this.mode) ? BatchProcessor.builder(Sinks.noopInt()) : BatchProcessor.builder(Sinks.noop());
+        this.processor = builder.setBatchSize(1000).setRecycleRequests(this.recycle).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        this.processor.awaitClose(10L, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void add() {
+        // 超出 Integer 缓存范围, 装箱时每条数据分配一个对象
+        int next = 1024 + (this.value++ & 0xFFFF);
+        if ("primitive".equals(this.mode)) {
+            this.processor.addInt(next);
+        } else {
+            this.processor.add(next);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.alecor.batch.benchmark;
+
+
+import com.alecor.batch.BatchRequest;
+import com.alecor.batch.handle.BatchRequestHandler;
+import com.alecor.batch.thread.BatchBackoffPolicy;
+import com.alecor.batch.thread.BatchScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author yuan_kf
+ * @ClassName DispatchBenchmark
+ * @date 2026/10/19 02:10
+ * @Description BatchRequestHandler 执行一个批次的固定开销, 处理器不做任何处理
+ *
+ * inline: 在调用线程上执行(并发许可、重试包装、监听回调)
+ * executor: 交给分发线程池执行并等待完成, 额外包含排队与线程切换
+ *
+ * @Version V1.0
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DispatchBenchmark {
+
+    @Param({"inline", "executor"})
+    String mode;
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private ScheduledThreadPoolExecutor retryScheduler;
+
+    private ThreadPoolExecutor dispatcher;
+
+    private BatchRequestHandler<Integer> handler;
+
+    private BatchRequest<Integer> request;
+
+    private long executed;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.retryScheduler = BatchScheduler.initScheduler();
+        this.dispatcher = "executor".equals(this.mode) ? BatchScheduler.initDispatcher(1) : null;
+        this.handler = BatchRequestHandler.<Integer>builder(Sinks.NOOP_LISTENER, Sinks.noop(), BatchBackoffPolicy.noBackoff(), Sinks.threadPool(this.retryScheduler))
+                .setDispatchExecutor(this.dispatcher).setOnComplete(request -> this.completed.incrementAndGet()).build();
+        // 同一个批次反复执行, 不计入组装批次的开销
+        this.request = new BatchRequest<>(100);
+        for (int i = 0; i < 100; i++) {
+            this.request.add(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        this.handler.awaitClose(10L, TimeUnit.SECONDS);
+        if (this.dispatcher != null) {
+            BatchScheduler.terminate(this.dispatcher, 10L, TimeUnit.SECONDS);
+        }
+        BatchScheduler.terminate(this.retryScheduler, 10L, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public long execute() {
+        this.handler.execute(this.request);
+        Sinks.await(this.completed, ++this.executed);
+        return this.executed;
+    }
+}
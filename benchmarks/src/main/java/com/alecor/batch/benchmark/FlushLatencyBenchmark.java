@@ -0,0 +1,83 @@
+package com.alecor.batch.benchmark;
+
+
+import com.alecor.batch.BatchProcessor;
+import com.alecor.batch.scheduler.HashedWheelScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author yuan_kf
+ * @ClassName FlushLatencyBenchmark
+ * @date 2026/10/19 02:10
+ * @Description 定时 flush 的延迟: 写入一条数据到该数据被处理的时间
+ *
+ * batchSize 远大于每次写入的条数, 批次只能由定时 flush 封存, 结果约为 flushInterval 加上定时器误差
+ * 对比默认定时线程池与时间轮(1毫秒 tick)
+ *
+ * @Version V1.0
+ */
+
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class FlushLatencyBenchmark {
+
+    @Param({"1", "10"})
+    long flushInterval;
+
+    @Param({"threadPool", "wheel"})
+    String scheduler;
+
+    private final AtomicLong handled = new AtomicLong();
+
+    private HashedWheelScheduler wheel;
+
+    private BatchProcessor processor;
+
+    private long added;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BatchProcessor.Builder builder;
+        if ("wheel".equals(this.scheduler)) {
+            this.wheel = new HashedWheelScheduler(1L, TimeUnit.MILLISECONDS, 512, null);
+            builder = BatchProcessor.builder(Sinks.counting(this.handled), this.wheel);
+        } else {
+            builder = BatchProcessor.builder(Sinks.counting(this.handled));
+        }
+        this.processor = builder.setBatchSize(1000).setFlushInterval(this.flushInterval).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        this.processor.awaitClose(10L, TimeUnit.SECONDS);
+        if (this.wheel != null) {
+            this.wheel.close();
+        }
+    }
+
+    @Benchmark
+    public long addAndAwaitFlush() {
+        this.processor.add(this.added);
+        Sinks.await(this.handled, ++this.added);
+        return this.added;
+    }
+}
@@ -0,0 +1,85 @@
+package com.alecor.batch.benchmark;
+
+
+import com.alecor.batch.BatchCodec;
+import com.alecor.batch.BatchProcessor;
+import com.alecor.batch.journal.BatchJournal;
+import com.alecor.batch.journal.JournalFsyncPolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * @author yuan_kf
+ * @ClassName JournalBenchmark
+ * @date 2026/10/19 02:10
+ * @Description 开启写前日志后 add() 的吞吐量, 按刷盘策略对比
+ *
+ * 结果依赖磁盘, 只适合同一台机器上对比
+ *
+ * @Version V1.0
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class JournalBenchmark {
+
+    private static final byte[] PAYLOAD = new byte[64];
+
+    @Param({"never", "everyItems", "everyMillis"})
+    String fsync;
+
+    private Path directory;
+
+    private BatchProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        JournalFsyncPolicy policy;
+        if ("everyItems".equals(this.fsync)) {
+            policy = JournalFsyncPolicy.everyItems(1000);
+        } else if ("everyMillis".equals(this.fsync)) {
+            policy = JournalFsyncPolicy.everyMillis(10L);
+        } else {
+            policy = JournalFsyncPolicy.never();
+        }
+        this.directory = Files.createTempDirectory("batch-journal-benchmark");
+        BatchJournal journal = new BatchJournal(this.directory, 64 * 1024 * 1024, policy);
+        this.processor = BatchProcessor.builder(Sinks.noop()).setBatchSize(1000).setJournal(journal, BatchCodec.bytes()).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException, IOException {
+        // 关闭处理器时一并关闭日志
+        this.processor.awaitClose(10L, TimeUnit.SECONDS);
+        try (Stream<Path> paths = Files.walk(this.directory)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public void add() {
+        this.processor.add(PAYLOAD);
+    }
+}
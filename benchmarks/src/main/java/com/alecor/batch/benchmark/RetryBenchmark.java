@@ -0,0 +1,128 @@
+package com.alecor.batch.benchmark;
+
+
+import com.alecor.batch.BatchRequest;
+import com.alecor.batch.BatchRetry;
+import com.alecor.batch.Listener.BatchListerner;
+import com.alecor.batch.Listener.BatchResponse;
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.scheduler.HashedWheelScheduler;
+import com.alecor.batch.thread.BatchBackoffPolicy;
+import com.alecor.batch.thread.BatchScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author yuan_kf
+ * @ClassName RetryBenchmark
+ * @date 2026/10/19 02:10
+ * @Description BatchRetry 的开销: 一次成功, 以及失败后经定时器调度(0毫秒退避)重试一次
+ *
+ * retryOnce 与 success 的差值即一次重试调度(定时器入队、线程切换、重新执行)的成本
+ *
+ * @Version V1.0
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RetryBenchmark {
+
+    @Param({"success", "retryOnce"})
+    String outcome;
+
+    @Param({"threadPool", "wheel"})
+    String scheduler;
+
+    private final AtomicLong completed = new AtomicLong();
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private HashedWheelScheduler wheel;
+
+    private BatchRetry retry;
+
+    private BatchHandler<Integer> handler;
+
+    private BatchListerner<BatchResponse> listener;
+
+    private BatchRequest<Integer> request;
+
+    private long executed;
+
+    // 奇数次执行失败
+    private boolean failNext;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BatchScheduler batchScheduler;
+        if ("wheel".equals(this.scheduler)) {
+            this.wheel = new HashedWheelScheduler(1L, TimeUnit.MILLISECONDS, 512, null);
+            batchScheduler = this.wheel;
+        } else {
+            this.executor = BatchScheduler.initScheduler();
+            batchScheduler = Sinks.threadPool(this.executor);
+        }
+        this.retry = new BatchRetry(BatchBackoffPolicy.exponentialBackoff(0L, 1), batchScheduler);
+        boolean retryOnce = "retryOnce".equals(this.outcome);
+        this.handler = new BatchHandler<Integer>() {
+            @Override
+            public boolean executeBatch(BatchRequest<Integer> request) {
+                if (!retryOnce) {
+                    return true;
+                }
+                RetryBenchmark.this.failNext = !RetryBenchmark.this.failNext;
+                return !RetryBenchmark.this.failNext;
+            }
+        };
+        this.listener = new BatchListerner<BatchResponse>() {
+            @Override
+            public void onResponse(BatchResponse response) {
+                RetryBenchmark.this.completed.incrementAndGet();
+            }
+
+            @Override
+            public void onFailure(BatchResponse response, Exception exception) {
+                RetryBenchmark.this.completed.incrementAndGet();
+            }
+        };
+        this.request = new BatchRequest<>(10);
+        for (int i = 0; i < 10; i++) {
+            this.request.add(i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (this.wheel != null) {
+            this.wheel.close();
+        } else {
+            BatchScheduler.terminate(this.executor, 10L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    public long witchBackoff() {
+        this.retry.witchBackoff(this.handler, this.request, this.listener);
+        Sinks.await(this.completed, ++this.executed);
+        return this.executed;
+    }
+}
@@ -0,0 +1,102 @@
+package com.alecor.batch.benchmark;
+
+
+import com.alecor.batch.BatchProcessor;
+import com.alecor.batch.BatchRequest;
+import com.alecor.batch.Listener.BatchResponse;
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.handle.IntBatchHandler;
+import com.alecor.batch.thread.BatchScheduler;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author yuan_kf
+ * @ClassName Sinks
+ * @date 2026/10/19 02:10
+ * @Description 基准测试使用的处理器、监听及定时器
+ * @Version V1.0
+ */
+
+final class Sinks {
+
+    static final BatchProcessor.Listener NOOP_LISTENER = new BatchProcessor.Listener() {
+        @Override
+        public void beforBatch(BatchRequest t) {
+        }
+
+        @Override
+        public void afterBatch(BatchResponse response) {
+        }
+
+        @Override
+        public void afterBatch(Exception exception, BatchResponse response) {
+        }
+    };
+
+    private Sinks() {
+    }
+
+    /**
+     * 不做任何处理, 只测量框架本身的开销
+     */
+    static <T> BatchHandler<T> noop() {
+        return new BatchHandler<T>() {
+            @Override
+            public boolean executeBatch(BatchRequest<T> request) {
+                return true;
+            }
+        };
+    }
+
+    static IntBatchHandler noopInt() {
+        return new IntBatchHandler() {
+            @Override
+            public boolean executeBatch(int[] values, int length) {
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 统计已处理的数据条数
+     */
+    static <T> BatchHandler<T> counting(AtomicLong handled) {
+        return new BatchHandler<T>() {
+            @Override
+            public boolean executeBatch(BatchRequest<T> request) {
+                handled.addAndGet(request.numberOfActions());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 每个批次阻塞固定时间, 模拟同步 IO 的下游
+     */
+    static <T> BatchHandler<T> blocking(long millis, AtomicLong handled) {
+        return new BatchHandler<T>() {
+            @Override
+            public boolean executeBatch(BatchRequest<T> request) throws Exception {
+                Thread.sleep(millis);
+                handled.addAndGet(request.numberOfActions());
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 与 BatchProcessor.builder(handler) 默认定时器相同的实现
+     */
+    static BatchScheduler threadPool(ScheduledThreadPoolExecutor executor) {
+        return (command, delay, name) -> BatchScheduler.wrapAsScheduledCancellable(executor.schedule(command, delay, TimeUnit.MILLISECONDS));
+    }
+
+    static void await(AtomicLong counter, long target) {
+        while (counter.get() < target) {
+            Thread.yield();
+        }
+    }
+}
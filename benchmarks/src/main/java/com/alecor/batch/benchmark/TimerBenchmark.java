@@ -0,0 +1,85 @@
+package com.alecor.batch.benchmark;
+
+
+import com.alecor.batch.scheduler.HashedWheelScheduler;
+import com.alecor.batch.thread.BatchScheduler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author yuan_kf
+ * @ClassName TimerBenchmark
+ * @date 2026/10/19 02:10
+ * @Description 定时器注册并取消一个任务的开销, 以及已有大量未到期任务时的变化
+ *
+ * 每次 flush 与重试都会注册定时任务, 多数在到期前被取消
+ * 定时线程池为 O(log n), 时间轮为 O(1)
+ *
+ * @Version V1.0
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TimerBenchmark {
+
+    private static final Runnable NOOP = () -> {};
+
+    @Param({"0", "100000"})
+    int pending;
+
+    @Param({"threadPool", "wheel"})
+    String scheduler;
+
+    private ScheduledThreadPoolExecutor executor;
+
+    private HashedWheelScheduler wheel;
+
+    private BatchScheduler batchScheduler;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        if ("wheel".equals(this.scheduler)) {
+            this.wheel = new HashedWheelScheduler();
+            this.batchScheduler = this.wheel;
+        } else {
+            this.executor = BatchScheduler.initScheduler();
+            this.batchScheduler = Sinks.threadPool(this.executor);
+        }
+        // 测量期间不会到期的任务
+        for (int i = 0; i < this.pending; i++) {
+            this.batchScheduler.schedule(NOOP, TimeUnit.HOURS.toMillis(1L) + i, "pending");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (this.wheel != null) {
+            this.wheel.close();
+        } else {
+            BatchScheduler.terminate(this.executor, 10L, TimeUnit.SECONDS);
+        }
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        return this.batchScheduler.schedule(NOOP, 1000L, "flush").cancel();
+    }
+}
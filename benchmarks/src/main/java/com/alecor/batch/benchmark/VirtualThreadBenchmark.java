@@ -0,0 +1,78 @@
+package com.alecor.batch.benchmark;
+
+
+import com.alecor.batch.BatchProcessor;
+import com.alecor.batch.thread.BatchBackpressurePolicy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * @author yuan_kf
+ * @ClassName VirtualThreadBenchmark
+ * @date 2026/10/19 02:10
+ * @Description 下游阻塞(每批1毫秒)时, 平台线程分发与虚拟线程分发的吞吐量
+ *
+ * 缓冲区满时生产线程阻塞, 吞吐量由同时执行的批次数决定
+ * 低于 Java 21 时 virtual 退回内部分发线程池, 两者结果相同
+ *
+ * @Version V1.0
+ */
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+    private static final Integer VALUE = 42;
+
+    @Param({"platform", "virtual"})
+    String dispatch;
+
+    @Param({"64", "1024"})
+    int concurrentRequests;
+
+    private final AtomicLong handled = new AtomicLong();
+
+    private BatchProcessor processor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BatchProcessor.Builder builder = BatchProcessor.builder(Sinks.blocking(1L, this.handled)).setBatchSize(10)
+                .setConcurrentRequests(this.concurrentRequests).setMaxBufferedItems(20000).setBackpressurePolicy(BatchBackpressurePolicy.block());
+        if ("virtual".equals(this.dispatch)) {
+            builder.setVirtualThreads(true);
+        } else {
+            builder.setAsyncDispatch(true);
+        }
+        this.processor = builder.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        this.processor.awaitClose(30L, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void add() {
+        this.processor.add(VALUE);
+    }
+}
@@ -0,0 +1,116 @@
+package com.alecor.batch.soak;
+
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author yuan_kf
+ * @ClassName LatencyDistribution
+ * @date 2026/10/19 02:40
+ * @Description 模拟下游每次调用的固定耗时分布, 单位毫秒
+ *
+ * 通过 parse 从文本创建:
+ * 1、fixed:5            固定5毫秒
+ * 2、uniform:2:8        [2, 8) 毫秒均匀分布
+ * 3、exponential:5      均值5毫秒的指数分布
+ * 4、lognormal:5:0.5    中位数5毫秒、sigma 0.5 的对数正态分布, 长尾
+ *
+ * @Version V1.0
+ */
+
+public abstract class LatencyDistribution {
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    public static LatencyDistribution fixed(double millis) {
+        checkMillis(millis);
+        return new LatencyDistribution("fixed:" + millis) {
+            @Override
+            public long sampleNanos() {
+                return (long) (millis * NANOS_PER_MILLI);
+            }
+        };
+    }
+
+    public static LatencyDistribution uniform(double minMillis, double maxMillis) {
+        checkMillis(minMillis);
+        if (!(maxMillis > minMillis)) {
+            throw new IllegalArgumentException("maxMillis must be > minMillis");
+        }
+        return new LatencyDistribution("uniform:" + minMillis + ":" + maxMillis) {
+            @Override
+            public long sampleNanos() {
+                return (long) (ThreadLocalRandom.current().nextDouble(minMillis, maxMillis) * NANOS_PER_MILLI);
+            }
+        };
+    }
+
+    public static LatencyDistribution exponential(double meanMillis) {
+        checkMillis(meanMillis);
+        return new LatencyDistribution("exponential:" + meanMillis) {
+            @Override
+            public long sampleNanos() {
+                return (long) (-meanMillis * Math.log(1D - ThreadLocalRandom.current().nextDouble()) * NANOS_PER_MILLI);
+            }
+        };
+    }
+
+    public static LatencyDistribution logNormal(double medianMillis, double sigma) {
+        checkMillis(medianMillis);
+        if (!(sigma >= 0D)) {
+            throw new IllegalArgumentException("sigma must be >= 0");
+        }
+        return new LatencyDistribution("lognormal:" + medianMillis + ":" + sigma) {
+            @Override
+            public long sampleNanos() {
+                return (long) (medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()) * NANOS_PER_MILLI);
+            }
+        };
+    }
+
+    /**
+     *
+     * @param spec 如 lognormal:5:0.5, 见类注释
+     * @return
+     */
+    public static LatencyDistribution parse(String spec) {
+        String[] parts = spec.split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return fixed(Double.parseDouble(parts[1]));
+                case "uniform":
+                    return uniform(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                case "exponential":
+                    return exponential(Double.parseDouble(parts[1]));
+                case "lognormal":
+                    return logNormal(Double.parseDouble(parts[1]), Double.parseDouble(parts[2]));
+                default:
+                    break;
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException exception) {
+            throw new IllegalArgumentException("invalid latency distribution: " + spec, exception);
+        }
+        throw new IllegalArgumentException("unknown latency distribution: " + spec);
+    }
+
+    private static void checkMillis(double millis) {
+        if (!(millis >= 0D)) {
+            throw new IllegalArgumentException("latency must be >= 0");
+        }
+    }
+
+    private final String spec;
+
+    private LatencyDistribution(String spec) {
+        this.spec = spec;
+    }
+
+    public abstract long sampleNanos();
+
+    @Override
+    public String toString() {
+        return this.spec;
+    }
+}
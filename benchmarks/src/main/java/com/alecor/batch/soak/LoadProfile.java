@@ -0,0 +1,164 @@
+package com.alecor.batch.soak;
+
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author yuan_kf
+ * @ClassName LoadProfile
+ * @date 2026/10/19 02:40
+ * @Description 生产速率曲线, 按开始后经过的时间给出应写入的累计条数
+ *
+ * 1、constant: 固定速率
+ * 2、ramp: 在整个压测时长内从起始速率线性增长到结束速率
+ * 3、burst: 基础速率上周期性叠加突发, 每个周期开始时以突发速率持续一段时间
+ *
+ * @Version V1.0
+ */
+
+public abstract class LoadProfile {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1L);
+
+    /**
+     *
+     * @param itemsPerSecond 每秒条数
+     * @return
+     */
+    public static LoadProfile constant(double itemsPerSecond) {
+        checkRate(itemsPerSecond);
+        return new Constant(itemsPerSecond);
+    }
+
+    /**
+     *
+     * @param fromItemsPerSecond 起始每秒条数
+     * @param toItemsPerSecond 结束每秒条数
+     * @param duration 增长时长, 之后保持结束速率
+     * @param unit
+     * @return
+     */
+    public static LoadProfile ramp(double fromItemsPerSecond, double toItemsPerSecond, long duration, TimeUnit unit) {
+        checkRate(fromItemsPerSecond);
+        checkRate(toItemsPerSecond);
+        if (duration <= 0) {
+            throw new IllegalArgumentException("duration must be > 0");
+        }
+        return new Ramp(fromItemsPerSecond, toItemsPerSecond, unit.toNanos(duration));
+    }
+
+    /**
+     *
+     * @param baseItemsPerSecond 基础每秒条数
+     * @param burstItemsPerSecond 突发期间每秒条数
+     * @param burstMillis 每次突发持续毫秒数
+     * @param periodMillis 突发周期毫秒数
+     * @return
+     */
+    public static LoadProfile burst(double baseItemsPerSecond, double burstItemsPerSecond, long burstMillis, long periodMillis) {
+        checkRate(baseItemsPerSecond);
+        checkRate(burstItemsPerSecond);
+        if (burstMillis <= 0 || periodMillis < burstMillis) {
+            throw new IllegalArgumentException("burstMillis must be in (0, periodMillis]");
+        }
+        return new Burst(baseItemsPerSecond, burstItemsPerSecond, TimeUnit.MILLISECONDS.toNanos(burstMillis),
+                TimeUnit.MILLISECONDS.toNanos(periodMillis));
+    }
+
+    private static void checkRate(double itemsPerSecond) {
+        if (!(itemsPerSecond >= 0D)) {
+            throw new IllegalArgumentException("rate must be >= 0");
+        }
+    }
+
+    /**
+     * 开始后经过 elapsedNanos 时应写入的累计条数
+     * @param elapsedNanos
+     * @return
+     */
+    public abstract long cumulative(long elapsedNanos);
+
+    private static final class Constant extends LoadProfile {
+
+        private final double itemsPerSecond;
+
+        private Constant(double itemsPerSecond) {
+            this.itemsPerSecond = itemsPerSecond;
+        }
+
+        @Override
+        public long cumulative(long elapsedNanos) {
+            return (long) (this.itemsPerSecond * elapsedNanos / NANOS_PER_SECOND);
+        }
+
+        @Override
+        public String toString() {
+            return "constant(" + this.itemsPerSecond + "/s)";
+        }
+    }
+
+    private static final class Ramp extends LoadProfile {
+
+        private final double from;
+
+        private final double to;
+
+        private final long durationNanos;
+
+        private Ramp(double from, double to, long durationNanos) {
+            this.from = from;
+            this.to = to;
+            this.durationNanos = durationNanos;
+        }
+
+        @Override
+        public long cumulative(long elapsedNanos) {
+            double t = Math.min(elapsedNanos, this.durationNanos) / NANOS_PER_SECOND;
+            double d = this.durationNanos / NANOS_PER_SECOND;
+            // 速率曲线下的面积
+            double items = this.from * t + (this.to - this.from) * t * t / (2D * d);
+            if (elapsedNanos > this.durationNanos) {
+                items += this.to * (elapsedNanos - this.durationNanos) / NANOS_PER_SECOND;
+            }
+            return (long) items;
+        }
+
+        @Override
+        public String toString() {
+            return "ramp(" + this.from + "/s -> " + this.to + "/s)";
+        }
+    }
+
+    private static final class Burst extends LoadProfile {
+
+        private final double base;
+
+        private final double burst;
+
+        private final long burstNanos;
+
+        private final long periodNanos;
+
+        private Burst(double base, double burst, long burstNanos, long periodNanos) {
+            this.base = base;
+            this.burst = burst;
+            this.burstNanos = burstNanos;
+            this.periodNanos = periodNanos;
+        }
+
+        @Override
+        public long cumulative(long elapsedNanos) {
+            long periods = elapsedNanos / this.periodNanos;
+            long offset = elapsedNanos % this.periodNanos;
+            double perPeriod = this.burst * this.burstNanos + this.base * (this.periodNanos - this.burstNanos);
+            double partial = offset <= this.burstNanos ? this.burst * offset : this.burst * this.burstNanos + this.base * (offset - this.burstNanos);
+            return (long) ((periods * perPeriod + partial) / NANOS_PER_SECOND);
+        }
+
+        @Override
+        public String toString() {
+            return "burst(" + this.base + "/s, " + this.burst + "/s for " + TimeUnit.NANOSECONDS.toMillis(this.burstNanos) + "ms every "
+                    + TimeUnit.NANOSECONDS.toMillis(this.periodNanos) + "ms)";
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.alecor.batch.soak;
+
+
+import com.alecor.batch.BatchRequest;
+import com.alecor.batch.exception.BaseException;
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.metrics.BatchHistogram;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author yuan_kf
+ * @ClassName SimulatedBatchHandler
+ * @date 2026/10/19 02:40
+ * @Description 模拟下游, 用于压测时代替真实的批处理器
+ *
+ * 1、每批耗时 = 按分布抽样的固定耗时 + 每条耗时 × 批次条数, 期间阻塞处理线程
+ * 2、按 errorRate 整批失败(抛出可重试的 BaseException), 按 itemErrorRate 标记单条数据失败(BatchRequest.markFailed), 均会触发重试
+ * 3、数据为写入时的 System.nanoTime(), 处理成功时记录端到端延迟(含排队、等待 flush 及重试)
+ *
+ * @Version V1.0
+ */
+
+public class SimulatedBatchHandler extends BatchHandler<Long> {
+
+    private final LatencyDistribution latency;
+
+    private final long perItemNanos;
+
+    private final double errorRate;
+
+    private final double itemErrorRate;
+
+    private final BatchHistogram endToEndNanos = new BatchHistogram();
+
+    private final LongAdder handledItems = new LongAdder();
+
+    private final LongAdder failedExecutions = new LongAdder();
+
+    private final LongAdder failedItems = new LongAdder();
+
+    /**
+     *
+     * @param latency 每批固定耗时分布
+     * @param perItemMicros 每条数据耗时, 微秒
+     * @param errorRate 整批失败概率 [0, 1]
+     * @param itemErrorRate 单条数据失败概率 [0, 1]
+     */
+    public SimulatedBatchHandler(LatencyDistribution latency, double perItemMicros, double errorRate, double itemErrorRate) {
+        if (!(perItemMicros >= 0D)) {
+            throw new IllegalArgumentException("perItemMicros must be >= 0");
+        }
+        if (!(errorRate >= 0D && errorRate <= 1D) || !(itemErrorRate >= 0D && itemErrorRate <= 1D)) {
+            throw new IllegalArgumentException("error rates must be in [0, 1]");
+        }
+        this.latency = latency;
+        this.perItemNanos = (long) (perItemMicros * TimeUnit.MICROSECONDS.toNanos(1L));
+        this.errorRate = errorRate;
+        this.itemErrorRate = itemErrorRate;
+    }
+
+    @Override
+    public boolean executeBatch(BatchRequest<Long> request) {
+        int size = request.numberOfActions();
+        sleepNanos(this.latency.sampleNanos() + this.perItemNanos * size);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (this.errorRate > 0D && random.nextDouble() < this.errorRate) {
+            this.failedExecutions.increment();
+            // 与 UrlCodingBatchHandler 相同, 只有该类异常会被重试
+            throw new BaseException("Business_Insert", "simulated batch failure");
+        }
+        List<Long> data = request.getBatchData();
+        long now = System.nanoTime();
+        int handled = 0;
+        for (int i = 0; i < size; i++) {
+            if (this.itemErrorRate > 0D && random.nextDouble() < this.itemErrorRate) {
+                request.markFailed(i);
+                this.failedItems.increment();
+            } else {
+                this.endToEndNanos.record(now - data.get(i));
+                handled++;
+            }
+        }
+        this.handledItems.add(handled);
+        return true;
+    }
+
+    private static void sleepNanos(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0L) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    /**
+     * 处理成功的数据的端到端延迟, 纳秒
+     * @return
+     */
+    public BatchHistogram endToEndNanos() {
+        return this.endToEndNanos;
+    }
+
+    public long handledItems() {
+        return this.handledItems.sum();
+    }
+
+    public long failedExecutions() {
+        return this.failedExecutions.sum();
+    }
+
+    public long failedItems() {
+        return this.failedItems.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "latency=" + this.latency + "ms, perItem=" + TimeUnit.NANOSECONDS.toMicros(this.perItemNanos) + "us, errorRate=" + this.errorRate
+                + ", itemErrorRate=" + this.itemErrorRate;
+    }
+}
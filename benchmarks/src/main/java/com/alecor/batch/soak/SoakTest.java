@@ -0,0 +1,310 @@
+package com.alecor.batch.soak;
+
+
+import com.alecor.batch.BatchProcessor;
+import com.alecor.batch.metrics.BatchHistogram;
+import com.alecor.batch.metrics.BatchMetricsSnapshot;
+import com.alecor.batch.thread.BatchBackoffPolicy;
+import com.alecor.batch.thread.BatchScheduler;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author yuan_kf
+ * @ClassName SoakTest
+ * @date 2026/10/19 02:40
+ * @Description 压测工具, 按速率曲线向处理器写入数据, 下游为 SimulatedBatchHandler, 用于上线前确定 batchSize、flushInterval、concurrentRequests
+ *
+ * java -cp target/benchmarks.jar com.alecor.batch.soak.SoakTest --profile=burst --rate=20000 --burstRate=100000 --latency=lognormal:5:0.5
+ *
+ * 参数均为 --key=value, 见 DEFAULTS; 结束后输出报告(端到端延迟分位数、吞吐量、堆内存及排队数据的最高值、重试量及每秒明细)
+ * 写入时间戳为调用 add() 前的时间, add() 阻塞(背压、等待并发许可)的时间计入延迟; 生产线程落后于目标速率时以"生产积压"体现
+ *
+ * @Version V1.0
+ */
+
+public final class SoakTest {
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        // 速率曲线: constant / ramp / burst
+        DEFAULTS.put("profile", "constant");
+        // 每秒条数, ramp 为起始速率, burst 为基础速率
+        DEFAULTS.put("rate", "20000");
+        // ramp 结束速率
+        DEFAULTS.put("rampTo", "100000");
+        // burst 突发速率、持续时间及周期
+        DEFAULTS.put("burstRate", "100000");
+        DEFAULTS.put("burstMillis", "500");
+        DEFAULTS.put("burstPeriodMillis", "5000");
+        DEFAULTS.put("durationSeconds", "30");
+        DEFAULTS.put("producers", "4");
+        // 写入结束后等待处理完成的最长时间
+        DEFAULTS.put("drainSeconds", "60");
+        DEFAULTS.put("batchSize", "500");
+        DEFAULTS.put("flushInterval", "100");
+        // 大于0时从批次第一条数据开始计时(setLinger), 代替 flushInterval
+        DEFAULTS.put("linger", "0");
+        DEFAULTS.put("concurrentRequests", "8");
+        DEFAULTS.put("stripes", "1");
+        DEFAULTS.put("asyncDispatch", "false");
+        // 0 表示不限制
+        DEFAULTS.put("maxBufferedItems", "0");
+        // 重试次数及首次重试延迟毫秒数(指数补偿)
+        DEFAULTS.put("retries", "3");
+        DEFAULTS.put("retryDelay", "50");
+        // 下游: 每批固定耗时分布(见 LatencyDistribution)、每条耗时、整批及单条失败概率
+        DEFAULTS.put("latency", "lognormal:5:0.5");
+        DEFAULTS.put("perItemMicros", "10");
+        DEFAULTS.put("errorRate", "0.01");
+        DEFAULTS.put("itemErrorRate", "0");
+        DEFAULTS.put("report", "soak-report.txt");
+    }
+
+    private static final long SAMPLE_MILLIS = 100L;
+
+    private static final double NANOS_PER_MILLI = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private final Map<String, String> options;
+
+    private final LoadProfile profile;
+
+    private final SimulatedBatchHandler handler;
+
+    private final BatchProcessor<Long> processor;
+
+    private final AtomicLong issued = new AtomicLong();
+
+    private final AtomicLong added = new AtomicLong();
+
+    private final List<String> timeline = new ArrayList<>();
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+    private volatile boolean producing = true;
+
+    private final long durationNanos;
+
+    private long startNanos;
+
+    private long maxHeapUsed;
+
+    private long maxQueuedItems;
+
+    private long maxBacklog;
+
+    private long lastTarget;
+
+    private long lastAdded;
+
+    private long lastHandled;
+
+    private int samples;
+
+    private SoakTest(Map<String, String> options) {
+        this.options = options;
+        this.profile = profile(options);
+        this.durationNanos = TimeUnit.SECONDS.toNanos(longOption("durationSeconds"));
+        this.handler = new SimulatedBatchHandler(LatencyDistribution.parse(options.get("latency")), doubleOption("perItemMicros"),
+                doubleOption("errorRate"), doubleOption("itemErrorRate"));
+        int retries = intOption("retries");
+        BatchProcessor.Builder builder = BatchProcessor.builder(this.handler).setName("soak-test").setBatchSize(intOption("batchSize"))
+                .setConcurrentRequests(intOption("concurrentRequests"))
+                .setStripes(intOption("stripes")).setAsyncDispatch(Boolean.parseBoolean(options.get("asyncDispatch")))
+                .setBackoffPolicy(retries == 0 ? BatchBackoffPolicy.noBackoff() : BatchBackoffPolicy.exponentialBackoff(longOption("retryDelay"), retries));
+        if (longOption("linger") > 0) {
+            builder.setLinger(longOption("linger"), TimeUnit.MILLISECONDS);
+        } else {
+            builder.setFlushInterval(longOption("flushInterval"));
+        }
+        if (intOption("maxBufferedItems") > 0) {
+            builder.setMaxBufferedItems(intOption("maxBufferedItems"));
+        }
+        this.processor = builder.build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0 || !DEFAULTS.containsKey(arg.substring(2, separator))) {
+                System.err.println("unknown argument: " + arg + ", supported: " + DEFAULTS.keySet());
+                System.exit(2);
+            }
+            options.put(arg.substring(2, separator), arg.substring(separator + 1));
+        }
+        String report = new SoakTest(options).run();
+        System.out.println(report);
+        Path path = Paths.get(options.get("report"));
+        Files.write(path, report.getBytes(StandardCharsets.UTF_8));
+        System.out.println("report written to " + path.toAbsolutePath());
+    }
+
+    private static LoadProfile profile(Map<String, String> options) {
+        double rate = Double.parseDouble(options.get("rate"));
+        switch (options.get("profile")) {
+            case "constant":
+                return LoadProfile.constant(rate);
+            case "ramp":
+                return LoadProfile.ramp(rate, Double.parseDouble(options.get("rampTo")), Long.parseLong(options.get("durationSeconds")), TimeUnit.SECONDS);
+            case "burst":
+                return LoadProfile.burst(rate, Double.parseDouble(options.get("burstRate")), Long.parseLong(options.get("burstMillis")),
+                        Long.parseLong(options.get("burstPeriodMillis")));
+            default:
+                throw new IllegalArgumentException("unknown profile: " + options.get("profile"));
+        }
+    }
+
+    private String run() throws InterruptedException {
+        List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+        long gcCount = 0L;
+        long gcMillis = 0L;
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcCount -= collector.getCollectionCount();
+            gcMillis -= collector.getCollectionTime();
+        }
+        ScheduledThreadPoolExecutor sampler = BatchScheduler.initScheduler();
+        this.startNanos = System.nanoTime();
+        sampler.scheduleAtFixedRate(this::sample, SAMPLE_MILLIS, SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        Thread[] producers = new Thread[intOption("producers")];
+        for (int i = 0; i < producers.length; i++) {
+            producers[i] = BatchScheduler.daemonThreadFactory("soak-producer").newThread(() -> this.produce());
+            producers[i].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        this.producing = false;
+        long producedNanos = System.nanoTime() - this.startNanos;
+        boolean drained = this.processor.awaitClose(longOption("drainSeconds"), TimeUnit.SECONDS);
+        long totalNanos = System.nanoTime() - this.startNanos;
+        BatchScheduler.terminate(sampler, 10L, TimeUnit.SECONDS);
+        this.sample();
+        for (GarbageCollectorMXBean collector : collectors) {
+            gcCount += collector.getCollectionCount();
+            gcMillis += collector.getCollectionTime();
+        }
+        return this.report(producedNanos, totalNanos, drained, gcCount, gcMillis);
+    }
+
+    /**
+     * 按速率曲线领取条数后写入, 落后时追赶, 超前时等待
+     */
+    private void produce() {
+        long elapsed;
+        while ((elapsed = System.nanoTime() - this.startNanos) < this.durationNanos) {
+            long target = this.profile.cumulative(elapsed);
+            long current = this.issued.get();
+            if (current >= target) {
+                LockSupport.parkNanos(50_000L);
+                continue;
+            }
+            // 每次最多领取16条, 减少生产线程间的竞争
+            int claim = (int) Math.min(16L, target - current);
+            if (!this.issued.compareAndSet(current, current + claim)) {
+                continue;
+            }
+            for (int i = 0; i < claim; i++) {
+                this.processor.add(System.nanoTime());
+            }
+            this.added.addAndGet(claim);
+        }
+    }
+
+    private synchronized void sample() {
+        long elapsed = System.nanoTime() - this.startNanos;
+        BatchMetricsSnapshot snapshot = this.processor.metrics().snapshot();
+        long heapUsed = this.memory.getHeapMemoryUsage().getUsed();
+        long queued = Math.max(snapshot.getQueuedItems(), snapshot.getBufferedItems());
+        this.maxHeapUsed = Math.max(this.maxHeapUsed, heapUsed);
+        this.maxQueuedItems = Math.max(this.maxQueuedItems, queued);
+        if (this.producing) {
+            this.maxBacklog = Math.max(this.maxBacklog, this.profile.cumulative(elapsed) - this.added.get());
+        }
+        if (++this.samples % (1000L / SAMPLE_MILLIS) != 0) {
+            return;
+        }
+        long target = this.profile.cumulative(Math.min(elapsed, this.durationNanos));
+        long added = this.added.get();
+        long handled = this.handler.handledItems();
+        this.timeline.add(String.format("%6d %12d %12d %12d %10d %10d %10d", this.samples * SAMPLE_MILLIS / 1000L, target - this.lastTarget,
+                added - this.lastAdded, handled - this.lastHandled, queued, snapshot.getInFlightBatches(), heapUsed >> 20));
+        this.lastTarget = target;
+        this.lastAdded = added;
+        this.lastHandled = handled;
+    }
+
+    private String report(long producedNanos, long totalNanos, boolean drained, long gcCount, long gcMillis) {
+        BatchMetricsSnapshot snapshot = this.processor.metrics().snapshot();
+        BatchHistogram.Snapshot latency = this.handler.endToEndNanos().snapshot();
+        long added = this.added.get();
+        long handled = this.handler.handledItems();
+        StringBuilder report = new StringBuilder();
+        report.append("== soak test ==\n");
+        report.append("options      ").append(this.options).append('\n');
+        report.append("profile      ").append(this.profile).append('\n');
+        report.append("sink         ").append(this.handler).append('\n');
+        report.append("jvm          ").append(System.getProperty("java.version")).append(", ").append(Runtime.getRuntime().availableProcessors())
+                .append(" cpus, max heap ").append(Runtime.getRuntime().maxMemory() >> 20).append("MB\n");
+        report.append("\n== throughput ==\n");
+        report.append(String.format("produced     %d items in %.1fs (%.0f items/s), target %d, max producer backlog %d%n", added, producedNanos / 1e9,
+                added * 1e9 / producedNanos, this.profile.cumulative(producedNanos), this.maxBacklog));
+        report.append(String.format("handled      %d items in %.1fs (%.0f items/s), drained=%s%n", handled, totalNanos / 1e9, handled * 1e9 / totalNanos,
+                drained));
+        report.append(String.format("lost         %d items (retries exhausted or not drained)%n", added - handled));
+        report.append(String.format("batches      %d (size %d / time %d / flush %d), size mean %.1f p50 %d p99 %d max %d%n", snapshot.getBatchesSealed(),
+                snapshot.getBatchesSealedBySize(), snapshot.getBatchesSealedByTime(), snapshot.getBatchesSealedByFlush(), snapshot.getBatchSize().getMean(),
+                snapshot.getBatchSize().getP50(), snapshot.getBatchSize().getP99(), snapshot.getBatchSize().getMax()));
+        report.append("\n== end-to-end item latency (ms) ==\n");
+        report.append(String.format("mean %.2f  p50 %.2f  p90 %.2f  p99 %.2f  p999 %.2f  max %.2f  (count %d)%n", latency.getMean() / NANOS_PER_MILLI,
+                millis(latency.getP50()), millis(latency.getValueAtQuantile(0.9D)), millis(latency.getP99()), millis(latency.getP999()),
+                millis(latency.getMax()), latency.getCount()));
+        BatchHistogram.Snapshot execute = snapshot.getExecuteLatencyNanos();
+        report.append(String.format("executeBatch p50 %.2f  p99 %.2f  max %.2f%n", millis(execute.getP50()), millis(execute.getP99()),
+                millis(execute.getMax())));
+        report.append("\n== retries ==\n");
+        report.append(String.format("attempts %d, failed attempts %d, retries %d (failed batches %d, failed items %d)%n", execute.getCount(),
+                snapshot.getFailedAttempts(), snapshot.getRetries(), this.handler.failedExecutions(), this.handler.failedItems()));
+        report.append("\n== memory ==\n");
+        report.append(String.format("heap used high-water %dMB (sampled every %dms), queued items high-water %d, gc %d collections / %dms%n",
+                this.maxHeapUsed >> 20, SAMPLE_MILLIS, this.maxQueuedItems, gcCount, gcMillis));
+        report.append("\n== per second ==\n");
+        report.append(String.format("%6s %12s %12s %12s %10s %10s %10s%n", "second", "target", "added", "handled", "queued", "inFlight", "heapMB"));
+        for (String line : this.timeline) {
+            report.append(line).append('\n');
+        }
+        return report.toString();
+    }
+
+    private static double millis(long nanos) {
+        return nanos / NANOS_PER_MILLI;
+    }
+
+    private int intOption(String key) {
+        return Integer.parseInt(this.options.get(key));
+    }
+
+    private long longOption(String key) {
+        return Long.parseLong(this.options.get(key));
+    }
+
+    private double doubleOption(String key) {
+        return Double.parseDouble(this.options.get(key));
+    }
+}
@@ -0,0 +1,123 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.Listener.BatchAttemptListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @author yuan_kf
+ * @ClassName AdaptiveBatchSize
+ * @date 2026/10/18 16:50
+ * @Description 根据 executeBatch 耗时与成功率自适应调整批次大小(AIMD)
+ *
+ * 1、满批次执行成功且耗时不超过目标值时, 批次大小加上固定步长
+ * 2、耗时超过目标值时, 按当前批次大小乘以 decreaseFactor 缩小
+ * 3、执行失败时, 按当前批次大小乘以 failureFactor 缩小
+ * 4、只有封存批次的首次执行参与调整; 重试、失败数据重试及二分子批次的数据量与当前批次大小无关, 不参与调整
+ *
+ * 批次大小始终在 [minBatchSize, maxBatchSize] 之间
+ *
+ * @Version V1.0
+ */
+
+public class AdaptiveBatchSize implements BatchAttemptListener {
+
+    /**
+     * 耗时超标时的缩小系数
+     */
+    private static final double DECREASE_FACTOR = 0.7D;
+
+    /**
+     * 执行失败时的缩小系数
+     */
+    private static final double FAILURE_FACTOR = 0.5D;
+
+    private final int minBatchSize;
+
+    private final int maxBatchSize;
+
+    private final long targetLatencyNanos;
+
+    /**
+     * 每次增加的条数
+     */
+    private final int increment;
+
+    /**
+     * 当前批次大小
+     */
+    private final AtomicInteger current;
+
+    /**
+     *
+     * @param initialBatchSize 初始批次大小
+     * @param minBatchSize 最小批次大小
+     * @param maxBatchSize 最大批次大小
+     * @param targetLatency 单次 executeBatch 目标耗时
+     * @param unit
+     */
+    public AdaptiveBatchSize(int initialBatchSize, int minBatchSize, int maxBatchSize, long targetLatency, TimeUnit unit) {
+        if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+            throw new IllegalArgumentException("batch size bounds must satisfy 1 <= min <= max");
+        }
+        if (targetLatency <= 0) {
+            throw new IllegalArgumentException("targetLatency must be > 0");
+        }
+        this.minBatchSize = minBatchSize;
+        this.maxBatchSize = maxBatchSize;
+        this.targetLatencyNanos = unit.toNanos(targetLatency);
+        this.increment = Math.max(1, (maxBatchSize - minBatchSize) / 20);
+        this.current = new AtomicInteger(this.clamp(initialBatchSize));
+    }
+
+    /**
+     * 当前批次大小
+     * @return
+     */
+    public int currentBatchSize() {
+        return this.current.get();
+    }
+
+    @Override
+    public void onAttempt(BatchRequest request, int attempt, long tookNanos, boolean success) {
+        if (attempt > 1 || request.derived) {
+            return;
+        }
+        int size = request.numberOfActions();
+        if (!success) {
+            this.decrease(FAILURE_FACTOR);
+        } else if (tookNanos > this.targetLatencyNanos) {
+            this.decrease(DECREASE_FACTOR);
+        } else {
+            this.increase(size);
+        }
+    }
+
+    private void increase(int size) {
+        int prev;
+        int next;
+        do {
+            prev = this.current.get();
+            // 只有满批次执行够快才说明可以继续加大
+            if (size < prev) {
+                return;
+            }
+            next = this.clamp(prev + this.increment);
+        } while (prev != next && !this.current.compareAndSet(prev, next));
+    }
+
+    private void decrease(double factor) {
+        int prev;
+        int next;
+        do {
+            prev = this.current.get();
+            next = this.clamp((int) (prev * factor));
+        } while (next < prev && !this.current.compareAndSet(prev, next));
+    }
+
+    private int clamp(int size) {
+        return Math.max(this.minBatchSize, Math.min(this.maxBatchSize, size));
+    }
+}
@@ -0,0 +1,317 @@
+package com.alecor.batch;
+
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchCircuitBreaker
+ * @date 2026/10/19 00:10
+ * @Description 熔断器, 下游不可用时批次快速失败(或暂存), 不再逐个重试占用并发许可
+ *
+ * 1、CLOSED: 正常执行, 按最近 slidingWindowSize 次执行统计失败率与慢调用率, 任一达到阈值进入 OPEN
+ * 2、OPEN: 拒绝执行, 经过 waitDurationInOpenState 后下一次执行作为探测进入 HALF_OPEN
+ * 3、HALF_OPEN: 只放行一个探测批次, 成功且不慢则回到 CLOSED 并清空统计, 否则重新进入 OPEN
+ * 4、每次执行(含重试)都计入统计, 被拒绝的执行不计入
+ * 5、同一个熔断器可以传给多个处理器, 共同保护同一下游
+ *
+ * @Version V1.0
+ */
+
+public class BatchCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    /**
+     * 状态变化回调
+     */
+    public interface StateListener {
+
+        /**
+         * 在触发状态变化的线程上调用, 不持有熔断器锁
+         * @param from
+         * @param to
+         */
+        void onStateTransition(State from, State to);
+    }
+
+    private static final byte FAILED = 1;
+
+    private static final byte SLOW = 2;
+
+    private final double failureRateThreshold;
+
+    private final double slowCallRateThreshold;
+
+    private final long slowCallDurationNanos;
+
+    private final int minimumNumberOfCalls;
+
+    private final long waitDurationNanos;
+
+    /**
+     * 最近执行结果的环形窗口, 每个元素为 FAILED | SLOW 的组合
+     */
+    private final byte[] window;
+
+    private final List<StateListener> stateListeners = new CopyOnWriteArrayList<>();
+
+    // 以下字段由 this 保护
+    private int position;
+
+    private int calls;
+
+    private int failedCalls;
+
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+
+    private long openedNanos;
+
+    private boolean probing;
+
+    private BatchCircuitBreaker(Builder builder) {
+        this.failureRateThreshold = builder.failureRateThreshold;
+        this.slowCallRateThreshold = builder.slowCallRateThreshold;
+        this.slowCallDurationNanos = builder.slowCallDurationNanos;
+        this.minimumNumberOfCalls = Math.min(builder.minimumNumberOfCalls, builder.slidingWindowSize);
+        this.waitDurationNanos = builder.waitDurationNanos;
+        this.window = new byte[builder.slidingWindowSize];
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 申请执行一次
+     * @return 是否允许执行; 允许时执行结束后必须调用 onResult
+     */
+    public boolean tryAcquirePermission() {
+        State from;
+        synchronized (this) {
+            if (this.state == State.CLOSED) {
+                return true;
+            }
+            if (this.state == State.HALF_OPEN) {
+                // 同时只放行一个探测批次
+                if (this.probing) {
+                    return false;
+                }
+                this.probing = true;
+                return true;
+            }
+            if (System.nanoTime() - this.openedNanos < this.waitDurationNanos) {
+                return false;
+            }
+            // 等待时间已过, 本次执行作为探测
+            from = this.state;
+            this.state = State.HALF_OPEN;
+            this.probing = true;
+        }
+        this.fire(from, State.HALF_OPEN);
+        return true;
+    }
+
+    /**
+     * 记录一次执行结果
+     * @param tookNanos 执行耗时
+     * @param success 是否成功
+     */
+    public void onResult(long tookNanos, boolean success) {
+        boolean slow = tookNanos >= this.slowCallDurationNanos;
+        State from;
+        State to;
+        synchronized (this) {
+            from = this.state;
+            if (from == State.HALF_OPEN) {
+                if (!this.probing) {
+                    return;
+                }
+                this.probing = false;
+                if (success && !slow) {
+                    this.reset();
+                    to = State.CLOSED;
+                } else {
+                    to = this.open();
+                }
+            } else if (from == State.CLOSED) {
+                this.record((byte) ((success ? 0 : FAILED) | (slow ? SLOW : 0)));
+                if (this.calls < this.minimumNumberOfCalls
+                        || this.failedCalls < this.failureRateThreshold * this.calls && this.slowCalls < this.slowCallRateThreshold * this.calls) {
+                    return;
+                }
+                to = this.open();
+            } else {
+                // 进入 OPEN 之前已开始的执行, 不再计入
+                return;
+            }
+        }
+        this.fire(from, to);
+    }
+
+    private void record(byte outcome) {
+        if (this.calls == this.window.length) {
+            byte evicted = this.window[this.position];
+            this.failedCalls -= evicted & FAILED;
+            this.slowCalls -= (evicted & SLOW) >> 1;
+        } else {
+            this.calls++;
+        }
+        this.window[this.position] = outcome;
+        this.failedCalls += outcome & FAILED;
+        this.slowCalls += (outcome & SLOW) >> 1;
+        this.position = (this.position + 1) % this.window.length;
+    }
+
+    private State open() {
+        this.reset();
+        this.state = State.OPEN;
+        this.openedNanos = System.nanoTime();
+        return State.OPEN;
+    }
+
+    private void reset() {
+        this.state = State.CLOSED;
+        this.position = 0;
+        this.calls = 0;
+        this.failedCalls = 0;
+        this.slowCalls = 0;
+    }
+
+    private void fire(State from, State to) {
+        if (from == to) {
+            return;
+        }
+        for (StateListener stateListener : this.stateListeners) {
+            try {
+                stateListener.onStateTransition(from, to);
+            } catch (RuntimeException exception) {
+                // 单个回调失败不影响其他回调
+            }
+        }
+    }
+
+    public void addStateListener(StateListener stateListener) {
+        this.stateListeners.add(Objects.requireNonNull(stateListener, "stateListener"));
+    }
+
+    public void removeStateListener(StateListener stateListener) {
+        this.stateListeners.remove(stateListener);
+    }
+
+    public synchronized State state() {
+        return this.state;
+    }
+
+    /**
+     * 统计窗口内的失败率, 未达到最小执行次数时为 -1
+     * @return
+     */
+    public synchronized double failureRate() {
+        return this.calls < this.minimumNumberOfCalls || this.calls == 0 ? -1D : (double) this.failedCalls / this.calls;
+    }
+
+    /**
+     * 统计窗口内的慢调用率, 未达到最小执行次数时为 -1
+     * @return
+     */
+    public synchronized double slowCallRate() {
+        return this.calls < this.minimumNumberOfCalls || this.calls == 0 ? -1D : (double) this.slowCalls / this.calls;
+    }
+
+    /**
+     * OPEN 状态持续时间, 毫秒
+     * @return
+     */
+    public long waitDurationInOpenState() {
+        return TimeUnit.NANOSECONDS.toMillis(this.waitDurationNanos);
+    }
+
+    public static class Builder {
+
+        // 失败率阈值(默认50%)
+        double failureRateThreshold = 0.5D;
+
+        // 慢调用率阈值(默认100%, 即只有全部为慢调用时熔断)
+        double slowCallRateThreshold = 1D;
+
+        // 慢调用耗时(默认60秒)
+        long slowCallDurationNanos = TimeUnit.SECONDS.toNanos(60L);
+
+        // 统计窗口大小(默认最近100次执行)
+        int slidingWindowSize = 100;
+
+        // 开始计算比例所需的最小执行次数(默认10次)
+        int minimumNumberOfCalls = 10;
+
+        // OPEN 状态持续时间(默认5秒)
+        long waitDurationNanos = TimeUnit.SECONDS.toNanos(5L);
+
+        /**
+         *
+         * @param failureRateThreshold (0, 1]
+         * @return
+         */
+        public Builder setFailureRateThreshold(double failureRateThreshold) {
+            if (!(failureRateThreshold > 0D) || failureRateThreshold > 1D) {
+                throw new IllegalArgumentException("failureRateThreshold must be in (0, 1]");
+            }
+            this.failureRateThreshold = failureRateThreshold;
+            return this;
+        }
+
+        /**
+         *
+         * @param slowCallRateThreshold (0, 1]
+         * @param slowCallDuration 耗时不小于该值的执行视为慢调用
+         * @param unit
+         * @return
+         */
+        public Builder setSlowCallRateThreshold(double slowCallRateThreshold, long slowCallDuration, TimeUnit unit) {
+            if (!(slowCallRateThreshold > 0D) || slowCallRateThreshold > 1D) {
+                throw new IllegalArgumentException("slowCallRateThreshold must be in (0, 1]");
+            }
+            if (slowCallDuration <= 0) {
+                throw new IllegalArgumentException("slowCallDuration must be > 0");
+            }
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.slowCallDurationNanos = unit.toNanos(slowCallDuration);
+            return this;
+        }
+
+        public Builder setSlidingWindowSize(int slidingWindowSize) {
+            if (slidingWindowSize < 1) {
+                throw new IllegalArgumentException("slidingWindowSize must be >= 1");
+            }
+            this.slidingWindowSize = slidingWindowSize;
+            return this;
+        }
+
+        public Builder setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+            if (minimumNumberOfCalls < 1) {
+                throw new IllegalArgumentException("minimumNumberOfCalls must be >= 1");
+            }
+            this.minimumNumberOfCalls = minimumNumberOfCalls;
+            return this;
+        }
+
+        public Builder setWaitDurationInOpenState(long waitDuration, TimeUnit unit) {
+            if (waitDuration < 0) {
+                throw new IllegalArgumentException("waitDuration must be >= 0");
+            }
+            this.waitDurationNanos = unit.toNanos(waitDuration);
+            return this;
+        }
+
+        public BatchCircuitBreaker build() {
+            return new BatchCircuitBreaker(this);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.alecor.batch;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchCodec
+ * @date 2026/10/18 19:20
+ * @Description 数据序列化接口, 用于写入日志或溢写磁盘
+ * @Version V1.0
+ */
+
+public interface BatchCodec<T> {
+    
+    byte[] encode(T t);
+    
+    T decode(byte[] bytes);
+    
+    /**
+     * 数据本身已是字节数组时使用
+     * @return
+     */
+    static BatchCodec<byte[]> bytes() {
+        return new BatchCodec<byte[]>() {
+            @Override
+            public byte[] encode(byte[] bytes) {
+                return bytes;
+            }
+            
+            @Override
+            public byte[] decode(byte[] bytes) {
+                return bytes;
+            }
+        };
+    }
+}
@@ -1,18 +1,49 @@
 package com.alecor.batch;
 
 
+import com.alecor.batch.Listener.BatchAttemptListener;
+import com.alecor.batch.Listener.BatchPoisonListener;
 import com.alecor.batch.Listener.BatchResponse;
+import com.alecor.batch.handle.AsyncBatchHandler;
 import com.alecor.batch.handle.BatchHandler;
 import com.alecor.batch.handle.BatchRequestHandler;
+import com.alecor.batch.handle.ByteBufferBatchHandler;
+import com.alecor.batch.handle.DoubleBatchHandler;
+import com.alecor.batch.handle.IntBatchHandler;
+import com.alecor.batch.handle.LongBatchHandler;
+import com.alecor.batch.journal.BatchJournal;
+import com.alecor.batch.journal.JournalTicket;
+import com.alecor.batch.metrics.BatchMetrics;
+import com.alecor.batch.spill.BatchSpillQueue;
+import com.alecor.batch.spill.BatchSpillReadException;
+import com.alecor.batch.thread.BatchAbortPolicy;
 import com.alecor.batch.thread.BatchBackoffPolicy;
+import com.alecor.batch.thread.BatchBackpressurePolicy;
+import com.alecor.batch.thread.BatchRejectedExecutionException;
 import com.alecor.batch.thread.BatchScheduler;
 import com.alecor.batch.thread.Cancellable;
+import com.alecor.batch.thread.VirtualThreads;
 
 import java.io.Closeable;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
 import java.util.function.Supplier;
 
 /**
@@ -24,6 +55,24 @@ import java.util.function.Supplier;
  * 1、支持定时处理
  * 2、支持阈值处理
  * 3、支持重试机制
+ * 4、支持分段写入, 降低多生产线程下的锁竞争
+ * 5、支持 int/long/double 原始类型批次(addInt/addLong/addDouble), 不装箱
+ * 6、支持堆外批次(ByteBufferBatchHandler), 已序列化数据直接写入直接内存
+ * 7、支持预写日志(BatchJournal), 进程崩溃后重放未确认的数据
+ * 8、支持溢写(BatchSpillQueue), 排队数据超过阈值后批次写入本地文件, 按先进先出读回执行
+ * 9、支持按 key 分区(setKeyExtractor), 每个 key 独立成批, 同一 key 的批次按顺序串行分发
+ * 10、支持批次内合并(setCoalescing), 同一批次中 key 相同的数据在加入时合并
+ * 11、支持异步处理器(AsyncBatchHandler), 批次在途期间不占用线程, 重试由结果回调调度
+ * 12、支持虚拟线程分发(setVirtualThreads, Java 21 及以上), 低版本退回内部分发线程池
+ * 13、支持单条数据失败标记(BatchRequest.markFailed), 重试时只重新提交失败的数据
+ * 14、支持失败二分(setBisectOnFailure), 重试用尽后二分执行, 隔离出无法处理的数据
+ * 15、支持传入外部定时器(builder(handler, scheduler)), 如多个处理器共享的 HashedWheelScheduler
+ * 16、支持处理器组(BatchProcessorGroup), 组内处理器共享定时器与分发线程池, 统一关闭
+ * 17、支持抖动补偿(fullJitter / decorrelatedJitter)及可共享的重试预算(setRetryBudget), 防止重试风暴
+ * 18、支持熔断器(setCircuitBreaker), 下游不可用时快速失败或暂存批次, 半开状态下单个批次探测
+ * 19、支持限流(setRateLimit / setRateLimiter), 按每秒批次数与数据条数延迟执行, 限流期间批次继续累积, 定时封存最多推迟3次
+ * 20、支持运行指标(metrics()), 无锁记录数据量、封存原因、批次大小及执行耗时分布, 开启 setJmxEnabled 后注册 JMX MBean
+ * 21、支持从第一条数据开始计时的等待时间(setLinger), 代替定时 flush, 空闲时不唤醒定时器
  *
  * 使用方法见 test.class
  *
@@ -43,6 +92,14 @@ public class BatchProcessor<T> implements Closeable {
         void afterBatch(BatchResponse response);
         
         void afterBatch(Exception exception, BatchResponse response);
+        
+        /**
+         * 熔断器状态变化, 见 Builder.setCircuitBreaker
+         * @param from
+         * @param to
+         */
+        default void onCircuitStateChange(BatchCircuitBreaker.State from, BatchCircuitBreaker.State to) {
+        }
     }
     
     
@@ -52,9 +109,54 @@ public class BatchProcessor<T> implements Closeable {
     private final int batchSize;
     
     /**
-     * 数据存储容器
+     * 自适应批次大小, 为空时使用固定的 batchSize
+     */
+    private final AdaptiveBatchSize adaptiveBatchSize;
+    
+    /**
+     * 未指定名称时的处理器编号
+     */
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    
+    /**
+     * 限流中连续推迟定时封存的最大次数, 超过后仍然封存, 避免流量低时未满的批次一直不发送; 封存的批次执行前仍按限流等待
+     */
+    private static final int MAX_THROTTLED_DEFERRALS = 3;
+    
+    /**
+     * 运行指标
+     */
+    private final BatchMetrics metrics;
+    
+    /**
+     * 内部线程池的拒绝策略, 用于统计被拒绝的任务数
+     */
+    private final List<BatchAbortPolicy> abortPolicies;
+    
+    /**
+     * 限流器, 限流中推迟定时 flush(最多 MAX_THROTTLED_DEFERRALS 次), 为空表示不限制
+     */
+    private final BatchRateLimiter rateLimiter;
+    
+    /**
+     * 单批次最大字节数, -1 表示不限制
+     */
+    private final long maxBatchBytes;
+    
+    /**
+     * 数据字节数计算
      */
-    private BatchRequest<T> requests;
+    private final BatchWeigher<T> weigher;
+    
+    /**
+     * 分段数据存储容器，每个分段持有独立的锁和 BatchRequest
+     */
+    private final Stripe<T>[] stripes;
+    
+    /**
+     * 分段掩码(分段数为2的幂)
+     */
+    private final int stripeMask;
     
     /**
      * BatchRequest新对象
@@ -62,14 +164,19 @@ public class BatchProcessor<T> implements Closeable {
     private final Supplier<BatchRequest<T>> batchRequestSupplier;
     
     /**
-     * 可重入锁机制
+     * BatchRequest对象池, 为空表示不复用
+     */
+    private final BatchRequestPool<T> requestPool;
+    
+    /**
+     * 可重入锁机制, 用于关闭流程
      */
     private final ReentrantLock lock;
     
     /**
      * 批任务处理器
      */
-    private final BatchRequestHandler batchRequestHandler;
+    private final BatchRequestHandler<T> batchRequestHandler;
     
     /**
      * 刷新机制
@@ -86,6 +193,82 @@ public class BatchProcessor<T> implements Closeable {
      */
     private volatile boolean closed;
     
+    /**
+     * 缓冲区剩余容量(未封存、排队及在途批次中的数据条数), 为空表示不限制
+     */
+    private final Semaphore capacity;
+    
+    private final int maxBufferedItems;
+    
+    /**
+     * 缓冲区满时的背压策略
+     */
+    private final BatchBackpressurePolicy backpressurePolicy;
+    
+    /**
+     * 预写日志, 为空表示不开启
+     */
+    private final BatchJournal journal;
+    
+    /**
+     * 写入日志时的序列化方式
+     */
+    private final BatchCodec<T> codec;
+    
+    /**
+     * 溢写队列, 为空表示不开启
+     */
+    private final BatchSpillQueue<T> spillQueue;
+    
+    /**
+     * 内存中排队等待分发的最大数据条数, 超过后批次溢写到文件
+     */
+    private final long maxQueuedItems;
+    
+    /**
+     * 从溢写队列读回批次
+     */
+    private final Supplier<BatchRequest<T>> readBack = this::readBack;
+    
+    /**
+     * 分区模式下的 key 提取方式, 为空表示不开启
+     */
+    private final Function<T, ?> keyExtractor;
+    
+    /**
+     * 分区模式下各 key 的缓冲区, 按访问顺序排列, 超过上限时淘汰最久未使用的 key
+     */
+    private final LinkedHashMap<Object, Stripe<T>> keyedStripes;
+    
+    /**
+     * 同时打开的最大 key 缓冲区数
+     */
+    private final int maxOpenKeys;
+    
+    /**
+     * 同一 key 的批次串行分发
+     */
+    private final BatchSequencer<T> sequencer;
+    
+    /**
+     * key 缓冲区从第一条数据起的最长等待时间(毫秒), 为空时使用 linger
+     */
+    private final Long keyLinger;
+    
+    /**
+     * 批次从第一条数据起的最长等待时间(毫秒), 为空表示只按 flushInterval 刷新
+     */
+    private final Long linger;
+    
+    private final BatchScheduler flushScheduler;
+    
+    /**
+     * 合并模式下封存批次的原始数据条数及合并后条数
+     */
+    private final LongAdder coalescedAddedItems = new LongAdder();
+    
+    private final LongAdder coalescedItems = new LongAdder();
+    
     
     /**
      *
@@ -103,14 +286,191 @@ public class BatchProcessor<T> implements Closeable {
     public BatchProcessor(Integer batchSize, Long flushInterval, BatchHandler batchHandler, Listener listener, BatchBackoffPolicy backoffPolicy,
             BatchScheduler flushScheduler, BatchScheduler retryScheduler, int concurrentRequests, Runnable onClose,
             Supplier<BatchRequest<T>> batchRequestSupplier) {
-        this.batchSize = batchSize;
+        this(new Builder<T>(listener, batchHandler, flushScheduler, retryScheduler, onClose).setBatchSize(batchSize)
+                .setFlushInterval(flushInterval).setBackoffPolicy(backoffPolicy).setConcurrentRequests(concurrentRequests), batchRequestSupplier);
+    }
+    
+    BatchProcessor(Builder<T> builder, Supplier<BatchRequest<T>> batchRequestSupplier) {
+        this.batchSize = builder.batchSize;
+        if (builder.maxBatchBytes > 0 && builder.weigher == null) {
+            throw new IllegalArgumentException("maxBatchBytes requires a weigher");
+        }
+        this.maxBatchBytes = builder.maxBatchBytes;
+        this.weigher = builder.weigher;
+        this.rateLimiter = builder.rateLimiter;
+        this.abortPolicies = new ArrayList<>(builder.abortPolicies);
+        this.metrics = new BatchMetrics(builder.name != null ? builder.name : "batch-processor-" + SEQUENCE.incrementAndGet(), new ProcessorGauges());
+        this.adaptiveBatchSize = builder.adaptiveMaxBatchSize > 0 ? new AdaptiveBatchSize(builder.batchSize, builder.adaptiveMinBatchSize,
+                builder.adaptiveMaxBatchSize, builder.adaptiveTargetLatencyNanos, TimeUnit.NANOSECONDS) : null;
+        this.capacity = builder.maxBufferedItems > 0 ? new Semaphore(builder.maxBufferedItems) : null;
+        this.maxBufferedItems = builder.maxBufferedItems;
+        this.backpressurePolicy = builder.backpressurePolicy;
+        this.journal = builder.journal;
+        this.codec = builder.codec;
+        this.spillQueue = builder.spillQueue;
+        this.maxQueuedItems = builder.maxQueuedItems;
+        this.keyExtractor = builder.keyExtractor;
+        this.maxOpenKeys = builder.maxOpenKeys;
+        this.keyLinger = builder.keyLinger;
+        this.linger = builder.linger;
+        this.flushScheduler = builder.flushScheduler;
+        if (builder.linger != null && builder.flushInterval != null) {
+            throw new IllegalArgumentException("flushInterval and linger cannot both be set");
+        }
+        if (builder.coalesceKeyFunction != null && (builder.handler instanceof IntBatchHandler || builder.handler instanceof LongBatchHandler
+                || builder.handler instanceof DoubleBatchHandler || builder.handler instanceof ByteBufferBatchHandler)) {
+            throw new IllegalArgumentException("coalescing is not supported with primitive or ByteBuffer batch handlers");
+        }
+        if (builder.coalesceKeyFunction != null && builder.backpressurePolicy.dropsOldest()) {
+            // 合并后的一条数据对应多条原始数据及日志记录, 丢弃时无法逐条确认和计数
+            throw new IllegalArgumentException("dropOldest backpressure is not supported with coalescing");
+        }
+        if (this.keyExtractor != null) {
+            if (builder.handler instanceof IntBatchHandler || builder.handler instanceof LongBatchHandler
+                    || builder.handler instanceof DoubleBatchHandler) {
+                throw new IllegalArgumentException("keyExtractor is not supported with primitive batch handlers");
+            }
+            this.keyedStripes = new LinkedHashMap<>(16, 0.75F, true);
+            this.sequencer = new BatchSequencer<>();
+        } else {
+            this.keyedStripes = null;
+            this.sequencer = null;
+        }
+        if (this.journal != null && (builder.handler instanceof IntBatchHandler || builder.handler instanceof LongBatchHandler
+                || builder.handler instanceof DoubleBatchHandler)) {
+            throw new IllegalArgumentException("journal is not supported with primitive batch handlers");
+        }
         this.lock = new ReentrantLock();
         this.closed = false;
-        this.requests = batchRequestSupplier.get();
-        this.batchRequestSupplier = batchRequestSupplier;
-        this.batchRequestHandler = new BatchRequestHandler(listener, batchHandler, backoffPolicy, retryScheduler, concurrentRequests);
-        this.cancellableFlushTask = this.startFlushTask(flushInterval, flushScheduler);
+        // 堆外批次总是复用, 否则每个批次(分区模式下每个打开的 key)都要重新分配直接内存
+        if (builder.recycleRequests || builder.handler instanceof ByteBufferBatchHandler) {
+            // 在封存、排队及在途中的批次都可能被复用, 分区模式下每个打开的 key 各持有一个批次
+            int buffers = this.keyExtractor != null ? builder.maxOpenKeys : builder.stripes;
+            this.requestPool = new BatchRequestPool<>(batchRequestSupplier, buffers * 2 + Math.max(1, builder.concurrentRequests) + 1);
+            this.batchRequestSupplier = this.requestPool::acquire;
+        } else {
+            this.requestPool = null;
+            this.batchRequestSupplier = batchRequestSupplier;
+        }
+        // 分区模式下数据按 key 写入各自的缓冲区, 不再使用线程分段
+        this.stripes = newStripes(this.keyExtractor != null ? 1 : builder.stripes, this.batchRequestSupplier);
+        this.stripeMask = this.stripes.length - 1;
+        Executor dispatchExecutor = builder.dispatchExecutor;
+        BatchScheduler retryScheduler = builder.retryScheduler;
+        Runnable onClose = builder.onClose;
+        ExecutorService dispatcher = null;
+        if (dispatchExecutor == null && builder.virtualThreads && VirtualThreads.isSupported()) {
+            // 每个批次一个虚拟线程, 重试等待结束后也交给虚拟线程执行, 不占用重试定时器线程
+            dispatcher = VirtualThreads.newVirtualThreadPerTaskExecutor("dispatcher");
+            retryScheduler = handOff(builder.retryScheduler, dispatcher);
+        } else if (dispatchExecutor == null && (builder.asyncDispatch || builder.virtualThreads || this.spillQueue != null)) {
+            // 溢写依赖分发线程池排队, 未配置时使用内部分发线程池; 不支持虚拟线程时同样退回内部分发线程池
+            // 异步处理器在途期间不占用线程, 分发线程数不必等于 concurrentRequests
+            int threads = Math.max(1, builder.concurrentRequests);
+            if (builder.handler instanceof AsyncBatchHandler) {
+                threads = Math.min(threads, Runtime.getRuntime().availableProcessors());
+            }
+            dispatcher = BatchScheduler.initDispatcher(threads);
+            this.abortPolicies.add((BatchAbortPolicy) ((ThreadPoolExecutor) dispatcher).getRejectedExecutionHandler());
+        }
+        if (dispatcher != null) {
+            // 内部分发线程池随处理器关闭, 需先于重试定时器终止
+            ExecutorService internalDispatcher = dispatcher;
+            dispatchExecutor = dispatcher;
+            onClose = () -> {
+                this.awaitDispatched(10L, TimeUnit.SECONDS);
+                BatchScheduler.terminate(internalDispatcher, 10L, TimeUnit.SECONDS);
+                builder.onClose.run();
+            };
+        }
+        this.batchRequestHandler = BatchRequestHandler.<T>builder(builder.listener, builder.handler, builder.batchBackoffPolicy, retryScheduler)
+                .setConcurrentRequests(builder.concurrentRequests).setDispatchExecutor(dispatchExecutor).setOnComplete(this::onBatchComplete)
+                .setAttemptListener(this.attemptListener()).setPoisonListener(builder.poisonListener).setRetryBudget(builder.retryBudget)
+                .setCircuitBreaker(builder.circuitBreaker, builder.parkWhileOpen).setRateLimiter(builder.rateLimiter).build();
+        this.cancellableFlushTask = this.startFlushTask(builder.flushInterval, builder.flushScheduler);
+        if (this.spillQueue != null) {
+            BatchSpillQueue<T> spillQueue = this.spillQueue;
+            Runnable closeHandlers = onClose;
+            onClose = () -> {
+                try {
+                    closeHandlers.run();
+                } finally {
+                    spillQueue.close();
+                }
+            };
+        }
+        if (this.journal != null) {
+            BatchJournal journal = this.journal;
+            Runnable closeHandlers = onClose;
+            onClose = () -> {
+                try {
+                    closeHandlers.run();
+                } finally {
+                    journal.close();
+                }
+            };
+        }
+        if (builder.jmxEnabled) {
+            BatchMetrics metrics = this.metrics;
+            Runnable closeHandlers = onClose;
+            onClose = () -> {
+                try {
+                    closeHandlers.run();
+                } finally {
+                    metrics.unregister();
+                }
+            };
+        }
         this.onClose = onClose;
+        if (this.journal != null) {
+            // 重放上次未确认的数据, 剩余未满的批次立即封存, 不等待后续数据或定时 flush
+            this.journal.replay(this::replay);
+            this.sealAll(BatchMetrics.SealTrigger.FLUSH);
+        }
+    }
+    
+    /**
+     * 每次执行后先记录指标, 开启自适应时再调整批次大小
+     */
+    private BatchAttemptListener attemptListener() {
+        if (this.adaptiveBatchSize == null) {
+            return this.metrics;
+        }
+        BatchMetrics metrics = this.metrics;
+        AdaptiveBatchSize adaptiveBatchSize = this.adaptiveBatchSize;
+        return (request, attempt, tookNanos, success) -> {
+            metrics.onAttempt(request, attempt, tookNanos, success);
+            adaptiveBatchSize.onAttempt(request, attempt, tookNanos, success);
+        };
+    }
+    
+    /**
+     * 定时任务到期后转交给 executor 执行, executor 已关闭时在定时器线程上执行
+     */
+    private static BatchScheduler handOff(BatchScheduler scheduler, Executor executor) {
+        return (command, delay, name) -> scheduler.schedule(() -> {
+            try {
+                executor.execute(command);
+            } catch (RejectedExecutionException exception) {
+                command.run();
+            }
+        }, delay, name);
+    }
+    
+    /**
+     * 分段数向上取整为2的幂
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> Stripe<T>[] newStripes(int stripes, Supplier<BatchRequest<T>> batchRequestSupplier) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        Stripe<T>[] result = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            result[i] = new Stripe<>(batchRequestSupplier.get());
+        }
+        return result;
     }
     
     
@@ -123,68 +483,632 @@ public class BatchProcessor<T> implements Closeable {
             @Override
             public void afterBatch(BatchResponse response) {}
     
-            @Override
-            public void afterBatch(Exception exception, BatchResponse response) {}
-        },batchHandler);
+            @Override
+            public void afterBatch(Exception exception, BatchResponse response) {}
+        },batchHandler);
+    }
+    
+    
+    /**
+     * 使用外部定时器, 刷新与重试共用该定时器, 处理器关闭时不会关闭定时器
+     * 多个处理器可共享同一个定时器, 如 HashedWheelScheduler.shared()
+     * @param batchHandler
+     * @param scheduler
+     * @return
+     */
+    public static Builder builder(BatchHandler batchHandler, BatchScheduler scheduler) {
+        Objects.requireNonNull(batchHandler, "batchHandler");
+        return builder(new Listener() {
+            @Override
+            public void beforBatch(BatchRequest t) {}
+            
+            @Override
+            public void afterBatch(BatchResponse response) {}
+            
+            @Override
+            public void afterBatch(Exception exception, BatchResponse response) {}
+        }, batchHandler, scheduler);
+    }
+    
+    public static Builder builder(Listener listener, BatchHandler batchHandler, BatchScheduler scheduler) {
+        Objects.requireNonNull(listener, "listener");
+        Objects.requireNonNull(batchHandler, "batchHandler");
+        Objects.requireNonNull(scheduler, "scheduler");
+        return new Builder(listener, batchHandler, scheduler, scheduler, () -> {});
+    }
+    
+    public static Builder builder(Listener listener, BatchHandler batchHandler) {
+        Objects.requireNonNull(listener, "listener");
+        Objects.requireNonNull(batchHandler, "batchHandler");
+        ScheduledThreadPoolExecutor flushScheduledThreadPoolExecutor = BatchScheduler.initScheduler();
+        ScheduledThreadPoolExecutor retryScheduledThreadPoolExecutor = BatchScheduler.initScheduler();
+        Builder builder = new Builder(listener, batchHandler, buildScheduler(flushScheduledThreadPoolExecutor),
+                buildScheduler(retryScheduledThreadPoolExecutor), () -> {
+            BatchScheduler.terminate(flushScheduledThreadPoolExecutor, 10L, TimeUnit.SECONDS);
+            BatchScheduler.terminate(retryScheduledThreadPoolExecutor, 10L, TimeUnit.SECONDS);
+        });
+        builder.abortPolicies.add((BatchAbortPolicy) flushScheduledThreadPoolExecutor.getRejectedExecutionHandler());
+        builder.abortPolicies.add((BatchAbortPolicy) retryScheduledThreadPoolExecutor.getRejectedExecutionHandler());
+        return builder;
+    }
+    
+    /**
+     * 添加处理对象
+     *
+     * 缓冲区已满时按背压策略处理, 被拒绝时抛出 BatchRejectedExecutionException
+     * @param t
+     * @return
+     */
+    public BatchProcessor add(T t) {
+        BatchBackpressurePolicy.Action action;
+        try {
+            action = this.admit(t, 0L, false, -1L);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new BatchRejectedExecutionException("interrupted while waiting for batch buffer capacity");
+        }
+        if (action == BatchBackpressurePolicy.Action.REJECT) {
+            throw new BatchRejectedExecutionException("batch buffer is full, item rejected");
+        }
+        return this;
+    }
+    
+    /**
+     * 添加 int 数据, 需使用 IntBatchHandler 创建处理器
+     * @param value
+     * @return
+     */
+    public BatchProcessor addInt(int value) {
+        this.ensurePrimitive(IntBatchRequest.class);
+        return this.addPrimitive(value);
+    }
+    
+    /**
+     * 添加 long 数据, 需使用 LongBatchHandler 创建处理器
+     * @param value
+     * @return
+     */
+    public BatchProcessor addLong(long value) {
+        this.ensurePrimitive(LongBatchRequest.class);
+        return this.addPrimitive(value);
+    }
+    
+    /**
+     * 添加 double 数据, 需使用 DoubleBatchHandler 创建处理器
+     * @param value
+     * @return
+     */
+    public BatchProcessor addDouble(double value) {
+        this.ensurePrimitive(DoubleBatchRequest.class);
+        return this.addPrimitive(Double.doubleToRawLongBits(value));
+    }
+    
+    private void ensurePrimitive(Class<?> type) {
+        if (!type.isInstance(this.stripes[0].requests)) {
+            throw new IllegalStateException(type.getSimpleName() + " is required, build the processor with the matching primitive BatchHandler");
+        }
+    }
+    
+    private BatchProcessor addPrimitive(long bits) {
+        BatchBackpressurePolicy.Action action;
+        try {
+            action = this.admit(null, bits, true, -1L);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new BatchRejectedExecutionException("interrupted while waiting for batch buffer capacity");
+        }
+        if (action == BatchBackpressurePolicy.Action.REJECT) {
+            throw new BatchRejectedExecutionException("batch buffer is full, item rejected");
+        }
+        return this;
+    }
+    
+    /**
+     * 添加处理对象, 缓冲区已满时最多等待指定时间
+     *
+     * 对 block、timeout 策略, 等待时间以本方法参数为准
+     * @param t
+     * @param timeout
+     * @param unit
+     * @return 数据是否进入缓冲区(被拒绝或被丢弃时返回 false)
+     * @throws InterruptedException
+     */
+    public boolean offer(T t, long timeout, TimeUnit unit) throws InterruptedException {
+        BatchBackpressurePolicy.Action action = this.admit(t, 0L, false, unit.toNanos(timeout));
+        return action != BatchBackpressurePolicy.Action.REJECT && action != BatchBackpressurePolicy.Action.DROP_NEWEST;
+    }
+    
+    /**
+     * 获取缓冲区容量并写入数据
+     *
+     * @param t 对象数据
+     * @param bits 原始类型数据, primitive 为 true 时使用
+     * @param primitive 是否为原始类型数据
+     */
+    private BatchBackpressurePolicy.Action admit(T t, long bits, boolean primitive, long timeoutNanos) throws InterruptedException {
+        this.ensureOpen();
+        if (this.capacity == null || this.capacity.tryAcquire()) {
+            this.append(t, bits, primitive, null, 0, true);
+            return BatchBackpressurePolicy.Action.ACCEPT;
+        }
+        BatchBackpressurePolicy.Action action = this.backpressurePolicy.onFull(this.capacity, timeoutNanos);
+        switch (action) {
+            case ACCEPT:
+                this.append(t, bits, primitive, null, 0, true);
+                break;
+            case DROP_OLDEST:
+                if (!this.replaceOldest(t, bits, primitive)) {
+                    // 当前分段没有未封存的数据可丢弃, 丢弃新数据
+                    action = BatchBackpressurePolicy.Action.DROP_NEWEST;
+                }
+                break;
+            case CALLER_RUNS:
+                this.runInCaller(t, bits, primitive);
+                break;
+            default:
+                break;
+        }
+        return action;
+    }
+    
+    /**
+     * 写入数据
+     *
+     * @param replayedFrom 重放数据所在的日志段, 不再重复写入日志
+     * @param replayedOffset 重放数据在段内的位置
+     * @param permit 调用方是否已获取一个容量许可
+     */
+    private void append(T t, long bits, boolean primitive, BatchJournal.Segment replayedFrom, int replayedOffset, boolean permit) {
+        long weight = primitive ? 0L : this.weigh(t);
+        byte[] record = this.journal != null && replayedFrom == null ? this.codec.encode(t) : null;
+        Stripe<T> stripe = this.lockStripe(t);
+        BatchRequest full = null;
+        BatchRequest batchRequest = null;
+        boolean added = false;
+        try {
+            this.ensureOpen();
+            // 加入后会超过字节上限时, 先封存当前批次
+            if (this.maxBatchBytes > 0 && stripe.requests.numberOfActions() > 0 && stripe.requests.weight + weight > this.maxBatchBytes) {
+                full = this.seal(stripe, BatchMetrics.SealTrigger.SIZE);
+            }
+            if (replayedFrom != null) {
+                this.ticket(stripe.requests).track(replayedFrom, replayedOffset);
+            } else if (record != null) {
+                // 数据先写入日志, 再进入批次
+                this.journal.append(record, this.ticket(stripe.requests));
+            }
+            if (primitive) {
+                stripe.requests.addPrimitive(bits);
+            } else {
+                stripe.requests.add(t, weight);
+            }
+            if (permit) {
+                stripe.requests.permits++;
+            }
+            added = true;
+            this.metrics.onItemAdded();
+            batchRequest = this.newBatchRequestIfNeeded(stripe);
+            this.startLinger(stripe);
+        } finally {
+            stripe.lock.unlock();
+            if (!added && permit && this.capacity != null) {
+                this.capacity.release();
+            }
+        }
+        if (full != null) {
+            this.dispatch(full);
+        }
+        if (batchRequest != null) {
+            this.dispatch(batchRequest);
+        }
+    }
+    
+    private JournalTicket ticket(BatchRequest<T> batchRequest) {
+        if (batchRequest.journalTicket == null) {
+            batchRequest.journalTicket = new JournalTicket();
+        }
+        return batchRequest.journalTicket;
+    }
+    
+    /**
+     * 重放日志中的数据, 不受背压策略影响
+     *
+     * 在构造方法中执行, 此时还不能 flush, 容量不足时不等待, 缓冲区暂时可以超过 maxBufferedItems
+     */
+    private void replay(BatchJournal.Segment segment, int offset, byte[] record) {
+        boolean permit = this.capacity == null || this.capacity.tryAcquire();
+        this.append(this.codec.decode(record), 0L, false, segment, offset, permit);
+    }
+    
+    private long weigh(T t) {
+        return this.weigher == null ? 0L : this.weigher.weigh(t);
+    }
+    
+    /**
+     * 丢弃当前分段中最早的数据, 新数据沿用其容量许可
+     */
+    private boolean replaceOldest(T t, long bits, boolean primitive) {
+        long weight = primitive ? 0L : this.weigh(t);
+        byte[] record = this.journal != null ? this.codec.encode(t) : null;
+        Stripe<T> stripe = this.lockStripe(t);
+        BatchRequest batchRequest;
+        try {
+            this.ensureOpen();
+            // 自定义策略返回 DROP_OLDEST 时, 合并批次同样不丢弃已有数据
+            if (stripe.requests.numberOfActions() == 0 || stripe.requests instanceof CoalescingBatchRequest) {
+                return false;
+            }
+            T oldest = stripe.requests.removeFirst();
+            if (record != null) {
+                // 被丢弃的数据视为已确认
+                JournalTicket ticket = this.ticket(stripe.requests);
+                ticket.ackFirst();
+                this.journal.append(record, ticket);
+            }
+            if (primitive) {
+                stripe.requests.addPrimitive(bits);
+            } else {
+                stripe.requests.weight -= this.weigh(oldest);
+                stripe.requests.add(t, weight);
+            }
+            this.metrics.onItemAdded();
+            batchRequest = this.newBatchRequestIfNeeded(stripe);
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (batchRequest != null) {
+            this.dispatch(batchRequest);
+        }
+        return true;
+    }
+    
+    /**
+     * 单条数据组成批次, 在调用线程上执行
+     *
+     * 分区模式下不参与同一 key 的串行分发
+     */
+    private void runInCaller(T t, long bits, boolean primitive) {
+        BatchRequest<T> batchRequest = this.batchRequestSupplier.get();
+        if (primitive) {
+            batchRequest.addPrimitive(bits);
+        } else {
+            batchRequest.add(t, this.weigh(t));
+        }
+        this.metrics.onItemAdded();
+        this.batchRequestHandler.executeInCaller(batchRequest);
+    }
+    
+    /**
+     * 批次结束, 归还缓冲区容量, 开启复用时归还批次对象
+     */
+    private void onBatchComplete(BatchRequest<T> batchRequest) {
+        Object key = batchRequest.key;
+        if (this.capacity != null && batchRequest.permits > 0) {
+            this.capacity.release(batchRequest.permits);
+        }
+        if (batchRequest.journalTicket != null) {
+            if (batchRequest.isFailure()) {
+                this.requeue(batchRequest);
+            } else {
+                batchRequest.journalTicket.ackAll();
+            }
+        }
+        if (this.requestPool != null) {
+            this.requestPool.release(batchRequest);
+        }
+        if (this.sequencer != null && key != null) {
+            // 分发同一 key 的下一个批次
+            BatchRequest<T> next = this.sequencer.release(key);
+            if (next != null) {
+                this.dispatch(next);
+            }
+        }
+    }
+    
+    /**
+     * 失败批次的数据写入日志的保留段, 再确认原记录, 使原记录所在段可以回收; 保留的数据下次启动时重放
+     *
+     * 日志已关闭或写入失败时不确认原记录
+     */
+    private void requeue(BatchRequest<T> batchRequest) {
+        try {
+            for (T item : batchRequest.getBatchData()) {
+                this.journal.retain(this.codec.encode(item));
+            }
+        } catch (IllegalStateException | UncheckedIOException exception) {
+            batchRequest.journalTicket.clear();
+            return;
+        }
+        batchRequest.journalTicket.ackAll();
+    }
+    
+    private void dispatch(BatchRequest<T> requests) {
+        if (this.spillQueue != null && this.shouldSpill(requests) && this.spill(requests)) {
+            return;
+        }
+        this.batchRequestHandler.execute(requests);
+    }
+    
+    /**
+     * 已有批次溢写未读回时, 后续批次也溢写, 保证先进先出
+     */
+    private boolean shouldSpill(BatchRequest<T> requests) {
+        return this.spillQueue.pendingBatches() > 0
+                || this.batchRequestHandler.queuedItems() + requests.numberOfActions() > this.maxQueuedItems;
+    }
+    
+    /**
+     * 批次数据写入溢写文件, 容量许可及日志确认信息保留在内存中, 读回时还原
+     *
+     * @return 是否溢写成功, 失败时仍在内存中排队
+     */
+    private boolean spill(BatchRequest<T> requests) {
+        try {
+            this.spillQueue.offer(requests.getBatchData(), new SpillState(requests.permits, requests.journalTicket, requests.key));
+        } catch (UncheckedIOException exception) {
+            return false;
+        }
+        requests.permits = 0;
+        requests.journalTicket = null;
+        if (this.requestPool != null) {
+            this.requestPool.release(requests);
+        }
+        this.batchRequestHandler.executeDeferred(this.readBack);
+        return true;
+    }
+    
+    /**
+     * 读回溢写批次; 读取失败时以失败结束该批次, 归还其容量许可并释放 key, 开启日志时数据在下次启动时重放
+     */
+    private BatchRequest<T> readBack() {
+        BatchSpillQueue.Spilled<T> spilled;
+        try {
+            spilled = this.spillQueue.poll();
+        } catch (BatchSpillReadException exception) {
+            BatchRequest<T> batchRequest = this.restore(this.batchRequestSupplier.get(), (SpillState) exception.getAttachment());
+            batchRequest.setResponseState(true);
+            this.batchRequestHandler.fail(batchRequest, exception);
+            return null;
+        }
+        if (spilled == null) {
+            return null;
+        }
+        BatchRequest<T> batchRequest = this.batchRequestSupplier.get();
+        for (T item : spilled.getItems()) {
+            batchRequest.add(item, this.weigh(item));
+        }
+        return this.restore(batchRequest, (SpillState) spilled.getAttachment());
+    }
+    
+    private BatchRequest<T> restore(BatchRequest<T> batchRequest, SpillState state) {
+        batchRequest.permits = state.permits;
+        batchRequest.journalTicket = state.journalTicket;
+        batchRequest.key = state.key;
+        return batchRequest;
+    }
+    
+    /**
+     * 获取数据对应的分段并加锁, 跳过已被淘汰的 key 缓冲区
+     */
+    private Stripe<T> lockStripe(T t) {
+        for (;;) {
+            Stripe<T> stripe = this.keyExtractor == null ? this.stripe() : this.stripe(t);
+            stripe.lock.lock();
+            if (!stripe.evicted) {
+                return stripe;
+            }
+            stripe.lock.unlock();
+        }
+    }
+    
+    /**
+     * 数据所属 key 的缓冲区, 不存在时创建, 打开的 key 超过上限时淘汰最久未使用的 key
+     */
+    private Stripe<T> stripe(T t) {
+        Object key = Objects.requireNonNull(this.keyExtractor.apply(t), "key");
+        Stripe<T> stripe;
+        BatchRequest<T> evicted = null;
+        synchronized (this.keyedStripes) {
+            stripe = this.keyedStripes.get(key);
+            if (stripe == null) {
+                BatchRequest<T> batchRequest = this.batchRequestSupplier.get();
+                batchRequest.key = key;
+                stripe = new Stripe<>(batchRequest);
+                stripe.key = key;
+                this.keyedStripes.put(key, stripe);
+                if (this.keyedStripes.size() > this.maxOpenKeys) {
+                    Iterator<Stripe<T>> iterator = this.keyedStripes.values().iterator();
+                    Stripe<T> eldest = iterator.next();
+                    iterator.remove();
+                    // 在同一 key 的新缓冲区封存之前登记到串行队列
+                    evicted = this.evict(eldest);
+                }
+            }
+        }
+        if (evicted != null) {
+            this.dispatch(evicted);
+        }
+        return stripe;
+    }
+    
+    /**
+     * 淘汰 key 缓冲区, 其中的数据立即封存, 调用方需持有 keyedStripes 锁
+     * @return 可以立即分发的批次
+     */
+    private BatchRequest<T> evict(Stripe<T> stripe) {
+        stripe.lock.lock();
+        try {
+            stripe.evicted = true;
+            this.cancelLinger(stripe);
+            if (stripe.requests.numberOfActions() > 0) {
+                BatchRequest<T> batchRequest = stripe.requests;
+                this.metrics.onSealed(BatchMetrics.SealTrigger.FLUSH, batchRequest.numberOfActions());
+                return this.sequence(batchRequest);
+            }
+            if (this.requestPool != null) {
+                this.requestPool.release(stripe.requests);
+            }
+            return null;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+    
+    /**
+     * 分段收到第一条数据时开始计时, 到期后封存, 按阈值封存时取消, 调用方需持有分段锁
+     */
+    private void startLinger(Stripe<T> stripe) {
+        Long linger = stripe.key != null && this.keyLinger != null ? this.keyLinger : this.linger;
+        if (linger == null || stripe.linger != null || stripe.requests.numberOfActions() == 0) {
+            return;
+        }
+        int sealed = stripe.sealed;
+        stripe.linger = this.flushScheduler.schedule(() -> this.lingerExpired(stripe, sealed), linger, "generic");
+    }
+    
+    private void lingerExpired(Stripe<T> stripe, int sealed) {
+        if (this.closed) {
+            return;
+        }
+        BatchRequest<T> batchRequest = null;
+        stripe.lock.lock();
+        try {
+            // 计时期间已按阈值封存过, 新批次由新的计时器负责
+            if (stripe.sealed == sealed && !stripe.evicted && stripe.requests.numberOfActions() > 0) {
+                stripe.linger = null;
+                if (this.rateLimiter != null && stripe.throttled < MAX_THROTTLED_DEFERRALS && this.rateLimiter.isThrottled()) {
+                    // 限流中, 与定时 flush 相同, 未满的批次继续累积并重新计时
+                    stripe.throttled++;
+                    this.startLinger(stripe);
+                } else {
+                    batchRequest = this.seal(stripe, BatchMetrics.SealTrigger.TIME);
+                }
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (batchRequest != null) {
+            this.dispatch(batchRequest);
+        }
+    }
+    
+    private void cancelLinger(Stripe<T> stripe) {
+        if (stripe.linger != null) {
+            stripe.linger.cancel();
+            stripe.linger = null;
+        }
+    }
+    
+    /**
+     * 关闭内部分发线程池前, 等待排在同一 key 之后及等待并发许可的批次进入线程池
+     */
+    private void awaitDispatched(long timeout, TimeUnit unit) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        this.awaitSequenced(deadline);
+        try {
+            this.batchRequestHandler.awaitClose(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * 等待排在同一 key 在途批次之后的批次全部分发
+     */
+    private boolean awaitSequenced(long deadline) {
+        while (this.sequencer != null && this.sequencer.activeKeys() > 0) {
+            if (System.nanoTime() - deadline >= 0) {
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        return true;
     }
     
+    /**
+     * 当前线程对应的分段, 同一线程总是落在同一分段上
+     */
+    private Stripe<T> stripe() {
+        if (this.stripeMask == 0) {
+            return this.stripes[0];
+        }
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return this.stripes[(hash ^ (hash >>> 16)) & this.stripeMask];
+    }
     
-    public static Builder builder(Listener listener, BatchHandler batchHandler) {
-        Objects.requireNonNull(listener, "listener");
-        Objects.requireNonNull(batchHandler, "batchHandler");
-        ScheduledThreadPoolExecutor flushScheduledThreadPoolExecutor = BatchScheduler.initScheduler();
-        ScheduledThreadPoolExecutor retryScheduledThreadPoolExecutor = BatchScheduler.initScheduler();
-        return new Builder(listener, batchHandler, buildScheduler(flushScheduledThreadPoolExecutor),
-                buildScheduler(retryScheduledThreadPoolExecutor), () -> {
-            BatchScheduler.terminate(flushScheduledThreadPoolExecutor, 10L, TimeUnit.SECONDS);
-            BatchScheduler.terminate(retryScheduledThreadPoolExecutor, 10L, TimeUnit.SECONDS);
-        });
+    /**
+     * 封存分段中的数据, 调用方需持有分段锁
+     * @return 可以立即分发的批次, 排在同一 key 在途批次之后时返回 null
+     */
+    private BatchRequest<T> seal(Stripe<T> stripe, BatchMetrics.SealTrigger trigger) {
+        BatchRequest<T> batchRequest = stripe.requests;
+        this.metrics.onSealed(trigger, batchRequest.numberOfActions());
+        // 创建新对象
+        stripe.requests = this.batchRequestSupplier.get();
+        stripe.requests.key = stripe.key;
+        stripe.sealed++;
+        stripe.throttled = 0;
+        this.cancelLinger(stripe);
+        return this.sequence(batchRequest);
     }
     
     /**
-     * 添加处理对象
-     * @param t
-     * @return
+     * 持有分段锁时登记到 key 的串行队列, 同一 key 的批次按封存顺序分发, 与释放锁后哪个线程先分发无关
+     * @return 可以立即分发的批次, 排在同一 key 在途批次之后时返回 null, 由在途批次结束后分发
      */
-    public BatchProcessor add(T t) {
-        this.lock.lock();
-        BatchRequest batchRequest = null;
-        try {
-            this.ensureOpen();
-            this.requests.add(t);
-            batchRequest = this.newBatchRequestIfNeeded();
-            System.out.println("我添加数据了,数据值为:"+ t);
-        } finally {
-            this.lock.unlock();
+    private BatchRequest<T> sequence(BatchRequest<T> batchRequest) {
+        if (batchRequest instanceof CoalescingBatchRequest) {
+            this.coalescedAddedItems.add(((CoalescingBatchRequest<T>) batchRequest).addedItems());
+            this.coalescedItems.add(batchRequest.numberOfActions());
         }
-        if (batchRequest != null) {
-            this.execute(batchRequest);
+        if (this.sequencer != null && batchRequest.key != null && !this.sequencer.acquire(batchRequest.key, batchRequest)) {
+            return null;
         }
-        
-        return this;
+        return batchRequest;
     }
     
-    private void execute(BatchRequest requests) {
-        this.batchRequestHandler.execute(requests);
+    /**
+     * 依次封存所有非空分段并执行
+     */
+    private void sealAll(BatchMetrics.SealTrigger trigger) {
+        for (Stripe<T> stripe : this.stripes) {
+            this.sealAndExecute(stripe, trigger);
+        }
+        if (this.keyedStripes != null) {
+            List<Stripe<T>> keyed;
+            synchronized (this.keyedStripes) {
+                keyed = new ArrayList<>(this.keyedStripes.values());
+            }
+            for (Stripe<T> stripe : keyed) {
+                this.sealAndExecute(stripe, trigger);
+            }
+        }
     }
     
-    private void execute() {
-        BatchRequest batchRequest = this.requests;
-        // 创建新对象
-        this.requests = this.batchRequestSupplier.get();
-        this.batchRequestHandler.execute(batchRequest);
+    private void sealAndExecute(Stripe<T> stripe, BatchMetrics.SealTrigger trigger) {
+        BatchRequest<T> batchRequest = null;
+        stripe.lock.lock();
+        try {
+            if (!stripe.evicted && stripe.requests.numberOfActions() > 0) {
+                batchRequest = this.seal(stripe, trigger);
+            }
+        } finally {
+            stripe.lock.unlock();
+        }
+        if (batchRequest != null) {
+            this.dispatch(batchRequest);
+        }
     }
     
     
     // 判断是否可以执行
-    private BatchRequest newBatchRequestIfNeeded() {
+    private BatchRequest newBatchRequestIfNeeded(Stripe<T> stripe) {
         this.ensureOpen();
-        if (!this.isOverTheLimit()) {
+        if (!this.isOverTheLimit(stripe.requests)) {
             return null;
         } else {
-            BatchRequest batchRequest = this.requests;
-            this.requests = this.batchRequestSupplier.get();
-            return batchRequest;
+            return this.seal(stripe, BatchMetrics.SealTrigger.SIZE);
         }
     }
     
@@ -193,14 +1117,50 @@ public class BatchProcessor<T> implements Closeable {
      *
      * @return
      */
-    private boolean isOverTheLimit() {
-        if (this.batchSize != -1 && this.requests.numberOfActions() >= this.batchSize) {
+    private boolean isOverTheLimit(BatchRequest<T> requests) {
+        int batchSize = this.currentBatchSize();
+        if (batchSize != -1 && requests.numberOfActions() >= batchSize) {
+            return true;
+        } else if (this.maxBatchBytes > 0 && requests.weight >= this.maxBatchBytes) {
             return true;
         } else {
            return false;
         }
     }
     
+    /**
+     * 当前生效的批次大小, 开启自适应时随 executeBatch 耗时变化
+     * @return
+     */
+    public int currentBatchSize() {
+        return this.adaptiveBatchSize != null ? this.adaptiveBatchSize.currentBatchSize() : this.batchSize;
+    }
+    
+    /**
+     * 运行指标, 可通过 metrics().snapshot() 获取快照
+     * @return
+     */
+    public BatchMetrics metrics() {
+        return this.metrics;
+    }
+    
+    /**
+     * 熔断期间暂存的批次数
+     * @return
+     */
+    public int parkedBatches() {
+        return this.batchRequestHandler.parkedBatches();
+    }
+    
+    /**
+     * 合并比例: 已封存批次的原始数据条数 / 合并后条数, 未开启合并或没有数据时为1
+     * @return
+     */
+    public double coalescingRatio() {
+        long items = this.coalescedItems.sum();
+        return items == 0 ? 1D : (double) this.coalescedAddedItems.sum() / items;
+    }
+    
     /**
      *
      * 当try块退出的时候，会自动调用下列方法
@@ -232,11 +1192,13 @@ public class BatchProcessor<T> implements Closeable {
             closed = true;
             this.cancellableFlushTask.cancel();
             
-            if (requests.numberOfActions() > 0) {
-                execute();
-            }
+            sealAll(BatchMetrics.SealTrigger.FLUSH);
             try {
-                return this.batchRequestHandler.awaitClose(timeout, unit);
+                long deadline = System.nanoTime() + unit.toNanos(timeout);
+                if (!this.awaitSequenced(deadline)) {
+                    return false;
+                }
+                return this.batchRequestHandler.awaitClose(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
             } finally {
                 onClose.run();
             }
@@ -300,21 +1262,22 @@ public class BatchProcessor<T> implements Closeable {
      * 刷新任务处理器
      */
     class Flush implements Runnable {
+        
+        // 限流中连续跳过的次数, 定时任务串行执行
+        private int throttled;
+        
         @Override
         public void run() {
-            lock.lock();
-            try {
-                if (closed) {
-                    return;
-                }
-                if (requests.numberOfActions() == 0) {
-                    return;
-                }
-                System.out.println("我准备触发flush数据了");
-                execute();
-            } finally {
-                lock.unlock();
+            if (closed) {
+                return;
+            }
+            if (rateLimiter != null && this.throttled < MAX_THROTTLED_DEFERRALS && rateLimiter.isThrottled()) {
+                // 限流中, 未满的批次继续累积
+                this.throttled++;
+                return;
             }
+            this.throttled = 0;
+            sealAll(BatchMetrics.SealTrigger.TIME);
         }
     }
     
@@ -322,43 +1285,208 @@ public class BatchProcessor<T> implements Closeable {
      * Flush pending delete
      */
     public void flush() {
-        lock.lock();
-        try {
-            ensureOpen();
-            if (this.requests.numberOfActions() > 0) {
-                execute();
+        ensureOpen();
+        sealAll(BatchMetrics.SealTrigger.FLUSH);
+    }
+    
+    /**
+     * 读取指标时计算的瞬时值
+     */
+    private final class ProcessorGauges implements BatchMetrics.Gauges {
+        
+        @Override
+        public long queuedItems() {
+            return batchRequestHandler.queuedItems();
+        }
+        
+        @Override
+        public int queuedBatches() {
+            return batchRequestHandler.queuedBatches();
+        }
+        
+        @Override
+        public long bufferedItems() {
+            return capacity == null ? -1L : (long) maxBufferedItems - capacity.availablePermits();
+        }
+        
+        @Override
+        public int inFlightBatches() {
+            return batchRequestHandler.inFlightBatches();
+        }
+        
+        @Override
+        public int parkedBatches() {
+            return batchRequestHandler.parkedBatches();
+        }
+        
+        @Override
+        public long rejectedExecutions() {
+            long rejected = 0L;
+            for (BatchAbortPolicy abortPolicy : abortPolicies) {
+                rejected += abortPolicy.rejected();
             }
-        } finally {
-            lock.unlock();
+            return rejected;
+        }
+    }
+    
+    /**
+     * 数据分段
+     */
+    static final class Stripe<T> {
+        
+        final ReentrantLock lock = new ReentrantLock();
+        
+        BatchRequest<T> requests;
+        
+        // 分区模式下的 key, 线程分段为空
+        Object key;
+        
+        // 是否已被淘汰, 淘汰后不再写入
+        boolean evicted;
+        
+        // 封存次数, 用于识别过期的计时器
+        int sealed;
+        
+        // 从第一条数据开始的计时器
+        Cancellable linger;
+        
+        // 限流中连续推迟封存的次数
+        int throttled;
+        
+        Stripe(BatchRequest<T> requests) {
+            this.requests = requests;
+        }
+    }
+    
+    /**
+     * 溢写批次保留在内存中的信息
+     */
+    private static final class SpillState {
+        
+        final int permits;
+        
+        final JournalTicket journalTicket;
+        
+        final Object key;
+        
+        SpillState(int permits, JournalTicket journalTicket, Object key) {
+            this.permits = permits;
+            this.journalTicket = journalTicket;
+            this.key = key;
         }
     }
     
     public static class Builder<T> {
         
-        private final Listener listener;
+        final Listener listener;
         
         // 刷新定时器
-        private final BatchScheduler flushScheduler;
+        final BatchScheduler flushScheduler;
         
-        private final BatchScheduler retryScheduler;
+        final BatchScheduler retryScheduler;
         
         // 任务关闭回掉
-        private final Runnable onClose;
+        final Runnable onClose;
         
         // 处理条数
-        private Integer batchSize;
+        Integer batchSize;
         
         // 线程执行数(默认为1)
-        private int concurrentRequests = 1;
+        int concurrentRequests = 1;
         
         // 执行间隔时间
-        private Long flushInterval;
+        Long flushInterval;
         
         // 批处理处理程序接口
-        private BatchHandler handler;
+        BatchHandler handler;
         
         // 补偿策略
-        private BatchBackoffPolicy batchBackoffPolicy = BatchBackoffPolicy.exponentialBackoff();
+        BatchBackoffPolicy batchBackoffPolicy = BatchBackoffPolicy.exponentialBackoff();
+        
+        // 写入分段数(默认为1, 即单锁模式)
+        int stripes = 1;
+        
+        // 是否使用内部分发线程池
+        boolean asyncDispatch;
+        
+        // 外部分发线程池, 由调用方负责关闭
+        Executor dispatchExecutor;
+        
+        // 是否使用虚拟线程分发(Java 21 及以上)
+        boolean virtualThreads;
+        
+        // 自适应批次大小范围及目标耗时(默认关闭)
+        int adaptiveMinBatchSize;
+        
+        int adaptiveMaxBatchSize;
+        
+        long adaptiveTargetLatencyNanos;
+        
+        // 单批次最大字节数(默认不限制)
+        long maxBatchBytes = -1L;
+        
+        // 数据字节数计算
+        BatchWeigher<T> weigher;
+        
+        // 是否复用 BatchRequest
+        boolean recycleRequests;
+        
+        // 预写日志及序列化方式
+        BatchJournal journal;
+        
+        BatchCodec<T> codec;
+        
+        // 溢写队列及内存中排队的最大数据条数
+        BatchSpillQueue<T> spillQueue;
+        
+        long maxQueuedItems;
+        
+        // 分区 key 提取方式、最大打开 key 数及 key 缓冲区最长等待时间
+        Function<T, ?> keyExtractor;
+        
+        int maxOpenKeys = 1024;
+        
+        Long keyLinger;
+        
+        // 批次从第一条数据起的最长等待时间
+        Long linger;
+        
+        // 批次内合并的 key 及合并方式
+        Function<T, ?> coalesceKeyFunction;
+        
+        BinaryOperator<T> coalesceMergeFunction;
+        
+        // 重试用尽后二分隔离毒数据(默认关闭)
+        BatchPoisonListener<T> poisonListener;
+        
+        // 重试预算(默认不限制)
+        BatchRetryBudget retryBudget;
+        
+        // 熔断器(默认关闭)及熔断期间是否暂存批次
+        BatchCircuitBreaker circuitBreaker;
+        
+        boolean parkWhileOpen;
+        
+        // 限流器(默认不限制)
+        BatchRateLimiter rateLimiter;
+        
+        // 所属处理器组, 构建后加入该组
+        BatchProcessorGroup group;
+        
+        // 处理器名称, 用于 JMX 注册(默认 batch-processor-序号)
+        String name;
+        
+        // 是否注册 JMX MBean(默认不注册)
+        boolean jmxEnabled;
+        
+        // 内部定时线程池的拒绝策略
+        final List<BatchAbortPolicy> abortPolicies = new ArrayList<>();
+        
+        // 缓冲区最大数据条数(默认不限制)
+        int maxBufferedItems = -1;
+        
+        // 缓冲区满时的背压策略
+        BatchBackpressurePolicy backpressurePolicy = BatchBackpressurePolicy.block();
         
         public Builder(Listener listener, BatchHandler handler, BatchScheduler flushScheduler, BatchScheduler retryScheduler, Runnable onClose) {
             this.listener = listener;
@@ -380,11 +1508,304 @@ public class BatchProcessor<T> implements Closeable {
             return this;
         }
         
+        /**
+         * 设置批次的最长等待时间, 从空批次收到第一条数据开始计时, 到期未达到阈值也封存, 按阈值封存时取消计时
+         * 与 flushInterval 不同, 每条数据的最长等待时间固定为 linger, 空闲时不唤醒定时器; 不能与 flushInterval 同时设置
+         * 分区模式下未设置 keyLinger 时同样作用于 key 缓冲区
+         * @param linger
+         * @param unit
+         * @return
+         */
+        public Builder setLinger(long linger, TimeUnit unit) {
+            if (linger < 1) {
+                throw new IllegalArgumentException("linger must be >= 1");
+            }
+            this.linger = Math.max(1L, unit.toMillis(linger));
+            return this;
+        }
+        
         public Builder setConcurrentRequests(int concurrentRequests) {
             this.concurrentRequests = concurrentRequests;
             return this;
         }
         
+        /**
+         * 设置写入分段数, 多个生产线程按线程分散到不同分段, 各分段独立加锁、独立按 batchSize 封存
+         * 分段数会向上取整为2的幂
+         * @param stripes
+         * @return
+         */
+        public Builder setStripes(int stripes) {
+            if (stripes < 1) {
+                throw new IllegalArgumentException("stripes must be >= 1");
+            }
+            this.stripes = stripes;
+            return this;
+        }
+        
+        /**
+         * 开启异步分发, 封存的批次交给内部固定线程池执行, add() 不再在调用线程上执行 BatchHandler
+         * 线程数等于 concurrentRequests, 即同时在途的批次数
+         * @param asyncDispatch
+         * @return
+         */
+        public Builder setAsyncDispatch(boolean asyncDispatch) {
+            this.asyncDispatch = asyncDispatch;
+            return this;
+        }
+        
+        /**
+         * 使用虚拟线程分发, 每个批次及每次重试在独立的虚拟线程上执行, 适合阻塞 IO 的处理器配合较大的 concurrentRequests
+         * 运行时低于 Java 21 时退回内部分发线程池(等同 setAsyncDispatch(true)); 设置了外部分发线程池时不生效
+         * @param virtualThreads
+         * @return
+         */
+        public Builder setVirtualThreads(boolean virtualThreads) {
+            this.virtualThreads = virtualThreads;
+            return this;
+        }
+        
+        /**
+         * 使用外部分发线程池, 处理器关闭时不会关闭该线程池
+         * 在途批次数仍由 concurrentRequests 限制
+         * @param dispatchExecutor
+         * @return
+         */
+        public Builder setDispatchExecutor(Executor dispatchExecutor) {
+            this.dispatchExecutor = Objects.requireNonNull(dispatchExecutor, "dispatchExecutor");
+            return this;
+        }
+        
+        /**
+         * 开启自适应批次大小, 以 batchSize 为初始值, 在 [minBatchSize, maxBatchSize] 内按 AIMD 调整
+         * executeBatch 耗时低于目标值时逐步增大, 超过目标值或失败时按比例缩小
+         * @param minBatchSize
+         * @param maxBatchSize
+         * @param targetLatency 单次 executeBatch 目标耗时
+         * @param unit
+         * @return
+         */
+        public Builder setAdaptiveBatchSize(int minBatchSize, int maxBatchSize, long targetLatency, TimeUnit unit) {
+            if (minBatchSize < 1 || maxBatchSize < minBatchSize) {
+                throw new IllegalArgumentException("batch size bounds must satisfy 1 <= min <= max");
+            }
+            if (targetLatency <= 0) {
+                throw new IllegalArgumentException("targetLatency must be > 0");
+            }
+            this.adaptiveMinBatchSize = minBatchSize;
+            this.adaptiveMaxBatchSize = maxBatchSize;
+            this.adaptiveTargetLatencyNanos = unit.toNanos(targetLatency);
+            return this;
+        }
+        
+        /**
+         * 设置单条数据的字节数计算方式
+         * @param weigher
+         * @return
+         */
+        public Builder setWeigher(BatchWeigher<T> weigher) {
+            this.weigher = Objects.requireNonNull(weigher, "weigher");
+            return this;
+        }
+        
+        /**
+         * 设置单批次最大字节数, 与 batchSize 任一达到即封存批次, 需同时设置 weigher
+         * 加入某条数据会超过上限时, 先封存当前批次再加入; 单条数据超过上限时单独成批
+         * @param maxBatchBytes
+         * @return
+         */
+        public Builder setMaxBatchBytes(long maxBatchBytes) {
+            if (maxBatchBytes < 1) {
+                throw new IllegalArgumentException("maxBatchBytes must be >= 1");
+            }
+            this.maxBatchBytes = maxBatchBytes;
+            return this;
+        }
+        
+        /**
+         * 开启 BatchRequest 复用, 批次按 batchSize 预分配容量, 处理完成后清空归还对象池
+         * 开启后 BatchHandler 与 Listener 不能在回调结束后继续持有 BatchRequest 及其数据
+         * ByteBufferBatchHandler 总是复用批次及其直接内存, 不受该设置影响
+         * @param recycleRequests
+         * @return
+         */
+        public Builder setRecycleRequests(boolean recycleRequests) {
+            this.recycleRequests = recycleRequests;
+            return this;
+        }
+        
+        /**
+         * 开启预写日志, 数据在 add() 返回前写入日志, 批次处理成功后确认, 构建时重放上次未确认的数据
+         * 处理器关闭时一并关闭日志; callerRuns 策略在调用线程直接执行的数据不写入日志
+         * @param journal
+         * @param codec
+         * @return
+         */
+        public Builder setJournal(BatchJournal journal, BatchCodec<T> codec) {
+            this.journal = Objects.requireNonNull(journal, "journal");
+            this.codec = Objects.requireNonNull(codec, "codec");
+            return this;
+        }
+        
+        /**
+         * 开启溢写, 等待分发的批次中数据超过 maxQueuedItems 条时, 后续批次序列化到溢写文件, 处理器追上后按先进先出读回执行
+         * 未配置分发线程池时自动开启异步分发; 处理器关闭时一并关闭溢写队列
+         * @param spillQueue
+         * @param maxQueuedItems 内存中排队等待分发的最大数据条数
+         * @return
+         */
+        public Builder setSpill(BatchSpillQueue<T> spillQueue, long maxQueuedItems) {
+            if (maxQueuedItems < 0) {
+                throw new IllegalArgumentException("maxQueuedItems must be >= 0");
+            }
+            this.spillQueue = Objects.requireNonNull(spillQueue, "spillQueue");
+            this.maxQueuedItems = maxQueuedItems;
+            return this;
+        }
+        
+        /**
+         * 开启按 key 分区, 每个 key 独立缓冲、独立按 batchSize / maxBatchBytes 封存, 批次通过 BatchRequest.getKey() 获取 key
+         * 同一 key 的批次按封存顺序串行分发, 不同 key 可并发执行(需 concurrentRequests > 1 并开启异步分发)
+         * 开启后 setStripes 不再生效; callerRuns 策略在调用线程直接执行的数据不参与串行分发
+         * @param keyExtractor 返回值不能为空, 需正确实现 equals/hashCode
+         * @return
+         */
+        public Builder setKeyExtractor(Function<T, ?> keyExtractor) {
+            this.keyExtractor = Objects.requireNonNull(keyExtractor, "keyExtractor");
+            return this;
+        }
+        
+        /**
+         * 设置同时打开的最大 key 缓冲区数(默认1024), 超过时淘汰最久未写入的 key, 其中的数据立即封存执行
+         * @param maxOpenKeys
+         * @return
+         */
+        public Builder setMaxOpenKeys(int maxOpenKeys) {
+            if (maxOpenKeys < 1) {
+                throw new IllegalArgumentException("maxOpenKeys must be >= 1");
+            }
+            this.maxOpenKeys = maxOpenKeys;
+            return this;
+        }
+        
+        /**
+         * 设置 key 缓冲区的最长等待时间, 从该 key 收到第一条数据开始计时, 到期未达到阈值也封存
+         * @param keyLinger
+         * @param unit
+         * @return
+         */
+        public Builder setKeyLinger(long keyLinger, TimeUnit unit) {
+            if (keyLinger < 1) {
+                throw new IllegalArgumentException("keyLinger must be >= 1");
+            }
+            this.keyLinger = Math.max(1L, unit.toMillis(keyLinger));
+            return this;
+        }
+        
+        /**
+         * 开启批次内合并, 同一批次中 key 相同的数据在加入时按 mergeFunction 合并, 处理器只收到合并后的数据
+         * batchSize 按合并后的条数判断, 缓冲区容量按原始条数占用; 可通过 coalescingRatio() 查看合并比例
+         * 不能与 dropOldest 背压策略同时使用
+         * @param keyFunction 合并 key
+         * @param mergeFunction (已有数据, 新数据) -> 合并后的数据
+         * @return
+         */
+        public Builder setCoalescing(Function<T, ?> keyFunction, BinaryOperator<T> mergeFunction) {
+            this.coalesceKeyFunction = Objects.requireNonNull(keyFunction, "keyFunction");
+            this.coalesceMergeFunction = Objects.requireNonNull(mergeFunction, "mergeFunction");
+            return this;
+        }
+        
+        /**
+         * 开启失败二分, 批次重试用尽(或抛出不可重试的异常)后拆成两半分别执行, 失败的一半继续二分
+         * 单条仍然失败的数据交给 poisonListener, 其余数据约 2*log2(n) 次额外调用后处理成功, 批次视为成功
+         * 二分过程中每个子批次只执行一次, 不再按补偿策略重试
+         * @param poisonListener
+         * @return
+         */
+        public Builder setBisectOnFailure(BatchPoisonListener<T> poisonListener) {
+            this.poisonListener = Objects.requireNonNull(poisonListener, "poisonListener");
+            return this;
+        }
+        
+        /**
+         * 设置缓冲区最大数据条数, 包含未封存、排队等待及正在执行的批次
+         * @param maxBufferedItems
+         * @return
+         */
+        public Builder setMaxBufferedItems(int maxBufferedItems) {
+            if (maxBufferedItems < 1) {
+                throw new IllegalArgumentException("maxBufferedItems must be >= 1");
+            }
+            this.maxBufferedItems = maxBufferedItems;
+            return this;
+        }
+        
+        /**
+         * 设置缓冲区满时的背压策略, 默认一直等待
+         * @param backpressurePolicy
+         * @return
+         */
+        public Builder setBackpressurePolicy(BatchBackpressurePolicy backpressurePolicy) {
+            this.backpressurePolicy = Objects.requireNonNull(backpressurePolicy, "backpressurePolicy");
+            return this;
+        }
+        
+        /**
+         * 设置重试预算, 重试次数按首次执行次数的比例限制, 超出预算的批次不再重试
+         * 同一个预算对象可以传给多个处理器, 配合 fullJitter / decorrelatedJitter 补偿策略防止重试风暴
+         * @param retryBudget
+         * @return
+         */
+        public Builder setRetryBudget(BatchRetryBudget retryBudget) {
+            this.retryBudget = Objects.requireNonNull(retryBudget, "retryBudget");
+            return this;
+        }
+        
+        /**
+         * 设置熔断器, 熔断期间批次以 BatchCircuitOpenException 快速失败, 状态变化通过 Listener.onCircuitStateChange 通知
+         * @param circuitBreaker
+         * @return
+         */
+        public Builder setCircuitBreaker(BatchCircuitBreaker circuitBreaker) {
+            return this.setCircuitBreaker(circuitBreaker, false);
+        }
+        
+        /**
+         * 设置熔断器
+         * @param circuitBreaker
+         * @param parkWhileOpen 为 true 时熔断期间暂存被拒绝的批次, 不占用并发许可, 熔断器关闭后重新执行;
+         *                      关闭处理器时超时仍未恢复的批次以 BatchCircuitOpenException 结束
+         * @return
+         */
+        public Builder setCircuitBreaker(BatchCircuitBreaker circuitBreaker, boolean parkWhileOpen) {
+            this.circuitBreaker = Objects.requireNonNull(circuitBreaker, "circuitBreaker");
+            this.parkWhileOpen = parkWhileOpen;
+            return this;
+        }
+        
+        /**
+         * 限制每秒批次数与每秒数据条数, 超出时延迟执行; 限流期间推迟定时 flush(最多连续3次), 上游批次继续累积
+         * 需要等待的批次保持并发许可并交给定时器, 到期后执行, add() 不等待限流; 并发许可用尽后再封存的批次在 add() 中等待许可
+         * concurrentRequests 为0或 callerRuns 在调用线程上执行时, 调用线程等待到限流截止时间
+         * @param batchesPerSecond 每秒批次数, 0 表示不限制
+         * @param itemsPerSecond 每秒数据条数, 0 表示不限制
+         * @return
+         */
+        public Builder setRateLimit(double batchesPerSecond, double itemsPerSecond) {
+            return this.setRateLimiter(new BatchRateLimiter(batchesPerSecond, itemsPerSecond));
+        }
+        
+        /**
+         * 设置限流器, 同一个限流器可以传给多个处理器, 共同遵守下游配额
+         * @param rateLimiter
+         * @return
+         */
+        public Builder setRateLimiter(BatchRateLimiter rateLimiter) {
+            this.rateLimiter = Objects.requireNonNull(rateLimiter, "rateLimiter");
+            return this;
+        }
+        
         public Builder setBackoffPolicy(BatchBackoffPolicy backoffPolicy) {
             if (backoffPolicy == null) {
                 throw new NullPointerException("'backoffPolicy' must not be null. To disable backoff, pass BackoffPolicy.noBackoff()");
@@ -394,12 +1815,79 @@ public class BatchProcessor<T> implements Closeable {
         }
         
         
+        /**
+         * 设置处理器名称, 作为 JMX ObjectName 中的 name, 开启 JMX 时同名处理器未关闭前再次构建会失败
+         * @param name
+         * @return
+         */
+        public Builder setName(String name) {
+            this.name = Objects.requireNonNull(name, "name");
+            return this;
+        }
+        
+        /**
+         * 是否注册 JMX MBean(com.alecor.batch:type=BatchProcessor,name=处理器名称), 默认不注册
+         * 注册后 MBeanServer 持有处理器的引用直到处理器关闭时注销, 不关闭的处理器不会被回收, 且同名处理器无法再次构建
+         * @param jmxEnabled
+         * @return
+         */
+        public Builder setJmxEnabled(boolean jmxEnabled) {
+            this.jmxEnabled = jmxEnabled;
+            return this;
+        }
+        
         public BatchProcessor build() {
-            return new BatchProcessor(this.batchSize, this.flushInterval, this.handler, this.listener, this.batchBackoffPolicy, this.flushScheduler,
-                    this.retryScheduler, this.concurrentRequests, this.onClose, createBatchRequest());
+            BatchProcessor<T> processor = new BatchProcessor<T>(this, createBatchRequest());
+            if (this.jmxEnabled) {
+                try {
+                    processor.metrics.register();
+                } catch (IllegalStateException exception) {
+                    processor.close();
+                    throw exception;
+                }
+            }
+            if (this.group != null) {
+                this.group.register(processor);
+            }
+            return processor;
         }
         
+        @SuppressWarnings("unchecked")
         private Supplier<BatchRequest<T>> createBatchRequest() {
+            if (this.handler instanceof ByteBufferBatchHandler) {
+                // 有字节上限时按上限分配直接内存, 避免扩容
+                int arenaCapacity = this.maxBatchBytes > 0 ? (int) Math.min(Integer.MAX_VALUE - 8, this.maxBatchBytes) : 64 * 1024;
+                return () -> (BatchRequest<T>) (BatchRequest) new ByteBufferBatchRequest(arenaCapacity);
+            }
+            if (this.coalesceKeyFunction != null) {
+                Function<T, ?> keyFunction = this.coalesceKeyFunction;
+                BinaryOperator<T> mergeFunction = this.coalesceMergeFunction;
+                if (this.recycleRequests && this.batchSize != null && this.batchSize > 0) {
+                    int initialCapacity = this.batchSize;
+                    return () -> new CoalescingBatchRequest<>(initialCapacity, keyFunction, mergeFunction);
+                }
+                return () -> new CoalescingBatchRequest<>(keyFunction, mergeFunction);
+            }
+            if (this.recycleRequests && this.batchSize != null && this.batchSize > 0) {
+                // 复用的批次按 batchSize 预分配, 避免扩容复制
+                int initialCapacity = this.batchSize;
+                if (this.handler instanceof IntBatchHandler) {
+                    return () -> (BatchRequest<T>) (BatchRequest) new IntBatchRequest(initialCapacity);
+                } else if (this.handler instanceof LongBatchHandler) {
+                    return () -> (BatchRequest<T>) (BatchRequest) new LongBatchRequest(initialCapacity);
+                } else if (this.handler instanceof DoubleBatchHandler) {
+                    return () -> (BatchRequest<T>) (BatchRequest) new DoubleBatchRequest(initialCapacity);
+                }
+                return () -> new BatchRequest<T>(initialCapacity);
+            }
+            // 原始类型处理器使用对应的原始类型批次, 避免装箱
+            if (this.handler instanceof IntBatchHandler) {
+                return () -> (BatchRequest<T>) (BatchRequest) new IntBatchRequest();
+            } else if (this.handler instanceof LongBatchHandler) {
+                return () -> (BatchRequest<T>) (BatchRequest) new LongBatchRequest();
+            } else if (this.handler instanceof DoubleBatchHandler) {
+                return () -> (BatchRequest<T>) (BatchRequest) new DoubleBatchRequest();
+            }
             return () -> new BatchRequest<T>();
         }
     }
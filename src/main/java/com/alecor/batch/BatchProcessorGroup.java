@@ -0,0 +1,182 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.Listener.BatchResponse;
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.scheduler.HashedWheelScheduler;
+import com.alecor.batch.thread.BatchScheduler;
+
+import java.io.Closeable;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchProcessorGroup
+ * @date 2026/10/18 23:40
+ * @Description 处理器组, 组内处理器共享一个定时器和一个分发线程池, 统一关闭
+ *
+ * 1、定时器用于刷新与重试, 默认为组内独占的 HashedWheelScheduler, 到期任务在分发线程池上执行, 不阻塞时间轮线程
+ * 2、各处理器仍按自身 concurrentRequests 限制在途批次数, 达到上限时不占用分发线程
+ * 3、关闭组时先关闭所有处理器, 再关闭组创建的定时器与分发线程池
+ *
+ * @Version V1.0
+ */
+
+public class BatchProcessorGroup implements Closeable {
+
+    private final BatchScheduler scheduler;
+
+    private final ExecutorService dispatchPool;
+
+    /**
+     * 关闭组自身创建的资源
+     */
+    private final Runnable onClose;
+
+    private final List<BatchProcessor> processors = new CopyOnWriteArrayList<>();
+
+    private volatile boolean closed;
+
+    /**
+     * 创建独占的时间轮定时器和固定大小的分发线程池
+     * @param dispatchThreads 分发线程数, 由组内所有处理器共享
+     */
+    public BatchProcessorGroup(int dispatchThreads) {
+        if (dispatchThreads < 1) {
+            throw new IllegalArgumentException("dispatchThreads must be >= 1");
+        }
+        ExecutorService pool = BatchScheduler.initDispatcher(dispatchThreads);
+        // 同步重试及刷新分发可能阻塞, 不能在时间轮线程上执行
+        HashedWheelScheduler wheel = new HashedWheelScheduler(10L, TimeUnit.MILLISECONDS, 512, pool);
+        this.scheduler = wheel;
+        this.dispatchPool = pool;
+        this.onClose = () -> {
+            BatchScheduler.terminate(pool, 10L, TimeUnit.SECONDS);
+            wheel.close();
+        };
+    }
+
+    /**
+     * 使用外部定时器与分发线程池, 关闭组时不会关闭它们
+     *
+     * 外部定时器为 HashedWheelScheduler 时应指定 taskExecutor, 否则重试与刷新在时间轮线程上执行
+     * @param scheduler
+     * @param dispatchPool
+     */
+    public BatchProcessorGroup(BatchScheduler scheduler, ExecutorService dispatchPool) {
+        this.scheduler = Objects.requireNonNull(scheduler, "scheduler");
+        this.dispatchPool = Objects.requireNonNull(dispatchPool, "dispatchPool");
+        this.onClose = () -> {};
+    }
+
+    public BatchProcessor.Builder builder(BatchHandler batchHandler) {
+        Objects.requireNonNull(batchHandler, "batchHandler");
+        return this.builder(new BatchProcessor.Listener() {
+            @Override
+            public void beforBatch(BatchRequest t) {}
+
+            @Override
+            public void afterBatch(BatchResponse response) {}
+
+            @Override
+            public void afterBatch(Exception exception, BatchResponse response) {}
+        }, batchHandler);
+    }
+
+    /**
+     * 创建使用组内定时器与分发线程池的处理器, build() 后加入本组
+     * @param listener
+     * @param batchHandler
+     * @return
+     */
+    public BatchProcessor.Builder builder(BatchProcessor.Listener listener, BatchHandler batchHandler) {
+        this.ensureOpen();
+        BatchProcessor.Builder builder = BatchProcessor.builder(listener, batchHandler, this.scheduler).setDispatchExecutor(this.dispatchPool);
+        builder.group = this;
+        return builder;
+    }
+
+    void register(BatchProcessor processor) {
+        if (this.closed) {
+            processor.close();
+            this.ensureOpen();
+        }
+        // 顺带移除已单独关闭的处理器
+        this.processors.removeIf(existing -> !existing.isOpen());
+        this.processors.add(processor);
+    }
+
+    /**
+     * 组内未关闭的处理器数
+     * @return
+     */
+    public int size() {
+        int size = 0;
+        for (BatchProcessor processor : this.processors) {
+            if (processor.isOpen()) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 刷新组内所有处理器
+     */
+    public void flush() {
+        for (BatchProcessor processor : this.processors) {
+            if (processor.isOpen()) {
+                processor.flush();
+            }
+        }
+    }
+
+    /**
+     * 关闭组内所有处理器, 最多等待10秒
+     */
+    @Override
+    public void close() {
+        try {
+            this.awaitClose(10L, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 关闭组内所有处理器并等待在途批次结束, 然后关闭组创建的定时器与分发线程池
+     * @param timeout
+     * @param unit
+     * @return 是否在超时前全部结束
+     * @throws InterruptedException
+     */
+    public boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+        synchronized (this) {
+            if (this.closed) {
+                return true;
+            }
+            this.closed = true;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        boolean terminated = true;
+        try {
+            for (BatchProcessor processor : this.processors) {
+                terminated &= processor.awaitClose(Math.max(0L, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            this.processors.clear();
+            this.onClose.run();
+        }
+        return terminated;
+    }
+
+    private void ensureOpen() {
+        if (this.closed) {
+            throw new IllegalStateException("Batch processor group already closed");
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package com.alecor.batch;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchRateLimiter
+ * @date 2026/10/19 00:50
+ * @Description 限流器, 同时限制每秒批次数与每秒数据条数, 超出时延迟执行而不是拒绝
+ *
+ * 1、两个令牌桶均按预约计算: 本次需要等待的时间只由之前的预约决定, 本批次的令牌由后续批次等待偿还,
+ *    空闲后的第一个批次总是立即执行
+ * 2、空闲时最多积累 maxBurst 时长的令牌, 允许短时突发
+ * 3、限流等待期间(isThrottled)处理器推迟定时 flush, 上游批次继续累积; 连续推迟有上限, 流量低时未满的批次仍会发送
+ * 4、首次执行、重试及失败二分的子批次都计入, 重试与子批次的等待叠加在重试延迟上
+ * 5、同一个限流器可以传给多个处理器, 共同遵守下游配额
+ *
+ * @Version V1.0
+ */
+
+public class BatchRateLimiter {
+
+    private final Bucket batches;
+
+    private final Bucket items;
+
+    private final LongAdder throttledBatches = new LongAdder();
+
+    private final LongAdder throttledNanos = new LongAdder();
+
+    /**
+     * 最多积累1秒的令牌
+     * @param batchesPerSecond 每秒批次数, 0 表示不限制
+     * @param itemsPerSecond 每秒数据条数, 0 表示不限制
+     */
+    public BatchRateLimiter(double batchesPerSecond, double itemsPerSecond) {
+        this(batchesPerSecond, itemsPerSecond, 1L, TimeUnit.SECONDS);
+    }
+
+    /**
+     *
+     * @param batchesPerSecond 每秒批次数, 0 表示不限制
+     * @param itemsPerSecond 每秒数据条数, 0 表示不限制
+     * @param maxBurst 空闲时最多积累的令牌时长
+     * @param unit
+     */
+    public BatchRateLimiter(double batchesPerSecond, double itemsPerSecond, long maxBurst, TimeUnit unit) {
+        if (!(batchesPerSecond >= 0D) || !(itemsPerSecond >= 0D)) {
+            throw new IllegalArgumentException("rates must be >= 0");
+        }
+        if (batchesPerSecond == 0D && itemsPerSecond == 0D) {
+            throw new IllegalArgumentException("at least one of batchesPerSecond and itemsPerSecond must be > 0");
+        }
+        if (maxBurst < 0) {
+            throw new IllegalArgumentException("maxBurst must be >= 0");
+        }
+        long burstNanos = unit.toNanos(maxBurst);
+        this.batches = batchesPerSecond == 0D ? null : new Bucket(batchesPerSecond, burstNanos);
+        this.items = itemsPerSecond == 0D ? null : new Bucket(itemsPerSecond, burstNanos);
+    }
+
+    /**
+     * 预约一个批次
+     * @param numberOfItems 批次数据条数
+     * @return 执行前需要等待的纳秒数, 0 表示立即执行
+     */
+    public long reserve(int numberOfItems) {
+        long now = System.nanoTime();
+        long waitNanos;
+        synchronized (this) {
+            waitNanos = Math.max(this.batches == null ? 0L : this.batches.reserve(1, now),
+                    this.items == null ? 0L : this.items.reserve(numberOfItems, now));
+        }
+        if (waitNanos > 0L) {
+            this.throttledBatches.increment();
+            this.throttledNanos.add(waitNanos);
+        }
+        return waitNanos;
+    }
+
+    /**
+     * 是否处于限流中, 即此时预约一个批次需要等待
+     * @return
+     */
+    public boolean isThrottled() {
+        long now = System.nanoTime();
+        synchronized (this) {
+            return this.batches != null && this.batches.isThrottled(now) || this.items != null && this.items.isThrottled(now);
+        }
+    }
+
+    /**
+     * 累计被延迟的批次数
+     * @return
+     */
+    public long throttledBatches() {
+        return this.throttledBatches.sum();
+    }
+
+    /**
+     * 累计延迟时长, 毫秒
+     * @return
+     */
+    public long throttledMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(this.throttledNanos.sum());
+    }
+
+    /**
+     * 按理论到达时间(GCRA)计算的令牌桶, 由外层锁保护
+     */
+    private static final class Bucket {
+
+        private final double nanosPerPermit;
+
+        private final long burstNanos;
+
+        // 已预约令牌用完的时刻
+        private long theoreticalArrival;
+
+        private Bucket(double permitsPerSecond, long burstNanos) {
+            this.nanosPerPermit = TimeUnit.SECONDS.toNanos(1L) / permitsPerSecond;
+            this.burstNanos = burstNanos;
+            this.theoreticalArrival = System.nanoTime();
+        }
+
+        /**
+         * 等待到之前的预约偿还完为止, 本次的令牌从该时刻起计; 空闲时从 now - burstNanos 起计, 即最多抵扣 maxBurst 时长的令牌
+         */
+        private long reserve(int permits, long now) {
+            long earliest = now - this.burstNanos;
+            long base = this.theoreticalArrival - earliest > 0L ? this.theoreticalArrival : earliest;
+            this.theoreticalArrival = base + (long) Math.ceil(permits * this.nanosPerPermit);
+            return Math.max(0L, base - now);
+        }
+
+        private boolean isThrottled(long now) {
+            return this.theoreticalArrival - now > 0L;
+        }
+    }
+}
@@ -1,7 +1,10 @@
 package com.alecor.batch;
 
 
+import com.alecor.batch.journal.JournalTicket;
+
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -14,10 +17,51 @@ import java.util.List;
 
 public class BatchRequest<T> {
     
-    final List<T> requests = new ArrayList();
+    final List<T> requests;
     
     private boolean isFailure;
     
+    /**
+     * 本批次占用的缓冲区容量, 批次结束后归还
+     */
+    int permits;
+    
+    /**
+     * 本批次数据的累计字节数, 随数据加入增量维护
+     */
+    long weight;
+    
+    /**
+     * 本批次数据在预写日志中的位置, 未开启日志时为空
+     */
+    JournalTicket journalTicket;
+    
+    /**
+     * 分区模式下本批次所属的 key, 未开启时为空
+     */
+    Object key;
+    
+    /**
+     * 本次执行中处理失败的数据下标, 为空表示没有单条失败
+     */
+    private BitSet failedItems;
+    
+    /**
+     * 由失败数据(failedRequest)或二分(slice)生成的子批次
+     */
+    boolean derived;
+    
+    public BatchRequest() {
+        this.requests = new ArrayList<>();
+    }
+    
+    /**
+     * @param initialCapacity 预分配容量, 避免扩容复制
+     */
+    public BatchRequest(int initialCapacity) {
+        this.requests = new ArrayList<>(initialCapacity);
+    }
+    
     public int numberOfActions() {
         return this.requests.size();
     }
@@ -26,11 +70,140 @@ public class BatchRequest<T> {
         this.isFailure = isFailure;
     }
     
+    /**
+     * 批次最终是否处理失败, 批次结束后有效
+     * @return
+     */
+    public boolean isFailure() {
+        return this.isFailure;
+    }
+    
+    /**
+     * 标记单条数据处理失败, 在 executeBatch 中调用
+     *
+     * 存在失败标记时本次执行视为失败, 重试时只重新提交被标记的数据
+     * @param index 数据下标, 对应 getBatchData() 中的位置
+     */
+    public void markFailed(int index) {
+        if (index < 0 || index >= this.numberOfActions()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.numberOfActions());
+        }
+        if (this.failedItems == null) {
+            this.failedItems = new BitSet(this.numberOfActions());
+        }
+        this.failedItems.set(index);
+    }
+    
+    /**
+     * 是否有单条数据被标记失败
+     * @return
+     */
+    public boolean hasFailedItems() {
+        return this.failedItems != null && !this.failedItems.isEmpty();
+    }
+    
+    /**
+     * 被标记失败的数据下标(副本)
+     * @return
+     */
+    public BitSet getFailedItems() {
+        return this.failedItems == null ? new BitSet() : (BitSet) this.failedItems.clone();
+    }
+    
+    void clearFailedItems() {
+        if (this.failedItems != null) {
+            this.failedItems.clear();
+        }
+    }
+    
+    /**
+     * 由被标记失败的数据组成新批次, 用于重试
+     */
+    BatchRequest<T> failedRequest() {
+        List<T> data = this.getBatchData();
+        BatchRequest<T> batchRequest = new BatchRequest<>(this.failedItems.cardinality());
+        for (int i = this.failedItems.nextSetBit(0); i >= 0; i = this.failedItems.nextSetBit(i + 1)) {
+            batchRequest.add(data.get(i));
+        }
+        batchRequest.key = this.key;
+        batchRequest.derived = true;
+        return batchRequest;
+    }
+    
+    /**
+     * 由 [from, to) 范围内的数据组成新批次, 用于二分执行
+     */
+    BatchRequest<T> slice(int from, int to) {
+        BatchRequest<T> batchRequest = new BatchRequest<>(to - from);
+        batchRequest.requests.addAll(this.getBatchData().subList(from, to));
+        batchRequest.key = this.key;
+        batchRequest.derived = true;
+        return batchRequest;
+    }
+    
+    /**
+     * 本批次所属的 key, 仅分区模式(setKeyExtractor)下有值, 同一批次中的数据 key 相同
+     * @return
+     */
+    public Object getKey() {
+        return this.key;
+    }
+    
     public BatchRequest add(T t){
         this.requests.add(t);
         return this;
     }
     
+    /**
+     * 加入数据并累加其字节数
+     * @param t
+     * @param weight
+     * @return
+     */
+    public BatchRequest add(T t, long weight){
+        this.add(t);
+        this.weight += weight;
+        return this;
+    }
+    
+    /**
+     * 累计字节数(未配置 BatchWeigher 时为0)
+     * @return
+     */
+    public long estimatedSizeInBytes() {
+        return this.weight;
+    }
+    
+    /**
+     * 加入原始类型数据, 仅原始类型批次支持
+     * @param bits int/long 为数值本身, double 为 Double.doubleToRawLongBits
+     */
+    void addPrimitive(long bits) {
+        throw new UnsupportedOperationException(this.getClass().getSimpleName() + " does not accept primitive values");
+    }
+    
+    /**
+     * 移除最早加入的数据
+     */
+    T removeFirst() {
+        return this.requests.remove(0);
+    }
+    
+    /**
+     * 清空数据以便复用, 保留已分配的容量
+     */
+    void recycle() {
+        this.requests.clear();
+        this.isFailure = false;
+        this.permits = 0;
+        this.weight = 0L;
+        this.key = null;
+        this.clearFailedItems();
+        if (this.journalTicket != null) {
+            this.journalTicket.clear();
+        }
+    }
+    
     public List<T> getBatchData(){
         return this.requests;
     }
@@ -0,0 +1,38 @@
+package com.alecor.batch;
+
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchRequestPool
+ * @date 2026/10/18 18:10
+ * @Description BatchRequest 对象池, 批次处理完成(含监听回调)后清空并归还, 稳定运行时不再创建新批次
+ *
+ * 池中最多保留 capacity 个对象, 池为空时新建, 池满时直接丢弃
+ *
+ * @Version V1.0
+ */
+
+final class BatchRequestPool<T> {
+    
+    private final Supplier<BatchRequest<T>> factory;
+    
+    private final ArrayBlockingQueue<BatchRequest<T>> pool;
+    
+    BatchRequestPool(Supplier<BatchRequest<T>> factory, int capacity) {
+        this.factory = factory;
+        this.pool = new ArrayBlockingQueue<>(capacity);
+    }
+    
+    BatchRequest<T> acquire() {
+        BatchRequest<T> batchRequest = this.pool.poll();
+        return batchRequest != null ? batchRequest : this.factory.get();
+    }
+    
+    void release(BatchRequest<T> batchRequest) {
+        batchRequest.recycle();
+        this.pool.offer(batchRequest);
+    }
+}
@@ -1,15 +1,27 @@
 package com.alecor.batch;
 
 
+import com.alecor.batch.Listener.BatchAttemptListener;
 import com.alecor.batch.Listener.BatchListerner;
+import com.alecor.batch.Listener.BatchPoisonListener;
 import com.alecor.batch.Listener.BatchResponse;
 import com.alecor.batch.exception.BaseException;
+import com.alecor.batch.handle.AsyncBatchHandler;
 import com.alecor.batch.handle.BatchHandler;
 import com.alecor.batch.thread.BatchBackoffPolicy;
+import com.alecor.batch.thread.BatchCircuitOpenException;
 import com.alecor.batch.thread.BatchScheduler;
 import com.alecor.batch.thread.Cancellable;
 
+import java.util.ArrayDeque;
 import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.LogManager;
 
 /**
@@ -26,15 +38,57 @@ public class BatchRetry {
     private final BatchBackoffPolicy backoffPolicy;
     // 定时任务
     private final BatchScheduler scheduler;
+    // 每次执行后的回调
+    private final BatchAttemptListener attemptListener;
+    // 最终失败后二分隔离毒数据, 为空表示不开启
+    private final BatchPoisonListener poisonListener;
+    // 重试预算, 为空表示不限制
+    private final BatchRetryBudget retryBudget;
+    // 熔断器, 为空表示不开启
+    private final BatchCircuitBreaker circuitBreaker;
+    // 限流器, 重试及二分子批次同样计入, 为空表示不限制
+    private final BatchRateLimiter rateLimiter;
    
     
     public BatchRetry(BatchBackoffPolicy backoffPolicy, BatchScheduler scheduler) {
-        this.backoffPolicy = backoffPolicy;
-        this.scheduler = scheduler;
+        this(builder(backoffPolicy, scheduler));
+    }
+    
+    private BatchRetry(Builder builder) {
+        this.retryBudget = builder.retryBudget;
+        this.circuitBreaker = builder.circuitBreaker;
+        this.backoffPolicy = builder.backoffPolicy;
+        this.scheduler = builder.scheduler;
+        this.attemptListener = builder.attemptListener;
+        this.poisonListener = builder.poisonListener;
+        this.rateLimiter = builder.rateLimiter;
+    }
+    
+    /**
+     * @param backoffPolicy 补偿策略
+     * @param scheduler 重试定时器
+     * @return
+     */
+    public static Builder builder(BatchBackoffPolicy backoffPolicy, BatchScheduler scheduler) {
+        return new Builder(backoffPolicy, scheduler);
     }
     
     public void witchBackoff(BatchHandler customer,BatchRequest request, BatchListerner batchListerner){
-       RetryHandler retryHandler =  new RetryHandler(this.backoffPolicy,this.scheduler,customer,batchListerner);
+       if (this.retryBudget != null) {
+           this.retryBudget.onFirstAttempt();
+       }
+       this.resume(customer, request, batchListerner);
+    }
+    
+    /**
+     * 重新执行已计入首次执行的批次(如熔断期间暂存后恢复), 不再向重试预算存入令牌, 补偿次数重新计算
+     */
+    public void resume(BatchHandler customer, BatchRequest request, BatchListerner batchListerner) {
+       RetryHandler retryHandler =  new RetryHandler(this.backoffPolicy,this.scheduler,customer,batchListerner,this.attemptListener);
+       retryHandler.poisonListener = this.poisonListener;
+       retryHandler.retryBudget = this.retryBudget;
+       retryHandler.circuitBreaker = this.circuitBreaker;
+       retryHandler.rateLimiter = this.rateLimiter;
        retryHandler.execute(request);
     }
    
@@ -46,16 +100,41 @@ public class BatchRetry {
         private final Iterator<Long> backoff;
         private final long startTimestampNanos;
         private final BatchListerner<BatchResponse> listener;
+        private final BatchAttemptListener attemptListener;
         private volatile BatchRequest currentBulkRequest;
     
         private volatile Cancellable retryCancellable;
+        // 已执行次数
+        private volatile int attempts;
+        // 二分隔离毒数据回调, 为空表示不开启
+        private BatchPoisonListener poisonListener;
+        // 重试预算, 为空表示不限制
+        private BatchRetryBudget retryBudget;
+        // 熔断器, 为空表示不开启
+        private BatchCircuitBreaker circuitBreaker;
+        // 限流器, 为空表示不限制
+        private BatchRateLimiter rateLimiter;
+        // 二分过程中等待执行的子批次
+        private ArrayDeque<BatchRequest> bisecting;
+        // 最终失败的批次, 二分结束后以其结果通知
+        private BatchRequest bisected;
+        // 二分开始时间
+        private long bisectStartNanos;
+        // 队首子批次已在限流器预约, 等待结束后不再重复预约
+        private boolean bisectReserved;
         
         public RetryHandler(BatchBackoffPolicy backoffPolicy, BatchScheduler scheduler, BatchHandler batchHandler,BatchListerner batchListerner) {
+            this(backoffPolicy, scheduler, batchHandler, batchListerner, BatchAttemptListener.NOOP);
+        }
+        
+        public RetryHandler(BatchBackoffPolicy backoffPolicy, BatchScheduler scheduler, BatchHandler batchHandler,BatchListerner batchListerner,
+                BatchAttemptListener attemptListener) {
             this.backoff = backoffPolicy.iterator();
             this.customer = batchHandler;
             this.scheduler = scheduler;
             this.startTimestampNanos = System.nanoTime();
             this.listener = batchListerner;
+            this.attemptListener = attemptListener;
         }
     
     
@@ -66,6 +145,8 @@ public class BatchRetry {
                 this.finishHim(response);
             } else if (this.canRetry()) {
                 this.retry(response.getBatchRequest());
+            } else if (this.poisonListener != null) {
+                this.bisect(response.getBatchRequest().hasFailedItems() ? response.getBatchRequest().failedRequest() : response.getBatchRequest(), null);
             } else {
                 this.finishHim(response);
             }
@@ -75,8 +156,10 @@ public class BatchRetry {
         @Override
         public void onFailure(BatchResponse response,Exception e) {
             //
-            if (e instanceof BaseException &&  ((BaseException)e).getExceptionCategory().equals("Business_Insert") && this.backoff.hasNext()) {
+            if (e instanceof BaseException &&  ((BaseException)e).getExceptionCategory().equals("Business_Insert") && this.canRetry()) {
                 this.retry(this.currentBulkRequest);
+            } else if (this.poisonListener != null) {
+                this.bisect(this.currentBulkRequest, e);
             } else {
                 try {
                     this.listener.onFailure(response, e);
@@ -93,15 +176,21 @@ public class BatchRetry {
             assert this.backoff.hasNext();
             
             Long next = this.backoff.next();
-            Runnable command = scheduler.preserveContext(() -> this.execute(request));
-            retryCancellable = scheduler.schedule(command, next, "same");
+            // 部分数据失败时只重试失败的数据
+            if (request.hasFailedItems()) {
+                request = request.failedRequest();
+            }
+            BatchRequest retryRequest = request;
+            Runnable command = scheduler.preserveContext(() -> this.execute(retryRequest));
+            // 限流等待叠加在补偿延迟上
+            retryCancellable = scheduler.schedule(command, next + this.throttleMillis(request), "same");
         }
         
         
-        // 是否继续重试
+        // 是否继续重试, 补偿次数未用尽且重试预算允许
         private boolean canRetry() {
             if (this.backoff.hasNext()) {
-                return true;
+                return this.retryBudget == null || this.retryBudget.tryAcquire();
             } else {
                 return false;
             }
@@ -118,16 +207,321 @@ public class BatchRetry {
         }
         
         public void execute(BatchRequest request) {
+            if (!this.permitted(request)) {
+                return;
+            }
+            if (this.customer instanceof AsyncBatchHandler) {
+                this.executeAsync(request);
+                return;
+            }
+            int attempt = ++this.attempts;
+            long startNanos = System.nanoTime();
             try {
                this.currentBulkRequest = request;
-               boolean isSuccess = this.customer.executeBatch(request);
+               request.clearFailedItems();
+               boolean isSuccess = this.customer.executeBatch(request) && !request.hasFailedItems();
+               this.onAttempt(request, attempt, System.nanoTime() - startNanos, isSuccess);
                this.onResponse(new BatchResponse(request,isSuccess));
             }catch (Exception exception){
+                this.onAttempt(request, attempt, System.nanoTime() - startNanos, false);
                 this.onFailure(new BatchResponse(request,false),exception);
             }
         }
+        
+        /**
+         * 熔断器拒绝时不执行, 以 BatchCircuitOpenException 结束批次, 不再重试
+         */
+        private boolean permitted(BatchRequest request) {
+            if (this.circuitBreaker == null || this.circuitBreaker.tryAcquirePermission()) {
+                return true;
+            }
+            try {
+                this.listener.onFailure(new BatchResponse(request, false),
+                        new BatchCircuitOpenException("circuit breaker is " + this.circuitBreaker.state() + ", rejected " + request.numberOfActions() + " items"));
+            } finally {
+                if (this.retryCancellable != null) {
+                    this.retryCancellable.cancel();
+                }
+            }
+            return false;
+        }
+        
+        private void onAttempt(BatchRequest request, int attempt, long tookNanos, boolean success) {
+            if (this.circuitBreaker != null) {
+                this.circuitBreaker.onResult(tookNanos, success);
+            }
+            this.attemptListener.onAttempt(request, attempt, tookNanos, success);
+        }
+        
+        /**
+         * 异步执行, 结果回调中决定结束或调度重试
+         */
+        private void executeAsync(BatchRequest request) {
+            int attempt = ++this.attempts;
+            long startNanos = System.nanoTime();
+            this.currentBulkRequest = request;
+            request.clearFailedItems();
+            CompletableFuture<BatchResponse> future;
+            try {
+                future = ((AsyncBatchHandler) this.customer).executeBatchAsync(request);
+            } catch (Exception exception) {
+                this.onAttempt(request, attempt, System.nanoTime() - startNanos, false);
+                this.onFailure(new BatchResponse(request, false), exception);
+                return;
+            }
+            future.whenComplete((response, throwable) -> {
+                long tookNanos = System.nanoTime() - startNanos;
+                if (throwable == null && response != null) {
+                    boolean success = !response.hasSuccess() && !request.hasFailedItems();
+                    this.onAttempt(request, attempt, tookNanos, success);
+                    this.onResponse(response.getBatchRequest() != null && success == !response.hasSuccess() ? response : new BatchResponse(request, success));
+                } else {
+                    this.onAttempt(request, attempt, tookNanos, false);
+                    this.onFailure(new BatchResponse(request, false), unwrap(throwable));
+                }
+            });
+        }
+        
+        /**
+         * 重试用尽后将批次二分执行, 每个子批次只执行一次, 失败的子批次继续二分
+         * 单条仍然失败的数据交给 poisonListener, 其余数据处理成功后批次视为成功
+         *
+         * 子批次按重试计入重试预算及熔断器, 预算用尽或熔断器不再放行时停止二分, 批次按失败结束;
+         * 整个二分过程只作为一次执行通知 attemptListener, 子批次的大小不参与自适应批次大小调整
+         */
+        private void bisect(BatchRequest request, Exception exception) {
+            if (this.circuitBreaker != null && this.circuitBreaker.state() != BatchCircuitBreaker.State.CLOSED) {
+                // 下游不可用时二分只会逐条失败, 直接结束
+                this.listener.onFailure(new BatchResponse(request, false),
+                        exception != null ? exception : new BatchCircuitOpenException("circuit breaker is " + this.circuitBreaker.state() + ", skipped bisection"));
+                return;
+            }
+            this.bisected = request;
+            this.bisecting = new ArrayDeque<>();
+            this.bisectStartNanos = System.nanoTime();
+            if (request.numberOfActions() == 1) {
+                this.poisonListener.onPoison(request.getBatchData().get(0), exception);
+            } else {
+                this.split(request);
+            }
+            this.bisectNext();
+        }
+        
+        private void split(BatchRequest request) {
+            int size = request.numberOfActions();
+            int middle = size >>> 1;
+            // 先执行前半部分, 保持数据顺序
+            this.bisecting.addFirst(request.slice(middle, size));
+            this.bisecting.addFirst(request.slice(0, middle));
+        }
+        
+        /**
+         * 依次执行子批次; 异步处理器的结果已在当前线程回调时继续循环, 否则由回调线程继续, 不递归
+         */
+        private void bisectNext() {
+            BatchRequest request;
+            while ((request = this.bisecting.pollFirst()) != null) {
+                if (this.bisectThrottled(request)) {
+                    return;
+                }
+                if (!this.bisectPermitted()) {
+                    this.bisectFinished(false);
+                    return;
+                }
+                long startNanos = System.nanoTime();
+                request.clearFailedItems();
+                if (this.customer instanceof AsyncBatchHandler) {
+                    BatchRequest current = request;
+                    CompletableFuture<BatchResponse> future;
+                    try {
+                        future = ((AsyncBatchHandler) this.customer).executeBatchAsync(request);
+                    } catch (Exception exception) {
+                        this.bisected(current, startNanos, false, exception);
+                        continue;
+                    }
+                    // 回调与注册线程谁后到达谁继续执行下一个子批次
+                    AtomicBoolean handOff = new AtomicBoolean();
+                    future.whenComplete((response, throwable) -> {
+                        boolean success = throwable == null && response != null && !response.hasSuccess() && !current.hasFailedItems();
+                        this.bisected(current, startNanos, success, throwable == null ? null : unwrap(throwable));
+                        if (!handOff.compareAndSet(false, true)) {
+                            this.bisectNext();
+                        }
+                    });
+                    if (handOff.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                try {
+                    boolean success = this.customer.executeBatch(request) && !request.hasFailedItems();
+                    this.bisected(request, startNanos, success, null);
+                } catch (Exception exception) {
+                    this.bisected(request, startNanos, false, exception);
+                }
+            }
+            this.bisectFinished(true);
+        }
+        
+        /**
+         * 在限流器预约一个批次
+         * @return 需要等待的毫秒数, 向上取整
+         */
+        private long throttleMillis(BatchRequest request) {
+            if (this.rateLimiter == null) {
+                return 0L;
+            }
+            long waitNanos = this.rateLimiter.reserve(request.numberOfActions());
+            return waitNanos > 0L ? TimeUnit.NANOSECONDS.toMillis(waitNanos + TimeUnit.MILLISECONDS.toNanos(1L) - 1L) : 0L;
+        }
+        
+        /**
+         * 子批次需要限流等待时交给定时器, 到期后继续二分
+         * @return 是否已交给定时器
+         */
+        private boolean bisectThrottled(BatchRequest request) {
+            if (this.bisectReserved) {
+                this.bisectReserved = false;
+                return false;
+            }
+            long delay = this.throttleMillis(request);
+            if (delay <= 0L) {
+                return false;
+            }
+            this.bisecting.addFirst(request);
+            this.bisectReserved = true;
+            try {
+                this.retryCancellable = this.scheduler.schedule(this.scheduler.preserveContext(this::bisectNext), delay, "same");
+                return true;
+            } catch (RejectedExecutionException exception) {
+                // 定时器已关闭, 不再等待
+                this.bisecting.pollFirst();
+                this.bisectReserved = false;
+                return false;
+            }
+        }
+        
+        /**
+         * 子批次按重试申请预算, 并需熔断器放行
+         */
+        private boolean bisectPermitted() {
+            if (this.retryBudget != null && !this.retryBudget.tryAcquire()) {
+                return false;
+            }
+            return this.circuitBreaker == null || this.circuitBreaker.tryAcquirePermission();
+        }
+        
+        private void bisected(BatchRequest request, long startNanos, boolean success, Exception exception) {
+            if (this.circuitBreaker != null) {
+                this.circuitBreaker.onResult(System.nanoTime() - startNanos, success);
+            }
+            if (success) {
+                return;
+            }
+            if (request.numberOfActions() == 1) {
+                this.poisonListener.onPoison(request.getBatchData().get(0), exception);
+            } else if (request.hasFailedItems() && request.getFailedItems().cardinality() < request.numberOfActions()) {
+                // 已标记出失败的数据, 直接缩小范围
+                this.bisecting.addFirst(request.failedRequest());
+            } else {
+                this.split(request);
+            }
+        }
+        
+        /**
+         * @param completed 是否所有子批次都已执行, 否则剩余数据未处理, 批次按失败结束
+         */
+        private void bisectFinished(boolean completed) {
+            // 毒数据已交给 poisonListener, 与批次结果一致, 全部子批次执行完即视为成功
+            this.attemptListener.onAttempt(this.bisected, ++this.attempts, System.nanoTime() - this.bisectStartNanos, completed);
+            this.finishHim(new BatchResponse(this.bisected, completed));
+        }
+        
+        private static Exception unwrap(Throwable throwable) {
+            if (throwable == null) {
+                return new IllegalStateException("executeBatchAsync completed with a null response");
+            }
+            Throwable cause = throwable;
+            while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            return cause instanceof Exception ? (Exception) cause : new RuntimeException(cause);
+        }
+        
         static {
 //            logger = LogManager.getLogger(RetryHandler.class);
         }
     }
+    
+    public static class Builder {
+        
+        final BatchBackoffPolicy backoffPolicy;
+        
+        final BatchScheduler scheduler;
+        
+        BatchAttemptListener attemptListener = BatchAttemptListener.NOOP;
+        
+        BatchPoisonListener poisonListener;
+        
+        BatchRetryBudget retryBudget;
+        
+        BatchCircuitBreaker circuitBreaker;
+        
+        BatchRateLimiter rateLimiter;
+        
+        Builder(BatchBackoffPolicy backoffPolicy, BatchScheduler scheduler) {
+            this.backoffPolicy = backoffPolicy;
+            this.scheduler = scheduler;
+        }
+        
+        /**
+         * 每次执行(含重试)后的回调
+         * @param attemptListener
+         * @return
+         */
+        public Builder setAttemptListener(BatchAttemptListener attemptListener) {
+            this.attemptListener = Objects.requireNonNull(attemptListener, "attemptListener");
+            return this;
+        }
+        
+        /**
+         * @param poisonListener 重试用尽后二分隔离毒数据, 为空表示不开启
+         * @return
+         */
+        public Builder setPoisonListener(BatchPoisonListener poisonListener) {
+            this.poisonListener = poisonListener;
+            return this;
+        }
+        
+        /**
+         * @param retryBudget 重试预算, 为空表示不限制
+         * @return
+         */
+        public Builder setRetryBudget(BatchRetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+        
+        /**
+         * @param circuitBreaker 熔断器, 为空表示不开启
+         * @return
+         */
+        public Builder setCircuitBreaker(BatchCircuitBreaker circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+            return this;
+        }
+        
+        /**
+         * @param rateLimiter 限流器, 重试及二分子批次执行前预约, 为空表示不限制
+         * @return
+         */
+        public Builder setRateLimiter(BatchRateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+        
+        public BatchRetry build() {
+            return new BatchRetry(this);
+        }
+    }
 }
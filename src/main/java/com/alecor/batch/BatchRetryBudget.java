@@ -0,0 +1,169 @@
+package com.alecor.batch;
+
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchRetryBudget
+ * @date 2026/10/18 23:40
+ * @Description 重试预算, 按首次执行次数的比例限制重试次数, 防止下游故障时重试放大流量
+ *
+ * 1、令牌桶: 每次首次执行存入 retryRatio 个令牌, 每次重试消耗1个令牌, 余额不超过 maxBalance
+ * 2、令牌不足时每秒仍允许 minRetriesPerSecond 次重试, 保证低流量时可以重试
+ * 3、预算被拒绝的批次不再重试, 按最终失败处理(开启失败二分时进入二分)
+ * 4、同一个预算对象可以传给多个处理器, 共同限制对同一下游的重试
+ *
+ * @Version V1.0
+ */
+
+public class BatchRetryBudget {
+
+    /**
+     * 令牌按千分之一计数, 避免浮点运算
+     */
+    private static final long SCALE = 1000L;
+
+    private final long depositPerAttempt;
+
+    private final long maxBalance;
+
+    private final int minRetriesPerSecond;
+
+    private final AtomicLong balance = new AtomicLong();
+
+    /**
+     * 高32位为秒数, 低32位为该秒已使用的保底重试次数
+     */
+    private final AtomicLong reserve = new AtomicLong();
+
+    private final long startNanos = System.nanoTime();
+
+    private final LongAdder firstAttempts = new LongAdder();
+
+    private final LongAdder allowedRetries = new LongAdder();
+
+    private final LongAdder deniedRetries = new LongAdder();
+
+    /**
+     * 每秒保底10次重试, 余额最多100次重试
+     * @param retryRatio 重试次数占首次执行次数的比例, 如0.1表示最多10%
+     */
+    public BatchRetryBudget(double retryRatio) {
+        this(retryRatio, 10, 100);
+    }
+
+    /**
+     *
+     * @param retryRatio 重试次数占首次执行次数的比例, 如0.1表示最多10%
+     * @param minRetriesPerSecond 令牌不足时每秒保底重试次数
+     * @param maxBalance 令牌余额上限, 即长时间正常后允许的突发重试次数
+     */
+    public BatchRetryBudget(double retryRatio, int minRetriesPerSecond, int maxBalance) {
+        if (!(retryRatio >= 0D) || retryRatio > 1000D) {
+            throw new IllegalArgumentException("retryRatio must be in [0, 1000]");
+        }
+        if (minRetriesPerSecond < 0) {
+            throw new IllegalArgumentException("minRetriesPerSecond must be >= 0");
+        }
+        if (maxBalance < 0) {
+            throw new IllegalArgumentException("maxBalance must be >= 0");
+        }
+        this.depositPerAttempt = Math.round(retryRatio * SCALE);
+        this.maxBalance = maxBalance * SCALE;
+        this.minRetriesPerSecond = minRetriesPerSecond;
+    }
+
+    /**
+     * 记录一次首次执行, 存入令牌
+     */
+    public void onFirstAttempt() {
+        this.firstAttempts.increment();
+        if (this.depositPerAttempt == 0L) {
+            return;
+        }
+        long current;
+        do {
+            current = this.balance.get();
+            if (current >= this.maxBalance) {
+                return;
+            }
+        } while (!this.balance.compareAndSet(current, Math.min(this.maxBalance, current + this.depositPerAttempt)));
+    }
+
+    /**
+     * 申请一次重试
+     * @return 是否允许重试
+     */
+    public boolean tryAcquire() {
+        if (this.withdraw() || this.useReserve()) {
+            this.allowedRetries.increment();
+            return true;
+        }
+        this.deniedRetries.increment();
+        return false;
+    }
+
+    private boolean withdraw() {
+        long current;
+        do {
+            current = this.balance.get();
+            if (current < SCALE) {
+                return false;
+            }
+        } while (!this.balance.compareAndSet(current, current - SCALE));
+        return true;
+    }
+
+    private boolean useReserve() {
+        if (this.minRetriesPerSecond == 0) {
+            return false;
+        }
+        long second = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - this.startNanos);
+        long current;
+        long next;
+        do {
+            current = this.reserve.get();
+            long used = (current >>> 32) == second ? current & 0xFFFFFFFFL : 0L;
+            if (used >= this.minRetriesPerSecond) {
+                return false;
+            }
+            next = second << 32 | (used + 1);
+        } while (!this.reserve.compareAndSet(current, next));
+        return true;
+    }
+
+    /**
+     * 当前可用于重试的令牌数(不含每秒保底次数)
+     * @return
+     */
+    public double balance() {
+        return (double) this.balance.get() / SCALE;
+    }
+
+    /**
+     * 累计首次执行次数
+     * @return
+     */
+    public long firstAttempts() {
+        return this.firstAttempts.sum();
+    }
+
+    /**
+     * 累计允许的重试次数
+     * @return
+     */
+    public long allowedRetries() {
+        return this.allowedRetries.sum();
+    }
+
+    /**
+     * 累计被预算拒绝的重试次数
+     * @return
+     */
+    public long deniedRetries() {
+        return this.deniedRetries.sum();
+    }
+}
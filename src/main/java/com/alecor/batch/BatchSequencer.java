@@ -0,0 +1,64 @@
+package com.alecor.batch;
+
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchSequencer
+ * @date 2026/10/18 21:30
+ * @Description 按 key 串行分发批次, 同一 key 同时只有一个批次在途, 不同 key 互不影响
+ *
+ * 空闲的 key 不占用内存, 与 key 缓冲区是否被淘汰无关
+ *
+ * @Version V1.0
+ */
+
+final class BatchSequencer<T> {
+
+    /**
+     * 有批次在途的 key 及其等待中的批次
+     */
+    private final ConcurrentHashMap<Object, ArrayDeque<BatchRequest<T>>> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * 登记批次
+     * @return 是否可以立即分发, 否则排在该 key 在途批次之后
+     */
+    boolean acquire(Object key, BatchRequest<T> batchRequest) {
+        boolean[] idle = new boolean[1];
+        this.waiting.compute(key, (k, queue) -> {
+            if (queue == null) {
+                idle[0] = true;
+                return new ArrayDeque<>(2);
+            }
+            queue.addLast(batchRequest);
+            return queue;
+        });
+        return idle[0];
+    }
+
+    /**
+     * 该 key 的在途批次结束
+     * @return 下一个待分发的批次, 没有时返回 null 并释放该 key
+     */
+    BatchRequest<T> release(Object key) {
+        Object[] next = new Object[1];
+        this.waiting.computeIfPresent(key, (k, queue) -> {
+            next[0] = queue.pollFirst();
+            return next[0] == null ? null : queue;
+        });
+        @SuppressWarnings("unchecked")
+        BatchRequest<T> batchRequest = (BatchRequest<T>) next[0];
+        return batchRequest;
+    }
+
+    /**
+     * 有批次在途的 key 数
+     * @return
+     */
+    int activeKeys() {
+        return this.waiting.size();
+    }
+}
@@ -0,0 +1,20 @@
+package com.alecor.batch;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchWeigher
+ * @date 2026/10/18 16:05
+ * @Description 数据权重(字节数)计算接口, 配合 maxBatchBytes 使用
+ * @Version V1.0
+ */
+
+@FunctionalInterface
+public interface BatchWeigher<T> {
+    
+    /**
+     * 计算单条数据的字节数, 不能为负数
+     * @param t
+     * @return
+     */
+    long weigh(T t);
+}
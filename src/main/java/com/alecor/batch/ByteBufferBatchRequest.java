@@ -0,0 +1,152 @@
+package com.alecor.batch;
+
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @author yuan_kf
+ * @ClassName ByteBufferBatchRequest
+ * @date 2026/10/18 18:40
+ * @Description 堆外批处理对象, 已序列化的数据按 [int 长度][数据] 连续写入直接内存, 不保留单条数据对象
+ *
+ * 直接内存在写入首条数据时才分配, 空批次(如分区模式下刚打开的 key)不占用直接内存; 容量不足时按2倍扩容
+ * 处理器对堆外批次总是开启复用, 批次归还对象池时保留直接内存, 稳定运行时不再逐批分配
+ *
+ * @Version V1.0
+ */
+
+public class ByteBufferBatchRequest extends BatchRequest<byte[]> {
+    
+    private static final int DEFAULT_CAPACITY = 64 * 1024;
+    
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+    
+    private final int initialCapacity;
+    
+    private ByteBuffer arena;
+    
+    private int count;
+    
+    public ByteBufferBatchRequest() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    public ByteBufferBatchRequest(int initialCapacity) {
+        this.initialCapacity = Math.max(Integer.BYTES, initialCapacity);
+    }
+    
+    /**
+     * 写入一条数据
+     * @param record
+     * @return
+     */
+    public ByteBufferBatchRequest addRecord(byte[] record) {
+        this.ensureCapacity(Integer.BYTES + record.length);
+        this.arena.putInt(record.length);
+        this.arena.put(record);
+        this.count++;
+        return this;
+    }
+    
+    /**
+     * 写入一条数据, 读取 record 的 position 到 limit 之间的字节, 不改变 record 的位置
+     * @param record
+     * @return
+     */
+    public ByteBufferBatchRequest addRecord(ByteBuffer record) {
+        int length = record.remaining();
+        this.ensureCapacity(Integer.BYTES + length);
+        this.arena.putInt(length);
+        this.arena.put(record.duplicate());
+        this.count++;
+        return this;
+    }
+    
+    /**
+     * 整个批次的只读视图, 每次调用返回新的视图, position 为0, limit 为已写入的字节数
+     * @return
+     */
+    public ByteBuffer records() {
+        ByteBuffer view = (this.arena != null ? this.arena : EMPTY).asReadOnlyBuffer();
+        view.flip();
+        return view;
+    }
+    
+    /**
+     * 已写入的字节数(含长度前缀)
+     * @return
+     */
+    public int sizeInBytes() {
+        return this.arena != null ? this.arena.position() : 0;
+    }
+    
+    @Override
+    public int numberOfActions() {
+        return this.count;
+    }
+    
+    @Override
+    public BatchRequest add(byte[] t) {
+        return this.addRecord(t);
+    }
+    
+    @Override
+    byte[] removeFirst() {
+        int length = this.arena.getInt(0);
+        byte[] first = new byte[length];
+        ByteBuffer source = this.arena.duplicate();
+        source.position(Integer.BYTES);
+        source.get(first);
+        // 剩余数据整体前移
+        this.arena.flip();
+        this.arena.position(Integer.BYTES + length);
+        this.arena.compact();
+        this.count--;
+        return first;
+    }
+    
+    @Override
+    void recycle() {
+        super.recycle();
+        if (this.arena != null) {
+            this.arena.clear();
+        }
+        this.count = 0;
+    }
+    
+    /**
+     * 逐条复制到堆内, 仅用于兼容通用接口
+     * @return
+     */
+    @Override
+    public List<byte[]> getBatchData() {
+        List<byte[]> data = new ArrayList<>(this.count);
+        ByteBuffer view = this.records();
+        while (view.hasRemaining()) {
+            byte[] record = new byte[view.getInt()];
+            view.get(record);
+            data.add(record);
+        }
+        return data;
+    }
+    
+    private void ensureCapacity(int required) {
+        if (this.arena == null) {
+            this.arena = ByteBuffer.allocateDirect(Math.max(this.initialCapacity, required));
+            return;
+        }
+        if (this.arena.remaining() >= required) {
+            return;
+        }
+        int capacity = this.arena.capacity();
+        while (capacity - this.arena.position() < required) {
+            capacity = Math.multiplyExact(capacity, 2);
+        }
+        ByteBuffer larger = ByteBuffer.allocateDirect(capacity);
+        this.arena.flip();
+        larger.put(this.arena);
+        this.arena = larger;
+    }
+}
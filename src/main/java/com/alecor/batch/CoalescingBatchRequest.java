@@ -0,0 +1,105 @@
+package com.alecor.batch;
+
+
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+/**
+ * @author yuan_kf
+ * @ClassName CoalescingBatchRequest
+ * @date 2026/10/18 21:50
+ * @Description 合并批处理对象, 加入时 key 相同的数据按 mergeFunction 原地合并, 处理器只收到合并后的数据
+ *
+ * 1、numberOfActions() 为合并后的条数, batchSize 按合并后的条数判断
+ * 2、字节数按加入的原始数据累加, 为合并后大小的上限
+ * 3、合并后的数据保持 key 第一次出现的顺序
+ *
+ * @Version V1.0
+ */
+
+public class CoalescingBatchRequest<T> extends BatchRequest<T> {
+
+    private final Function<T, ?> keyFunction;
+
+    private final BinaryOperator<T> mergeFunction;
+
+    /**
+     * key 到数据下标
+     */
+    private final HashMap<Object, Integer> index;
+
+    /**
+     * 加入的原始数据条数
+     */
+    private int addedItems;
+
+    /**
+     *
+     * @param keyFunction 合并 key, 需正确实现 equals/hashCode
+     * @param mergeFunction (已有数据, 新数据) -> 合并后的数据, 如后写覆盖 (a, b) -> b
+     */
+    public CoalescingBatchRequest(Function<T, ?> keyFunction, BinaryOperator<T> mergeFunction) {
+        this.keyFunction = Objects.requireNonNull(keyFunction, "keyFunction");
+        this.mergeFunction = Objects.requireNonNull(mergeFunction, "mergeFunction");
+        this.index = new HashMap<>();
+    }
+
+    /**
+     * @param initialCapacity 预分配容量, 避免扩容复制
+     */
+    public CoalescingBatchRequest(int initialCapacity, Function<T, ?> keyFunction, BinaryOperator<T> mergeFunction) {
+        super(initialCapacity);
+        this.keyFunction = Objects.requireNonNull(keyFunction, "keyFunction");
+        this.mergeFunction = Objects.requireNonNull(mergeFunction, "mergeFunction");
+        this.index = new HashMap<>(Math.max(16, (int) (initialCapacity / 0.75F) + 1));
+    }
+
+    @Override
+    public BatchRequest add(T t) {
+        this.addedItems++;
+        Integer position = this.index.putIfAbsent(this.keyFunction.apply(t), this.requests.size());
+        if (position == null) {
+            this.requests.add(t);
+        } else {
+            this.requests.set(position, this.mergeFunction.apply(this.requests.get(position), t));
+        }
+        return this;
+    }
+
+    /**
+     * 加入的原始数据条数
+     * @return
+     */
+    public int addedItems() {
+        return this.addedItems;
+    }
+
+    /**
+     * 合并比例: 原始条数 / 合并后条数, 没有数据时为1
+     * @return
+     */
+    public double coalescingRatio() {
+        int size = this.requests.size();
+        return size == 0 ? 1D : (double) this.addedItems / size;
+    }
+
+    @Override
+    T removeFirst() {
+        T first = this.requests.remove(0);
+        // 下标整体前移, 重建索引(处理器不会在合并批次上调用, 合并不能与 dropOldest 同时使用)
+        this.index.clear();
+        for (int i = 0; i < this.requests.size(); i++) {
+            this.index.put(this.keyFunction.apply(this.requests.get(i)), i);
+        }
+        return first;
+    }
+
+    @Override
+    void recycle() {
+        super.recycle();
+        this.index.clear();
+        this.addedItems = 0;
+    }
+}
@@ -0,0 +1,101 @@
+package com.alecor.batch;
+
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author yuan_kf
+ * @ClassName DoubleBatchRequest
+ * @date 2026/10/18 17:20
+ * @Description double 类型批处理对象, 数据保存在可扩容的 double[] 中, 不装箱
+ * @Version V1.0
+ */
+
+public class DoubleBatchRequest extends BatchRequest<Double> {
+    
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    private double[] values;
+    
+    private int size;
+    
+    public DoubleBatchRequest() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    public DoubleBatchRequest(int initialCapacity) {
+        this.values = new double[Math.max(1, initialCapacity)];
+    }
+    
+    public DoubleBatchRequest addDouble(double value) {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.values.length << 1);
+        }
+        this.values[this.size++] = value;
+        return this;
+    }
+    
+    public double getDouble(int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.values[index];
+    }
+    
+    /**
+     * 底层数组, 有效数据为 [0, numberOfActions())
+     * @return
+     */
+    public double[] values() {
+        return this.values;
+    }
+    
+    @Override
+    public int numberOfActions() {
+        return this.size;
+    }
+    
+    @Override
+    public BatchRequest add(Double t) {
+        return this.addDouble(t);
+    }
+    
+    @Override
+    void addPrimitive(long bits) {
+        this.addDouble(Double.longBitsToDouble(bits));
+    }
+    
+    @Override
+    Double removeFirst() {
+        double first = this.values[0];
+        System.arraycopy(this.values, 1, this.values, 0, --this.size);
+        return first;
+    }
+    
+    @Override
+    void recycle() {
+        super.recycle();
+        this.size = 0;
+    }
+    
+    /**
+     * 装箱视图, 仅用于兼容通用接口, 访问时逐个装箱
+     * @return
+     */
+    @Override
+    public List<Double> getBatchData() {
+        return new AbstractList<Double>() {
+            @Override
+            public Double get(int index) {
+                return DoubleBatchRequest.this.getDouble(index);
+            }
+            
+            @Override
+            public int size() {
+                return DoubleBatchRequest.this.size;
+            }
+        };
+    }
+}
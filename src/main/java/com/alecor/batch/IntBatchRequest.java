@@ -0,0 +1,101 @@
+package com.alecor.batch;
+
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author yuan_kf
+ * @ClassName IntBatchRequest
+ * @date 2026/10/18 17:20
+ * @Description int 类型批处理对象, 数据保存在可扩容的 int[] 中, 不装箱
+ * @Version V1.0
+ */
+
+public class IntBatchRequest extends BatchRequest<Integer> {
+    
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    private int[] values;
+    
+    private int size;
+    
+    public IntBatchRequest() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    public IntBatchRequest(int initialCapacity) {
+        this.values = new int[Math.max(1, initialCapacity)];
+    }
+    
+    public IntBatchRequest addInt(int value) {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.values.length << 1);
+        }
+        this.values[this.size++] = value;
+        return this;
+    }
+    
+    public int getInt(int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.values[index];
+    }
+    
+    /**
+     * 底层数组, 有效数据为 [0, numberOfActions())
+     * @return
+     */
+    public int[] values() {
+        return this.values;
+    }
+    
+    @Override
+    public int numberOfActions() {
+        return this.size;
+    }
+    
+    @Override
+    public BatchRequest add(Integer t) {
+        return this.addInt(t);
+    }
+    
+    @Override
+    void addPrimitive(long bits) {
+        this.addInt((int) bits);
+    }
+    
+    @Override
+    Integer removeFirst() {
+        int first = this.values[0];
+        System.arraycopy(this.values, 1, this.values, 0, --this.size);
+        return first;
+    }
+    
+    @Override
+    void recycle() {
+        super.recycle();
+        this.size = 0;
+    }
+    
+    /**
+     * 装箱视图, 仅用于兼容通用接口, 访问时逐个装箱
+     * @return
+     */
+    @Override
+    public List<Integer> getBatchData() {
+        return new AbstractList<Integer>() {
+            @Override
+            public Integer get(int index) {
+                return IntBatchRequest.this.getInt(index);
+            }
+            
+            @Override
+            public int size() {
+                return IntBatchRequest.this.size;
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package com.alecor.batch.Listener;
+
+
+import com.alecor.batch.BatchRequest;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchAttemptListener
+ * @date 2026/10/18 16:40
+ * @Description 每次调用 BatchHandler.executeBatch 之后的回调(含重试), 用于统计耗时与成功率
+ * @Version V1.0
+ */
+
+public interface BatchAttemptListener {
+    
+    BatchAttemptListener NOOP = (request, attempt, tookNanos, success) -> {};
+    
+    /**
+     *
+     * @param request 本次执行的批次
+     * @param attempt 第几次执行, 从1开始
+     * @param tookNanos executeBatch 耗时
+     * @param success executeBatch 返回 true 且未抛出异常
+     */
+    void onAttempt(BatchRequest request, int attempt, long tookNanos, boolean success);
+}
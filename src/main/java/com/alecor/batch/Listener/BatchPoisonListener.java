@@ -0,0 +1,20 @@
+package com.alecor.batch.Listener;
+
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchPoisonListener
+ * @date 2026/10/18 22:50
+ * @Description 二分隔离出的无法处理的数据(毒数据)回调
+ * @Version V1.0
+ */
+
+public interface BatchPoisonListener<T> {
+
+    /**
+     *
+     * @param item 单独执行仍然失败的数据
+     * @param exception 最后一次执行抛出的异常, executeBatch 返回 false 时为空
+     */
+    void onPoison(T item, Exception exception);
+}
@@ -3,6 +3,8 @@ package com.alecor.batch.Listener;
 
 import com.alecor.batch.BatchRequest;
 
+import java.util.BitSet;
+
 /**
  * @author yuan_kf
  * @ClassName BatchResponse
@@ -29,6 +31,14 @@ public class BatchResponse {
         return isSuccess;
     }
     
+    /**
+     * 批次中被标记失败的数据下标, 见 BatchRequest.markFailed
+     * @return
+     */
+    public BitSet getFailedItems() {
+        return this.request == null ? new BitSet() : this.request.getFailedItems();
+    }
+    
     
     public static class Builder{
     
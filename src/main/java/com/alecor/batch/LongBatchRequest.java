@@ -0,0 +1,101 @@
+package com.alecor.batch;
+
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @author yuan_kf
+ * @ClassName LongBatchRequest
+ * @date 2026/10/18 17:20
+ * @Description long 类型批处理对象, 数据保存在可扩容的 long[] 中, 不装箱
+ * @Version V1.0
+ */
+
+public class LongBatchRequest extends BatchRequest<Long> {
+    
+    private static final int DEFAULT_CAPACITY = 16;
+    
+    private long[] values;
+    
+    private int size;
+    
+    public LongBatchRequest() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    public LongBatchRequest(int initialCapacity) {
+        this.values = new long[Math.max(1, initialCapacity)];
+    }
+    
+    public LongBatchRequest addLong(long value) {
+        if (this.size == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.values.length << 1);
+        }
+        this.values[this.size++] = value;
+        return this;
+    }
+    
+    public long getLong(int index) {
+        if (index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return this.values[index];
+    }
+    
+    /**
+     * 底层数组, 有效数据为 [0, numberOfActions())
+     * @return
+     */
+    public long[] values() {
+        return this.values;
+    }
+    
+    @Override
+    public int numberOfActions() {
+        return this.size;
+    }
+    
+    @Override
+    public BatchRequest add(Long t) {
+        return this.addLong(t);
+    }
+    
+    @Override
+    void addPrimitive(long bits) {
+        this.addLong(bits);
+    }
+    
+    @Override
+    Long removeFirst() {
+        long first = this.values[0];
+        System.arraycopy(this.values, 1, this.values, 0, --this.size);
+        return first;
+    }
+    
+    @Override
+    void recycle() {
+        super.recycle();
+        this.size = 0;
+    }
+    
+    /**
+     * 装箱视图, 仅用于兼容通用接口, 访问时逐个装箱
+     * @return
+     */
+    @Override
+    public List<Long> getBatchData() {
+        return new AbstractList<Long>() {
+            @Override
+            public Long get(int index) {
+                return LongBatchRequest.this.getLong(index);
+            }
+            
+            @Override
+            public int size() {
+                return LongBatchRequest.this.size;
+            }
+        };
+    }
+}
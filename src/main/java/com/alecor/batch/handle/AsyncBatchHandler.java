@@ -0,0 +1,35 @@
+package com.alecor.batch.handle;
+
+
+import com.alecor.batch.BatchRequest;
+import com.alecor.batch.Listener.BatchResponse;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * @author yuan_kf
+ * @ClassName AsyncBatchHandler
+ * @date 2026/10/18 22:10
+ * @Description 异步数据处理接口, 批次在途期间不占用线程
+ *
+ * 1、executeBatchAsync 应尽快返回, 处理结果通过 CompletableFuture 通知
+ * 2、结果与 BatchHandler 一致: new BatchResponse(request, true) 表示处理成功, false 表示需要重试
+ * 3、异常完成等同于 executeBatch 抛出异常
+ * 4、重试由结果回调通过重试定时器调度, 不阻塞线程; 监听回调在完成 future 的线程上执行
+ * 5、在途批次数仍由 concurrentRequests 限制
+ *
+ * @Version V1.0
+ */
+
+public abstract class AsyncBatchHandler<T> extends BatchHandler<T> {
+
+    public abstract CompletableFuture<BatchResponse> executeBatchAsync(BatchRequest<T> request);
+
+    /**
+     * 同步执行, 阻塞等待异步结果
+     */
+    @Override
+    public final boolean executeBatch(BatchRequest<T> request) throws Exception {
+        return !this.executeBatchAsync(request).get().hasSuccess();
+    }
+}
@@ -1,18 +1,34 @@
 package com.alecor.batch.handle;
 
 
+import com.alecor.batch.BatchCircuitBreaker;
 import com.alecor.batch.BatchProcessor;
+import com.alecor.batch.BatchRateLimiter;
 import com.alecor.batch.BatchRequest;
 import com.alecor.batch.BatchRetry;
+import com.alecor.batch.BatchRetryBudget;
+import com.alecor.batch.Listener.BatchAttemptListener;
 import com.alecor.batch.Listener.BatchListerner;
+import com.alecor.batch.Listener.BatchPoisonListener;
 import com.alecor.batch.Listener.BatchResponse;
 import com.alecor.batch.thread.BatchBackoffPolicy;
+import com.alecor.batch.thread.BatchCircuitOpenException;
 import com.alecor.batch.thread.BatchScheduler;
 
 import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.LogManager;
 
 /**
@@ -31,48 +47,321 @@ public class BatchRequestHandler<T> {
     private final Semaphore semaphore;
     private final BatchRetry retry;
     private final int concurrentRequests ;
+    // 分发线程池, 为空时在调用线程上执行
+    private final Executor dispatchExecutor;
+    // 已提交到分发线程池但尚未完成首次执行的批次数
+    private final AtomicInteger queued = new AtomicInteger();
+    // 排队批次中的数据条数
+    private final AtomicLong queuedItems = new AtomicLong();
+    // 等待并发许可的批次(BatchRequest)或延迟加载的批次(Supplier)
+    private final Queue<Object> waiting = new ConcurrentLinkedQueue<>();
+    // 熔断器, 为空表示不开启
+    private final BatchCircuitBreaker circuitBreaker;
+    // 熔断期间暂存被拒绝的批次, 恢复后重新执行; 否则快速失败
+    private final boolean parkWhileOpen;
+    private final BatchScheduler retryScheduler;
+    private final BatchCircuitBreaker.StateListener circuitListener;
+    // 熔断期间暂存的批次
+    private final Queue<Completion> parked = new ConcurrentLinkedQueue<>();
+    // 未配置分发线程池时, 已恢复但尚未获取到并发许可的暂存批次, 归还许可时在定时器线程上继续恢复
+    private final Queue<Completion> resuming = new ConcurrentLinkedQueue<>();
+    // 限流器, 为空表示不限制
+    private final BatchRateLimiter rateLimiter;
+    private volatile boolean closed;
+    // 批次最终结束(成功、失败或未能执行)后的回调, 每个批次只调用一次
+    private final Consumer<BatchRequest<T>> onComplete;
+    // 结果转发给 BatchProcessor.Listener
+    private final BatchListerner<BatchResponse> responseListener = new BatchListerner<BatchResponse>() {
+        @Override
+        public void onResponse(BatchResponse response) {
+            BatchRequestHandler.this.listener.afterBatch(response);
+        }
+        @Override
+        public void onFailure(BatchResponse response,Exception e) {
+            BatchRequestHandler.this.listener.afterBatch(e, response);
+        }
+    };
     
     
     public BatchRequestHandler(BatchProcessor.Listener listener, BatchHandler customer, BatchBackoffPolicy backoffPolicy, BatchScheduler retryScheduler, int concurrentRequests) {
+        this(BatchRequestHandler.<T>builder(listener, customer, backoffPolicy, retryScheduler).setConcurrentRequests(concurrentRequests));
+    }
+    
+    private BatchRequestHandler(Builder<T> builder) {
+        int concurrentRequests = builder.concurrentRequests;
+        BatchCircuitBreaker circuitBreaker = builder.circuitBreaker;
         assert concurrentRequests >= 0;
         
-        this.customer = customer;
+        this.customer = builder.customer;
 //        this.logger = LogManager.getLogger(this.getClass());
-        this.listener = listener;
+        this.listener = builder.listener;
         this.concurrentRequests = concurrentRequests;
-        this.retry = new BatchRetry(backoffPolicy, retryScheduler);
+        this.retry = BatchRetry.builder(builder.backoffPolicy, builder.retryScheduler).setAttemptListener(builder.attemptListener)
+                .setPoisonListener(builder.poisonListener).setRetryBudget(builder.retryBudget).setCircuitBreaker(circuitBreaker)
+                .setRateLimiter(builder.rateLimiter).build();
         this.semaphore = new Semaphore(concurrentRequests > 0 ? concurrentRequests : 1);
+        this.dispatchExecutor = builder.dispatchExecutor;
+        this.onComplete = builder.onComplete;
+        this.circuitBreaker = circuitBreaker;
+        this.parkWhileOpen = builder.parkWhileOpen;
+        this.rateLimiter = builder.rateLimiter;
+        this.retryScheduler = builder.retryScheduler;
+        this.circuitListener = circuitBreaker == null ? null : this::onCircuitTransition;
+        if (circuitBreaker != null) {
+            circuitBreaker.addStateListener(this.circuitListener);
+        }
     }
-
+    
+    /**
+     * 执行批次, 配置了分发线程池时交给线程池执行, 调用线程立即返回
+     * @param request
+     */
     public void execute(final BatchRequest<T> request) {
-        Runnable toRelease = () -> {
-        };
+        if (this.dispatchExecutor == null) {
+            this.dispatch(request);
+            return;
+        }
+        this.queued.incrementAndGet();
+        this.queuedItems.addAndGet(request.numberOfActions());
+        this.waiting.add(request);
+        this.drain();
+    }
+    
+    /**
+     * 提交一个延迟加载的批次, 获取到并发许可后才通过 loader 获取批次数据(如从溢写文件读回), 需配置分发线程池
+     * loader 返回 null 时不执行
+     * @param loader
+     */
+    public void executeDeferred(final Supplier<BatchRequest<T>> loader) {
+        this.queued.incrementAndGet();
+        this.waiting.add(loader);
+        this.drain();
+    }
+    
+    /**
+     * 有并发许可时把等待中的批次交给分发线程池, 分发线程不会因等待许可而阻塞
+     *
+     * 多个处理器共享同一个分发线程池时, 达到并发上限的处理器不会占住线程
+     */
+    private void drain() {
+        for (;;) {
+            if (this.waiting.isEmpty() || !this.semaphore.tryAcquire()) {
+                return;
+            }
+            Object next = this.waiting.poll();
+            if (next == null) {
+                // 已被其他线程取走, 归还许可后重新检查
+                this.semaphore.release();
+                continue;
+            }
+            this.submit(next);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private void submit(Object next) {
+        int items = next instanceof BatchRequest ? ((BatchRequest<T>) next).numberOfActions() : 0;
+        try {
+            this.dispatchExecutor.execute(() -> {
+                this.queuedItems.addAndGet(-items);
+                try {
+                    if (next instanceof BatchRequestHandler.Completion) {
+                        ((Completion) next).resume();
+                        return;
+                    }
+                    BatchRequest<T> request;
+                    try {
+                        request = next instanceof BatchRequest ? (BatchRequest<T>) next : ((Supplier<BatchRequest<T>>) next).get();
+                    } catch (RuntimeException exception) {
+                        // 加载失败, 批次由 loader 自行结束, 这里只归还许可
+                        this.releasePermit();
+                        throw exception;
+                    }
+                    if (request != null) {
+                        this.run(request, false, true);
+                    } else {
+                        this.releasePermit();
+                    }
+                } finally {
+                    this.queued.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            this.queuedItems.addAndGet(-items);
+            this.queued.decrementAndGet();
+            this.semaphore.release();
+            if (next instanceof BatchRequestHandler.Completion) {
+                ((Completion) next).onFailure(new BatchResponse(((Completion) next).request, false), exception);
+                return;
+            }
+            BatchRequest<T> request = next instanceof BatchRequest ? (BatchRequest<T>) next : ((Supplier<BatchRequest<T>>) next).get();
+            if (request != null) {
+                this.fail(request, exception);
+            }
+        }
+    }
+    
+    private void releasePermit() {
+        this.semaphore.release();
+        if (this.dispatchExecutor != null) {
+            this.drain();
+        } else if (!this.resuming.isEmpty()) {
+            // 归还许可的可能是生产线程, 恢复的批次仍在定时器线程上执行
+            this.scheduleResume(this::drainResuming, 0L);
+        }
+    }
+    
+    /**
+     * 等待分发的批次中的数据条数(不含延迟加载的批次)
+     * @return
+     */
+    public long queuedItems() {
+        return this.queuedItems.get();
+    }
+    
+    /**
+     * 等待分发的批次数(含延迟加载的批次)
+     * @return
+     */
+    public int queuedBatches() {
+        return this.queued.get();
+    }
+    
+    /**
+     * 占用并发许可的批次数
+     * @return
+     */
+    public int inFlightBatches() {
+        return Math.max(0, Math.max(1, this.concurrentRequests) - this.semaphore.availablePermits());
+    }
+    
+    /**
+     * 熔断期间暂存的批次数
+     * @return
+     */
+    public int parkedBatches() {
+        return this.parked.size() + this.resuming.size();
+    }
+    
+    private void onCircuitTransition(BatchCircuitBreaker.State from, BatchCircuitBreaker.State to) {
+        this.listener.onCircuitStateChange(from, to);
+        if (!this.parkWhileOpen) {
+            return;
+        }
+        // 在定时器线程上恢复, 不占用触发状态变化的执行线程
+        if (to == BatchCircuitBreaker.State.CLOSED) {
+            this.scheduleResume(this::resumeParked, 0L);
+        } else if (to == BatchCircuitBreaker.State.OPEN) {
+            this.scheduleResume(this::resumeParked, this.circuitBreaker.waitDurationInOpenState());
+        }
+    }
+    
+    private void scheduleResume(Runnable command, long delay) {
+        try {
+            this.retryScheduler.schedule(command, delay, "same");
+        } catch (RejectedExecutionException exception) {
+            // 定时器已关闭, 暂存的批次在 awaitClose 中结束
+        }
+    }
+    
+    /**
+     * 熔断器关闭后恢复全部暂存批次; 仍处于 OPEN 时只恢复一个作为探测
+     */
+    private void resumeParked() {
+        int count = this.circuitBreaker.state() == BatchCircuitBreaker.State.CLOSED ? Integer.MAX_VALUE : 1;
+        Completion completion;
+        while (count-- > 0 && (completion = this.parked.poll()) != null) {
+            if (this.dispatchExecutor != null) {
+                this.queued.incrementAndGet();
+                this.waiting.add(completion);
+                this.drain();
+            } else {
+                this.resuming.add(completion);
+            }
+        }
+        if (this.dispatchExecutor == null) {
+            this.drainResuming();
+        }
+    }
+    
+    /**
+     * 在定时器线程上执行有并发许可的恢复批次; 定时器线程不等待许可, 否则会挡住归还许可的重试
+     */
+    private void drainResuming() {
+        for (;;) {
+            if (this.resuming.isEmpty() || !this.semaphore.tryAcquire()) {
+                return;
+            }
+            Completion completion = this.resuming.poll();
+            if (completion == null) {
+                // 已被其他线程取走, 归还许可后重新检查
+                this.semaphore.release();
+                continue;
+            }
+            completion.resume();
+        }
+    }
+    
+    /**
+     * 以失败结束未执行的批次: 通知监听器并回调 onComplete, 不占用并发许可
+     * @param request
+     * @param exception
+     */
+    public void fail(BatchRequest<T> request, Exception exception) {
+        try {
+            this.listener.afterBatch(exception, new BatchResponse.Builder().setRequest(request).setSuccess(false).build());
+        } finally {
+            this.onComplete.accept(request);
+        }
+    }
+    
+    /**
+     * 在调用线程上执行并等待批次结束, 不占用并发许可
+     * @param request
+     */
+    public void executeInCaller(final BatchRequest<T> request) {
+        this.run(request, true, false);
+    }
+
+    private void dispatch(final BatchRequest<T> request) {
+        this.run(request, false, false);
+    }
+    
+    /**
+     * @param inCaller 在调用线程上执行, 不占用并发许可
+     * @param permitHeld 已获取并发许可(经分发线程池执行)
+     */
+    private void run(final BatchRequest<T> request, boolean inCaller, boolean permitHeld) {
+        Completion completion = new Completion(request, inCaller || this.concurrentRequests == 0);
+        completion.permit = permitHeld;
         boolean batchRequestSetupSuccessful = false;
 
         try {
             this.listener.beforBatch(request);
-            this.semaphore.acquire();
-            Semaphore semaphore = this.semaphore;
-            Objects.requireNonNull(semaphore);
-            toRelease = semaphore::release;
-            CountDownLatch latch = new CountDownLatch(1);
-            retry.witchBackoff(this.customer, request,  BatchListerner.runAfter(new BatchListerner<BatchResponse>() {
-                @Override
-                public void onResponse(BatchResponse response) {
-                    BatchRequestHandler.this.listener.afterBatch(response);
+            if (!inCaller && !permitHeld) {
+                this.semaphore.acquire();
+                completion.permit = true;
+            }
+            long throttleNanos = this.rateLimiter == null ? 0L : this.rateLimiter.reserve(request.numberOfActions());
+            if (throttleNanos > 0L) {
+                // 不等待结果的批次交给定时器, 调用线程立即返回继续累积下一批次
+                if (completion.latch == null && this.throttle(completion, throttleNanos)) {
+                    batchRequestSetupSuccessful = true;
+                    return;
                 }
-                @Override
-                public void onFailure(BatchResponse response,Exception e) {
-                    System.out.println("onFailure");
-                    BatchRequestHandler.this.listener.afterBatch(e, response);
+                // 等待结果的调用线程(或定时器已关闭时)在调用线程上等待; parkNanos 可能提前返回, 等到截止时间为止
+                long deadline = System.nanoTime() + throttleNanos;
+                for (long remaining = throttleNanos; remaining > 0L; remaining = deadline - System.nanoTime()) {
+                    LockSupport.parkNanos(this, remaining);
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
                 }
-            }, () -> {
-                this.semaphore.release();
-                latch.countDown();
-            }));
+            }
+            retry.witchBackoff(this.customer, request, completion);
             batchRequestSetupSuccessful = true;
-            if (this.concurrentRequests == 0) {
-                latch.await();
+            if (completion.latch != null) {
+                completion.latch.await();
             }
             
             
@@ -89,13 +378,55 @@ public class BatchRequestHandler<T> {
             this.listener.afterBatch(exception,new BatchResponse.Builder().setRequest(request).setSuccess(false).build());
         } finally {
             if (!batchRequestSetupSuccessful) {
-                toRelease.run();
+                completion.run();
             }
         }
     }
 
+    /**
+     * 限流等待期间不占用分发线程或生产线程, 期间保持并发许可; 到期后交给分发线程池,
+     * 未配置分发线程池时与重试一样在定时器线程上执行
+     * @return 是否已交给定时器
+     */
+    private boolean throttle(Completion completion, long throttleNanos) {
+        long delay = TimeUnit.NANOSECONDS.toMillis(throttleNanos + TimeUnit.MILLISECONDS.toNanos(1L) - 1L);
+        try {
+            this.retryScheduler.schedule(() -> {
+                if (this.dispatchExecutor == null) {
+                    this.retry.witchBackoff(this.customer, completion.request, completion);
+                    return;
+                }
+                try {
+                    this.dispatchExecutor.execute(() -> this.retry.witchBackoff(this.customer, completion.request, completion));
+                } catch (RejectedExecutionException exception) {
+                    completion.onFailure(new BatchResponse(completion.request, false), exception);
+                }
+            }, delay, "same");
+            return true;
+        } catch (RejectedExecutionException exception) {
+            return false;
+        }
+    }
+    
     public boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
-        if (this.semaphore.tryAcquire(this.concurrentRequests, timeout, unit)) {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        this.closed = true;
+        // 先等待分发线程池中排队的批次开始执行, 以及熔断期间暂存的批次恢复执行
+        while (this.queued.get() > 0 || !this.parked.isEmpty() || !this.resuming.isEmpty()) {
+            if (System.nanoTime() - deadline >= 0) {
+                this.failParked();
+                return false;
+            }
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        if (this.circuitBreaker != null) {
+            this.circuitBreaker.removeStateListener(this.circuitListener);
+        }
+        long remaining = Math.max(0L, deadline - System.nanoTime());
+        if (this.semaphore.tryAcquire(this.concurrentRequests, remaining, TimeUnit.NANOSECONDS)) {
             this.semaphore.release(this.concurrentRequests);
             return true;
         } else {
@@ -103,4 +434,244 @@ public class BatchRequestHandler<T> {
         }
     }
     
+    /**
+     * 关闭超时后仍未恢复的暂存批次以 BatchCircuitOpenException 结束
+     */
+    private void failParked() {
+        Completion completion;
+        while ((completion = this.parked.poll()) != null || (completion = this.resuming.poll()) != null) {
+            completion.onFailure(new BatchResponse(completion.request, false),
+                    new BatchCircuitOpenException("circuit breaker is " + this.circuitBreaker.state() + ", parked batch dropped on close"));
+        }
+    }
+    
+    /**
+     * 批次结束处理: 转发结果后归还并发许可、唤醒等待线程、回调 onComplete, 只执行一次
+     *
+     * 每个批次仅创建这一个对象, 同时作为重试的结果监听
+     */
+    private final class Completion extends AtomicBoolean implements Runnable, BatchListerner<BatchResponse> {
+        
+        private final BatchRequest<T> request;
+        
+        private final CountDownLatch latch;
+        
+        private boolean permit;
+        
+        // 批次最终是否处理成功
+        private volatile boolean success;
+        
+        // 熔断期间暂存后恢复执行的批次(部分失败重试时为失败数据)
+        private BatchRequest<T> resumeRequest;
+        
+        Completion(BatchRequest<T> request, boolean await) {
+            this.request = request;
+            this.latch = await ? new CountDownLatch(1) : null;
+        }
+        
+        @Override
+        public void onResponse(BatchResponse response) {
+            // BatchResponse.hasSuccess() 为 true 表示 executeBatch 返回 false(重试已用尽)
+            this.success = !response.hasSuccess();
+            try {
+                BatchRequestHandler.this.responseListener.onResponse(response);
+            } finally {
+                this.run();
+            }
+        }
+        
+        @Override
+        public void onFailure(BatchResponse response, Exception exception) {
+            if (exception instanceof BatchCircuitOpenException && this.park(response)) {
+                return;
+            }
+            try {
+                BatchRequestHandler.this.responseListener.onFailure(response, exception);
+            } finally {
+                this.run();
+            }
+        }
+        
+        /**
+         * 暂存被熔断器拒绝的批次, 归还并发许可; 等待结果的调用线程及关闭中的处理器不暂存
+         */
+        @SuppressWarnings("unchecked")
+        private boolean park(BatchResponse response) {
+            BatchRequestHandler<T> handler = BatchRequestHandler.this;
+            if (!handler.parkWhileOpen || this.latch != null || handler.closed || this.get()) {
+                return false;
+            }
+            this.resumeRequest = response.getBatchRequest() != null ? response.getBatchRequest() : this.request;
+            if (this.permit) {
+                this.permit = false;
+                handler.releasePermit();
+            }
+            handler.parked.add(this);
+            // 暂存前熔断器已关闭, 不会再有状态变化通知
+            if (handler.circuitBreaker.state() == BatchCircuitBreaker.State.CLOSED) {
+                handler.scheduleResume(handler::resumeParked, 0L);
+            }
+            return true;
+        }
+        
+        /**
+         * 调用方已获取并发许可
+         */
+        void resume() {
+            BatchRequestHandler<T> handler = BatchRequestHandler.this;
+            this.permit = true;
+            // 暂存前已计入首次执行
+            handler.retry.resume(handler.customer, this.resumeRequest, this);
+        }
+        
+        @Override
+        public void run() {
+            if (!this.compareAndSet(false, true)) {
+                return;
+            }
+            this.request.setResponseState(!this.success);
+            try {
+                if (this.permit) {
+                    BatchRequestHandler.this.releasePermit();
+                }
+                if (this.latch != null) {
+                    this.latch.countDown();
+                }
+            } finally {
+                BatchRequestHandler.this.onComplete.accept(this.request);
+            }
+        }
+    }
+    
+    
+    /**
+     * @param listener
+     * @param customer 数据处理器
+     * @param backoffPolicy 重试补偿策略
+     * @param retryScheduler 重试定时器
+     * @return
+     */
+    public static <T> Builder<T> builder(BatchProcessor.Listener listener, BatchHandler customer, BatchBackoffPolicy backoffPolicy, BatchScheduler retryScheduler) {
+        return new Builder<>(listener, customer, backoffPolicy, retryScheduler);
+    }
+    
+    public static class Builder<T> {
+        
+        final BatchProcessor.Listener listener;
+        
+        final BatchHandler customer;
+        
+        final BatchBackoffPolicy backoffPolicy;
+        
+        final BatchScheduler retryScheduler;
+        
+        // 并发数(默认1), 0 表示在调用线程上执行并等待结果
+        int concurrentRequests = 1;
+        
+        // 分发线程池, 为空时在调用线程上执行
+        Executor dispatchExecutor;
+        
+        // 批次最终结束后的回调
+        Consumer<BatchRequest<T>> onComplete = request -> {};
+        
+        BatchAttemptListener attemptListener = BatchAttemptListener.NOOP;
+        
+        BatchPoisonListener<T> poisonListener;
+        
+        BatchRetryBudget retryBudget;
+        
+        BatchCircuitBreaker circuitBreaker;
+        
+        boolean parkWhileOpen;
+        
+        BatchRateLimiter rateLimiter;
+        
+        Builder(BatchProcessor.Listener listener, BatchHandler customer, BatchBackoffPolicy backoffPolicy, BatchScheduler retryScheduler) {
+            this.listener = Objects.requireNonNull(listener, "listener");
+            this.customer = Objects.requireNonNull(customer, "customer");
+            this.backoffPolicy = Objects.requireNonNull(backoffPolicy, "backoffPolicy");
+            this.retryScheduler = Objects.requireNonNull(retryScheduler, "retryScheduler");
+        }
+        
+        public Builder<T> setConcurrentRequests(int concurrentRequests) {
+            if (concurrentRequests < 0) {
+                throw new IllegalArgumentException("concurrentRequests must be >= 0");
+            }
+            this.concurrentRequests = concurrentRequests;
+            return this;
+        }
+        
+        /**
+         * 批次交给分发线程池执行, 调用线程立即返回; 延迟加载的批次(executeDeferred)必须设置
+         * @param dispatchExecutor
+         * @return
+         */
+        public Builder<T> setDispatchExecutor(Executor dispatchExecutor) {
+            this.dispatchExecutor = dispatchExecutor;
+            return this;
+        }
+        
+        /**
+         * 批次最终结束(成功、失败或未能执行)后的回调, 每个批次只调用一次
+         * @param onComplete
+         * @return
+         */
+        public Builder<T> setOnComplete(Consumer<BatchRequest<T>> onComplete) {
+            this.onComplete = Objects.requireNonNull(onComplete, "onComplete");
+            return this;
+        }
+        
+        /**
+         * 每次执行(含重试)后的回调
+         * @param attemptListener
+         * @return
+         */
+        public Builder<T> setAttemptListener(BatchAttemptListener attemptListener) {
+            this.attemptListener = Objects.requireNonNull(attemptListener, "attemptListener");
+            return this;
+        }
+        
+        /**
+         * @param poisonListener 重试用尽后二分隔离毒数据, 为空表示不开启
+         * @return
+         */
+        public Builder<T> setPoisonListener(BatchPoisonListener<T> poisonListener) {
+            this.poisonListener = poisonListener;
+            return this;
+        }
+        
+        /**
+         * @param retryBudget 重试预算, 可在多个处理器间共享, 为空表示不限制
+         * @return
+         */
+        public Builder<T> setRetryBudget(BatchRetryBudget retryBudget) {
+            this.retryBudget = retryBudget;
+            return this;
+        }
+        
+        /**
+         * @param circuitBreaker 熔断器, 为空表示不开启
+         * @param parkWhileOpen 熔断期间暂存被拒绝的批次(不占用并发许可), 恢复后重新执行; 否则以 BatchCircuitOpenException 快速失败
+         * @return
+         */
+        public Builder<T> setCircuitBreaker(BatchCircuitBreaker circuitBreaker, boolean parkWhileOpen) {
+            this.circuitBreaker = circuitBreaker;
+            this.parkWhileOpen = parkWhileOpen;
+            return this;
+        }
+        
+        /**
+         * @param rateLimiter 限流器, 首次执行、重试及二分子批次执行前按批次数与数据条数预约, 为空表示不限制
+         * @return
+         */
+        public Builder<T> setRateLimiter(BatchRateLimiter rateLimiter) {
+            this.rateLimiter = rateLimiter;
+            return this;
+        }
+        
+        public BatchRequestHandler<T> build() {
+            return new BatchRequestHandler<>(this);
+        }
+    }
+    
 }
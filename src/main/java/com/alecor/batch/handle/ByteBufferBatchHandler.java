@@ -0,0 +1,45 @@
+package com.alecor.batch.handle;
+
+
+import com.alecor.batch.BatchRequest;
+import com.alecor.batch.ByteBufferBatchRequest;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @author yuan_kf
+ * @ClassName ByteBufferBatchHandler
+ * @date 2026/10/18 18:55
+ * @Description 已序列化数据的处理接口, 直接接收整个批次的只读 ByteBuffer, 可直接写入 NIO Channel
+ * @Version V1.0
+ */
+
+public abstract class ByteBufferBatchHandler extends BatchHandler<byte[]> {
+    
+    /**
+     *
+     * @param records 批次数据, 每条数据格式为 [int 长度][数据], 处理结束后不能再持有该对象
+     * @param count 数据条数
+     * @return
+     * @throws Exception
+     */
+    public abstract boolean executeBatch(ByteBuffer records, int count) throws Exception;
+    
+    @Override
+    public final boolean executeBatch(BatchRequest<byte[]> request) throws Exception {
+        if (request instanceof ByteBufferBatchRequest) {
+            return this.executeBatch(((ByteBufferBatchRequest) request).records(), request.numberOfActions());
+        }
+        int size = 0;
+        for (byte[] record : request.getBatchData()) {
+            size += Integer.BYTES + record.length;
+        }
+        ByteBuffer records = ByteBuffer.allocate(size);
+        for (byte[] record : request.getBatchData()) {
+            records.putInt(record.length);
+            records.put(record);
+        }
+        records.flip();
+        return this.executeBatch(records.asReadOnlyBuffer(), request.numberOfActions());
+    }
+}
@@ -0,0 +1,41 @@
+package com.alecor.batch.handle;
+
+
+import com.alecor.batch.BatchRequest;
+import com.alecor.batch.LongBatchRequest;
+
+import java.util.List;
+
+/**
+ * @author yuan_kf
+ * @ClassName LongBatchHandler
+ * @date 2026/10/18 17:30
+ * @Description long 类型数据处理接口, 直接接收原始类型数组
+ * @Version V1.0
+ */
+
+public abstract class LongBatchHandler extends BatchHandler<Long> {
+    
+    /**
+     *
+     * @param values 批次数据, 有效数据为 [0, length), 处理结束后不能再持有该数组
+     * @param length 数据条数
+     * @return
+     * @throws Exception
+     */
+    public abstract boolean executeBatch(long[] values, int length) throws Exception;
+    
+    @Override
+    public final boolean executeBatch(BatchRequest<Long> request) throws Exception {
+        if (request instanceof LongBatchRequest) {
+            LongBatchRequest batchRequest = (LongBatchRequest) request;
+            return this.executeBatch(batchRequest.values(), batchRequest.numberOfActions());
+        }
+        List<Long> data = request.getBatchData();
+        long[] values = new long[data.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = data.get(i);
+        }
+        return this.executeBatch(values, values.length);
+    }
+}
@@ -0,0 +1,408 @@
+package com.alecor.batch.journal;
+
+
+import com.alecor.batch.thread.BatchScheduler;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchJournal
+ * @date 2026/10/18 19:40
+ * @Description 基于内存映射文件的预写日志, 数据在 add() 返回前写入日志, 批次处理成功后确认
+ *
+ * 1、日志按段存储, 每段为固定大小的映射文件, 写满后切换到新段
+ * 2、每条记录格式为 [int 长度+1][int CRC32][数据], 长度为0表示段结束; 确认时将长度取反, 重放时跳过
+ * 3、段已写满且其中的数据全部确认后删除该段文件
+ * 4、启动时重放未删除段中未确认的数据; 确认标记随段一起刷盘, 崩溃前未刷盘的标记丢失时该数据会再次重放(至少一次)
+ * 5、处理失败的数据由处理器通过 retain 写入单独的保留段后确认原记录, 原记录所在段可以回收; 保留段进程内不删除, 下次启动时重放
+ * 6、所有写入在日志对象上串行执行(包括按条数刷盘), 多个分段的处理器共用一个日志时写入不会并行;
+ *    CRC 在锁外计算, 锁内只有复制数据, 刷盘策略按条数刷盘时锁内还包括 force
+ *
+ * @Version V1.0
+ */
+
+public class BatchJournal implements Closeable {
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+
+    private final int segmentSize;
+
+    private final JournalFsyncPolicy fsyncPolicy;
+
+    private static final ThreadLocal<CRC32> CRC = ThreadLocal.withInitial(CRC32::new);
+
+    /**
+     * 打开时已存在的段, 等待重放
+     */
+    private final List<Segment> recovered;
+
+    /**
+     * 按时间刷盘的定时器
+     */
+    private final ScheduledThreadPoolExecutor fsyncScheduler;
+
+    private Segment active;
+
+    /**
+     * 当前保留段, 只写入处理失败的数据
+     */
+    private Segment retained;
+
+    private long nextSegmentId;
+
+    /**
+     * 上次刷盘后写入的条数
+     */
+    private int unsynced;
+
+    private boolean closed;
+
+    /**
+     *
+     * @param directory 日志目录, 同一目录只能被一个处理器使用
+     * @param segmentSize 单个段文件大小(字节)
+     * @param fsyncPolicy 刷盘策略
+     * @throws IOException
+     */
+    public BatchJournal(Path directory, int segmentSize, JournalFsyncPolicy fsyncPolicy) throws IOException {
+        if (segmentSize < HEADER_SIZE * 2) {
+            throw new IllegalArgumentException("segmentSize must be >= " + HEADER_SIZE * 2);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.recovered = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                long id = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+                this.recovered.add(new Segment(id, path, null));
+                this.nextSegmentId = Math.max(this.nextSegmentId, id + 1);
+            }
+        }
+        this.recovered.sort(Comparator.comparingLong(segment -> segment.id));
+        if (fsyncPolicy.intervalMillis > 0) {
+            this.fsyncScheduler = BatchScheduler.initScheduler();
+            this.fsyncScheduler.scheduleWithFixedDelay(this::sync, fsyncPolicy.intervalMillis, fsyncPolicy.intervalMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.fsyncScheduler = null;
+        }
+    }
+
+    /**
+     * 写入一条数据, 记录到 ticket 中, 批次处理成功后通过 ticket 确认
+     *
+     * 写入在日志对象上串行执行, 见类说明
+     * @param data
+     * @param ticket
+     */
+    public void append(byte[] data, JournalTicket ticket) {
+        CRC32 crc = CRC.get();
+        crc.reset();
+        crc.update(data, 0, data.length);
+        int checksum = (int) crc.getValue();
+        int size = HEADER_SIZE + data.length;
+        Segment segment;
+        int offset;
+        synchronized (this) {
+            if (this.closed) {
+                throw new IllegalStateException("Batch journal already closed");
+            }
+            if (this.active == null || this.active.buffer.remaining() < size) {
+                this.active = this.roll(this.active, size);
+            }
+            segment = this.active;
+            offset = this.write(segment, data, checksum);
+        }
+        ticket.track(segment, offset);
+    }
+
+    /**
+     * 保留一条处理失败的数据, 下次启动时重放
+     *
+     * 写入单独的保留段, 不与正常数据混在同一段中, 正常数据全部确认后所在段即可回收; 保留段在进程内不删除
+     * @param data
+     */
+    public void retain(byte[] data) {
+        CRC32 crc = CRC.get();
+        crc.reset();
+        crc.update(data, 0, data.length);
+        int checksum = (int) crc.getValue();
+        int size = HEADER_SIZE + data.length;
+        synchronized (this) {
+            if (this.closed) {
+                throw new IllegalStateException("Batch journal already closed");
+            }
+            if (this.retained == null || this.retained.buffer.remaining() < size) {
+                this.retained = this.roll(this.retained, size);
+            }
+            // 不确认, pending 不会归零
+            this.write(this.retained, data, checksum);
+        }
+    }
+
+    /**
+     * 写入一条记录, 由调用方加锁
+     * @return 记录在段内的位置
+     */
+    private int write(Segment segment, byte[] data, int checksum) {
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = buffer.position();
+        buffer.putInt(data.length + 1);
+        buffer.putInt(checksum);
+        buffer.put(data);
+        segment.pending.incrementAndGet();
+        if (++this.unsynced >= this.fsyncPolicy.items && this.fsyncPolicy.items > 0) {
+            this.force();
+        }
+        return offset;
+    }
+
+    /**
+     * 重放打开时已存在的段中未确认的数据, 只能调用一次
+     *
+     * @param consumer 接收数据及其所在段和位置
+     */
+    public void replay(RecordConsumer consumer) {
+        List<Segment> segments;
+        synchronized (this) {
+            segments = new ArrayList<>(this.recovered);
+            this.recovered.clear();
+        }
+        for (Segment recovered : segments) {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(recovered.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            } catch (IOException exception) {
+                throw new UncheckedIOException("failed to map journal segment " + recovered.path, exception);
+            }
+            // 重放的数据确认时需要写入标记
+            Segment segment = new Segment(recovered.id, recovered.path, buffer);
+            // 先统计条数, 再投递, 避免投递过程中全部确认导致提前删除
+            int count = this.scan(buffer.duplicate(), null, null);
+            segment.pending.set(count);
+            segment.sealed = true;
+            if (count == 0) {
+                segment.delete();
+                continue;
+            }
+            this.scan(buffer.duplicate(), segment, consumer);
+        }
+    }
+
+    /**
+     * 顺序读取段内的有效记录, 遇到段结束或校验失败(写入中断)时停止
+     */
+    private int scan(ByteBuffer buffer, Segment segment, RecordConsumer consumer) {
+        CRC32 checksum = new CRC32();
+        int count = 0;
+        while (buffer.remaining() >= HEADER_SIZE) {
+            int offset = buffer.position();
+            int header = buffer.getInt();
+            // 已确认的记录长度取反
+            boolean acked = header < 0;
+            int length = (acked ? -header : header) - 1;
+            int crcValue = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                break;
+            }
+            byte[] data = new byte[length];
+            buffer.get(data);
+            checksum.reset();
+            checksum.update(data, 0, length);
+            if ((int) checksum.getValue() != crcValue) {
+                break;
+            }
+            if (acked) {
+                continue;
+            }
+            count++;
+            if (consumer != null) {
+                consumer.accept(segment, offset, data);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 刷盘当前段及当前保留段
+     */
+    public void sync() {
+        Segment segment;
+        Segment retained;
+        synchronized (this) {
+            if (this.unsynced == 0) {
+                return;
+            }
+            segment = this.active;
+            retained = this.retained;
+            this.unsynced = 0;
+        }
+        if (segment != null) {
+            segment.buffer.force();
+        }
+        if (retained != null) {
+            retained.buffer.force();
+        }
+    }
+
+    private void force() {
+        if (this.active != null) {
+            this.active.buffer.force();
+        }
+        if (this.retained != null) {
+            this.retained.buffer.force();
+        }
+        this.unsynced = 0;
+    }
+
+    /**
+     * 封存写满的段并创建新段, 由调用方加锁
+     */
+    private Segment roll(Segment current, int size) {
+        if (current != null) {
+            if (this.fsyncPolicy != JournalFsyncPolicy.never()) {
+                current.buffer.force();
+            }
+            current.seal();
+        }
+        long id = this.nextSegmentId++;
+        Path path = this.directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(this.segmentSize, size + HEADER_SIZE)));
+        } catch (IOException exception) {
+            throw new UncheckedIOException("failed to create journal segment " + path, exception);
+        }
+    }
+
+    /**
+     * 关闭日志, 刷盘当前段; 关闭后仍可确认在途批次
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.force();
+            if (this.active != null) {
+                this.active.seal();
+            }
+            if (this.retained != null) {
+                this.retained.seal();
+            }
+        }
+        if (this.fsyncScheduler != null) {
+            BatchScheduler.terminate(this.fsyncScheduler, 10L, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * 接收重放的记录
+     */
+    public interface RecordConsumer {
+
+        /**
+         * @param segment 记录所在段
+         * @param offset 记录在段内的位置
+         * @param data
+         */
+        void accept(Segment segment, int offset, byte[] data);
+    }
+
+    /**
+     * 日志段
+     */
+    public static final class Segment {
+
+        private final long id;
+
+        private final Path path;
+
+        private final MappedByteBuffer buffer;
+
+        /**
+         * 已写入但未确认的条数
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final AtomicBoolean deleted = new AtomicBoolean();
+
+        /**
+         * 是否已写满(不再写入)
+         */
+        private volatile boolean sealed;
+
+        private Segment(long id, Path path, MappedByteBuffer buffer) {
+            this.id = id;
+            this.path = path;
+            this.buffer = buffer;
+        }
+
+        /**
+         * 标记 offset 处的记录已确认, 重放时跳过; 只写映射内存, 随段刷盘
+         */
+        void mark(int offset) {
+            int header = this.buffer.getInt(offset);
+            if (header > 0) {
+                this.buffer.putInt(offset, -header);
+            }
+        }
+
+        /**
+         * 确认 count 条数据
+         */
+        void ack(int count) {
+            if (this.pending.addAndGet(-count) == 0 && this.sealed) {
+                this.delete();
+            }
+        }
+
+        private void seal() {
+            this.sealed = true;
+            if (this.pending.get() == 0) {
+                this.delete();
+            }
+        }
+
+        private void delete() {
+            if (this.deleted.compareAndSet(false, true)) {
+                try {
+                    Files.deleteIfExists(this.path);
+                } catch (IOException exception) {
+                    // 删除失败时保留文件, 下次启动重放
+                }
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Segment{path=" + this.path + ", pending=" + this.pending.get() + '}';
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.alecor.batch.journal;
+
+/**
+ * @author yuan_kf
+ * @ClassName JournalFsyncPolicy
+ * @date 2026/10/18 19:30
+ * @Description 日志刷盘策略
+ *
+ * 1、everyItems 每写入 N 条刷盘一次
+ * 2、everyMillis 每隔 T 毫秒刷盘一次
+ * 3、never 由操作系统决定, 仅在关闭时刷盘
+ *
+ * @Version V1.0
+ */
+
+public final class JournalFsyncPolicy {
+    
+    private static final JournalFsyncPolicy NEVER = new JournalFsyncPolicy(0, 0L);
+    
+    /**
+     * 每写入多少条刷盘, 0 表示不按条数刷盘
+     */
+    final int items;
+    
+    /**
+     * 刷盘间隔毫秒, 0 表示不按时间刷盘
+     */
+    final long intervalMillis;
+    
+    private JournalFsyncPolicy(int items, long intervalMillis) {
+        this.items = items;
+        this.intervalMillis = intervalMillis;
+    }
+    
+    /**
+     * 每写入 items 条刷盘一次, 1 表示每条都刷盘
+     * @param items
+     * @return
+     */
+    public static JournalFsyncPolicy everyItems(int items) {
+        if (items < 1) {
+            throw new IllegalArgumentException("items must be >= 1");
+        }
+        return new JournalFsyncPolicy(items, 0L);
+    }
+    
+    /**
+     * 后台每隔 intervalMillis 毫秒刷盘一次
+     * @param intervalMillis
+     * @return
+     */
+    public static JournalFsyncPolicy everyMillis(long intervalMillis) {
+        if (intervalMillis < 1) {
+            throw new IllegalArgumentException("intervalMillis must be >= 1");
+        }
+        return new JournalFsyncPolicy(0, intervalMillis);
+    }
+    
+    public static JournalFsyncPolicy never() {
+        return NEVER;
+    }
+    
+    @Override
+    public String toString() {
+        if (this.items > 0) {
+            return "everyItems(" + this.items + ")";
+        }
+        return this.intervalMillis > 0 ? "everyMillis(" + this.intervalMillis + ")" : "never";
+    }
+}
@@ -0,0 +1,101 @@
+package com.alecor.batch.journal;
+
+
+import java.util.Arrays;
+
+/**
+ * @author yuan_kf
+ * @ClassName JournalTicket
+ * @date 2026/10/18 20:10
+ * @Description 记录一个批次中的数据分别写在哪些日志段的哪个位置, 批次成功后据此确认
+ *
+ * 批次内数据按写入顺序记录, 连续落在同一段的数据合并计数, 每条数据另记录其在段内的位置, 确认时标记该记录不再重放
+ *
+ * @Version V1.0
+ */
+
+public final class JournalTicket {
+    
+    private BatchJournal.Segment[] segments = new BatchJournal.Segment[2];
+    
+    private int[] counts = new int[2];
+    
+    private int size;
+    
+    // 每条数据在所在段中的位置, [head, tail) 为未确认的数据
+    private int[] offsets = new int[8];
+    
+    private int head;
+    
+    private int tail;
+    
+    /**
+     * 记录一条写入 segment 的数据
+     * @param segment
+     * @param offset 记录在段内的位置
+     */
+    public void track(BatchJournal.Segment segment, int offset) {
+        if (this.size > 0 && this.segments[this.size - 1] == segment) {
+            this.counts[this.size - 1]++;
+        } else {
+            if (this.size == this.segments.length) {
+                this.segments = Arrays.copyOf(this.segments, this.size << 1);
+                this.counts = Arrays.copyOf(this.counts, this.size << 1);
+            }
+            this.segments[this.size] = segment;
+            this.counts[this.size] = 1;
+            this.size++;
+        }
+        if (this.tail == this.offsets.length) {
+            if (this.head > 0) {
+                System.arraycopy(this.offsets, this.head, this.offsets, 0, this.tail - this.head);
+                this.tail -= this.head;
+                this.head = 0;
+            } else {
+                this.offsets = Arrays.copyOf(this.offsets, this.tail << 1);
+            }
+        }
+        this.offsets[this.tail++] = offset;
+    }
+    
+    /**
+     * 确认最早的一条数据(该数据被丢弃)
+     */
+    public void ackFirst() {
+        if (this.size == 0) {
+            return;
+        }
+        this.segments[0].mark(this.offsets[this.head++]);
+        this.segments[0].ack(1);
+        if (--this.counts[0] == 0) {
+            System.arraycopy(this.segments, 1, this.segments, 0, this.size - 1);
+            System.arraycopy(this.counts, 1, this.counts, 0, this.size - 1);
+            this.segments[--this.size] = null;
+        }
+    }
+    
+    /**
+     * 确认全部数据
+     */
+    public void ackAll() {
+        int next = this.head;
+        for (int i = 0; i < this.size; i++) {
+            BatchJournal.Segment segment = this.segments[i];
+            for (int end = next + this.counts[i]; next < end; next++) {
+                segment.mark(this.offsets[next]);
+            }
+            segment.ack(this.counts[i]);
+        }
+        this.clear();
+    }
+    
+    /**
+     * 放弃确认, 数据保留在日志中
+     */
+    public void clear() {
+        Arrays.fill(this.segments, 0, this.size, null);
+        this.size = 0;
+        this.head = 0;
+        this.tail = 0;
+    }
+}
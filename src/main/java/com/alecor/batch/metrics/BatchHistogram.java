@@ -0,0 +1,215 @@
+package com.alecor.batch.metrics;
+
+
+import java.beans.ConstructorProperties;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchHistogram
+ * @date 2026/10/19 01:20
+ * @Description 对数分桶直方图(类似 HdrHistogram), 记录无锁且不分配对象
+ *
+ * 1、每个2的幂区间再均分为16个子桶, 相对误差不超过 1/16
+ * 2、小于16的值精确记录, 负数按0记录
+ * 3、分位数返回所在桶的上界, 不超过记录过的最大值
+ *
+ * @Version V1.0
+ */
+
+public final class BatchHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    private final LongAdder sum = new LongAdder();
+
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+        long v = Math.max(0L, value);
+        this.counts.incrementAndGet(index(v));
+        this.sum.add(v);
+        long current;
+        while (v > (current = this.max.get()) && !this.max.compareAndSet(current, v)) {
+            // 重试
+        }
+    }
+
+    /**
+     * 当前数据的快照, 读取期间的并发记录可能部分可见
+     * @return
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = this.counts.get(i);
+        }
+        return new Snapshot(buckets, this.sum.sum(), this.max.get());
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 桶内最大值
+     */
+    static long highestEquivalentValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long lowest = (1L << exponent) | ((long) (index % SUB_BUCKETS) << (exponent - SUB_BUCKET_BITS));
+        return lowest + (1L << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public static final class Snapshot {
+
+        private final long[] buckets;
+
+        private final long count;
+
+        private final long sum;
+
+        private final long max;
+
+        private Snapshot(long[] buckets, long sum, long max) {
+            long total = 0L;
+            for (long bucket : buckets) {
+                total += bucket;
+            }
+            this.buckets = buckets;
+            this.count = total;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public long getMax() {
+            return this.max;
+        }
+
+        public double getMean() {
+            return this.count == 0L ? 0D : (double) this.sum / this.count;
+        }
+
+        /**
+         *
+         * @param quantile [0, 1], 如0.99
+         * @return 没有数据时为0
+         */
+        public long getValueAtQuantile(double quantile) {
+            if (this.count == 0L) {
+                return 0L;
+            }
+            long target = Math.max(1L, (long) Math.ceil(Math.min(1D, Math.max(0D, quantile)) * this.count));
+            long seen = 0L;
+            for (int i = 0; i < this.buckets.length; i++) {
+                seen += this.buckets[i];
+                if (seen >= target) {
+                    return Math.min(highestEquivalentValue(i), this.max);
+                }
+            }
+            return this.max;
+        }
+
+        public long getP50() {
+            return this.getValueAtQuantile(0.5D);
+        }
+
+        public long getP99() {
+            return this.getValueAtQuantile(0.99D);
+        }
+
+        public long getP999() {
+            return this.getValueAtQuantile(0.999D);
+        }
+
+        /**
+         * 由同一快照计算的统计值, 可作为一个 JMX 属性整体读取
+         * @return
+         */
+        public Summary summary() {
+            return new Summary(this.count, this.getMean(), this.getP50(), this.getP99(), this.getP999(), this.max);
+        }
+
+        @Override
+        public String toString() {
+            return this.summary().toString();
+        }
+    }
+
+    /**
+     * 直方图统计值, 各项来自同一快照, JMX 中映射为 CompositeData
+     */
+    public static final class Summary {
+
+        private final long count;
+
+        private final double mean;
+
+        private final long p50;
+
+        private final long p99;
+
+        private final long p999;
+
+        private final long max;
+
+        @ConstructorProperties({"count", "mean", "p50", "p99", "p999", "max"})
+        public Summary(long count, double mean, long p50, long p99, long p999, long max) {
+            this.count = count;
+            this.mean = mean;
+            this.p50 = p50;
+            this.p99 = p99;
+            this.p999 = p999;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public double getMean() {
+            return this.mean;
+        }
+
+        public long getP50() {
+            return this.p50;
+        }
+
+        public long getP99() {
+            return this.p99;
+        }
+
+        public long getP999() {
+            return this.p999;
+        }
+
+        public long getMax() {
+            return this.max;
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + this.count + ", mean=" + String.format("%.1f", this.mean) + ", p50=" + this.p50 + ", p99=" + this.p99
+                    + ", p999=" + this.p999 + ", max=" + this.max + '}';
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package com.alecor.batch.metrics;
+
+
+import com.alecor.batch.BatchRequest;
+import com.alecor.batch.Listener.BatchAttemptListener;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchMetrics
+ * @date 2026/10/19 01:40
+ * @Description 处理器指标, 记录时无锁且不分配对象
+ *
+ * 1、计数使用 LongAdder, 分布使用对数分桶直方图(BatchHistogram)
+ * 2、队列深度、在途批次等瞬时值在读取时由处理器计算
+ * 3、snapshot() 获取不可变快照, 也可通过 JMX 读取(BatchMetricsMXBean)
+ * 4、注册到 JMX 后 MBeanServer 持有本对象及处理器的引用, 需调用 unregister()(处理器关闭时自动调用)才能回收
+ *
+ * @Version V1.0
+ */
+
+public class BatchMetrics implements BatchMetricsMXBean, BatchAttemptListener {
+
+    public static final String JMX_DOMAIN = "com.alecor.batch";
+
+    /**
+     * 按执行次数统计时的最大次数, 之后的执行计入最后一项
+     */
+    private static final int MAX_TRACKED_ATTEMPTS = 16;
+
+    /**
+     * 封存原因
+     */
+    public enum SealTrigger {
+        // 达到 batchSize 或 maxBatchBytes
+        SIZE,
+        // 定时 flush 或 key 缓冲区等待到期
+        TIME,
+        // 手动 flush、关闭或 key 缓冲区被淘汰
+        FLUSH
+    }
+
+    /**
+     * 处理器的瞬时值, 读取指标时调用
+     */
+    public interface Gauges {
+
+        long queuedItems();
+
+        int queuedBatches();
+
+        /**
+         * 未设置缓冲区上限时为 -1
+         */
+        long bufferedItems();
+
+        int inFlightBatches();
+
+        int parkedBatches();
+
+        long rejectedExecutions();
+    }
+
+    private final String name;
+
+    private final Gauges gauges;
+
+    private final LongAdder itemsAdded = new LongAdder();
+
+    private final LongAdder sealedBySize = new LongAdder();
+
+    private final LongAdder sealedByTime = new LongAdder();
+
+    private final LongAdder sealedByFlush = new LongAdder();
+
+    private final BatchHistogram batchSize = new BatchHistogram();
+
+    private final BatchHistogram executeLatency = new BatchHistogram();
+
+    private final LongAdder failedAttempts = new LongAdder();
+
+    private final LongAdder[] attemptsByNumber = new LongAdder[MAX_TRACKED_ATTEMPTS];
+
+    private volatile ObjectName objectName;
+
+    public BatchMetrics(String name, Gauges gauges) {
+        this.name = name;
+        this.gauges = gauges;
+        for (int i = 0; i < MAX_TRACKED_ATTEMPTS; i++) {
+            this.attemptsByNumber[i] = new LongAdder();
+        }
+    }
+
+    public void onItemAdded() {
+        this.itemsAdded.increment();
+    }
+
+    public void onSealed(SealTrigger trigger, int numberOfActions) {
+        switch (trigger) {
+            case SIZE:
+                this.sealedBySize.increment();
+                break;
+            case TIME:
+                this.sealedByTime.increment();
+                break;
+            default:
+                this.sealedByFlush.increment();
+                break;
+        }
+        this.batchSize.record(numberOfActions);
+    }
+
+    @Override
+    public void onAttempt(BatchRequest request, int attempt, long tookNanos, boolean success) {
+        this.executeLatency.record(tookNanos);
+        this.attemptsByNumber[Math.min(Math.max(attempt, 1), MAX_TRACKED_ATTEMPTS) - 1].increment();
+        if (!success) {
+            this.failedAttempts.increment();
+        }
+    }
+
+    public BatchMetricsSnapshot snapshot() {
+        long[] attempts = new long[MAX_TRACKED_ATTEMPTS];
+        for (int i = 0; i < MAX_TRACKED_ATTEMPTS; i++) {
+            attempts[i] = this.attemptsByNumber[i].sum();
+        }
+        return new BatchMetricsSnapshot(this.name, this.itemsAdded.sum(), this.sealedBySize.sum(), this.sealedByTime.sum(), this.sealedByFlush.sum(),
+                this.batchSize.snapshot(), this.gauges.queuedItems(), this.gauges.queuedBatches(), this.gauges.bufferedItems(),
+                this.gauges.inFlightBatches(), this.gauges.parkedBatches(), this.executeLatency.snapshot(), this.failedAttempts.sum(), attempts,
+                this.gauges.rejectedExecutions());
+    }
+
+    /**
+     * 注册到平台 MBeanServer
+     * @throws IllegalStateException 同名处理器已注册
+     */
+    public void register() {
+        try {
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=BatchProcessor,name=" + ObjectName.quote(this.name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (InstanceAlreadyExistsException exception) {
+            throw new IllegalStateException("a batch processor named " + this.name + " is already registered", exception);
+        } catch (JMException exception) {
+            throw new IllegalStateException("failed to register metrics of " + this.name, exception);
+        }
+    }
+
+    public void unregister() {
+        ObjectName objectName = this.objectName;
+        if (objectName == null) {
+            return;
+        }
+        this.objectName = null;
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.unregisterMBean(objectName);
+        } catch (JMException exception) {
+            // 已被外部注销
+        }
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public long getItemsAdded() {
+        return this.itemsAdded.sum();
+    }
+
+    @Override
+    public long getBatchesSealedBySize() {
+        return this.sealedBySize.sum();
+    }
+
+    @Override
+    public long getBatchesSealedByTime() {
+        return this.sealedByTime.sum();
+    }
+
+    @Override
+    public long getBatchesSealedByFlush() {
+        return this.sealedByFlush.sum();
+    }
+
+    @Override
+    public BatchHistogram.Summary getBatchSize() {
+        return this.batchSize.snapshot().summary();
+    }
+
+    @Override
+    public double getBatchSizeMean() {
+        return this.batchSize.snapshot().getMean();
+    }
+
+    @Override
+    public long getBatchSizeP50() {
+        return this.batchSize.snapshot().getP50();
+    }
+
+    @Override
+    public long getBatchSizeP99() {
+        return this.batchSize.snapshot().getP99();
+    }
+
+    @Override
+    public long getBatchSizeMax() {
+        return this.batchSize.snapshot().getMax();
+    }
+
+    @Override
+    public long getQueuedItems() {
+        return this.gauges.queuedItems();
+    }
+
+    @Override
+    public int getQueuedBatches() {
+        return this.gauges.queuedBatches();
+    }
+
+    @Override
+    public long getBufferedItems() {
+        return this.gauges.bufferedItems();
+    }
+
+    @Override
+    public int getInFlightBatches() {
+        return this.gauges.inFlightBatches();
+    }
+
+    @Override
+    public int getParkedBatches() {
+        return this.gauges.parkedBatches();
+    }
+
+    @Override
+    public BatchHistogram.Summary getExecuteLatencyMicros() {
+        BatchHistogram.Snapshot snapshot = this.executeLatency.snapshot();
+        return new BatchHistogram.Summary(snapshot.getCount(), snapshot.getMean() / 1000D, TimeUnit.NANOSECONDS.toMicros(snapshot.getP50()),
+                TimeUnit.NANOSECONDS.toMicros(snapshot.getP99()), TimeUnit.NANOSECONDS.toMicros(snapshot.getP999()),
+                TimeUnit.NANOSECONDS.toMicros(snapshot.getMax()));
+    }
+
+    @Override
+    public long getExecuteCount() {
+        return this.executeLatency.snapshot().getCount();
+    }
+
+    @Override
+    public double getExecuteLatencyMeanMicros() {
+        return this.executeLatency.snapshot().getMean() / 1000D;
+    }
+
+    @Override
+    public long getExecuteLatencyP50Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(this.executeLatency.snapshot().getP50());
+    }
+
+    @Override
+    public long getExecuteLatencyP99Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(this.executeLatency.snapshot().getP99());
+    }
+
+    @Override
+    public long getExecuteLatencyP999Micros() {
+        return TimeUnit.NANOSECONDS.toMicros(this.executeLatency.snapshot().getP999());
+    }
+
+    @Override
+    public long getExecuteLatencyMaxMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(this.executeLatency.snapshot().getMax());
+    }
+
+    @Override
+    public long getFailedAttempts() {
+        return this.failedAttempts.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        long retries = 0L;
+        for (int i = 1; i < MAX_TRACKED_ATTEMPTS; i++) {
+            retries += this.attemptsByNumber[i].sum();
+        }
+        return retries;
+    }
+
+    @Override
+    public long[] getAttemptsByNumber() {
+        long[] attempts = new long[MAX_TRACKED_ATTEMPTS];
+        for (int i = 0; i < MAX_TRACKED_ATTEMPTS; i++) {
+            attempts[i] = this.attemptsByNumber[i].sum();
+        }
+        return attempts;
+    }
+
+    @Override
+    public long getRejectedExecutions() {
+        return this.gauges.rejectedExecutions();
+    }
+}
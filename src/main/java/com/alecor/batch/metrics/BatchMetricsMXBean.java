@@ -0,0 +1,82 @@
+package com.alecor.batch.metrics;
+
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchMetricsMXBean
+ * @date 2026/10/19 01:30
+ * @Description 处理器指标的 JMX 接口, 注册为 com.alecor.batch:type=BatchProcessor,name=处理器名称
+ *
+ * 耗时单位为微秒, 分位数来自对数分桶直方图, 相对误差不超过 1/16
+ * 单项分布属性(如 BatchSizeP50、ExecuteLatencyP99Micros)各自读取一次快照, 同时读取的多个单项可能来自不同快照;
+ * 需要相互一致的分位数时读取 BatchSize、ExecuteLatencyMicros 组合属性
+ *
+ * @Version V1.0
+ */
+
+public interface BatchMetricsMXBean {
+
+    String getName();
+
+    long getItemsAdded();
+
+    long getBatchesSealedBySize();
+
+    long getBatchesSealedByTime();
+
+    long getBatchesSealedByFlush();
+
+    /**
+     * 批次大小分布, 各项来自同一快照
+     * @return
+     */
+    BatchHistogram.Summary getBatchSize();
+
+    double getBatchSizeMean();
+
+    long getBatchSizeP50();
+
+    long getBatchSizeP99();
+
+    long getBatchSizeMax();
+
+    long getQueuedItems();
+
+    int getQueuedBatches();
+
+    long getBufferedItems();
+
+    int getInFlightBatches();
+
+    int getParkedBatches();
+
+    /**
+     * executeBatch 耗时分布(微秒), 各项来自同一快照
+     * @return
+     */
+    BatchHistogram.Summary getExecuteLatencyMicros();
+
+    long getExecuteCount();
+
+    double getExecuteLatencyMeanMicros();
+
+    long getExecuteLatencyP50Micros();
+
+    long getExecuteLatencyP99Micros();
+
+    long getExecuteLatencyP999Micros();
+
+    long getExecuteLatencyMaxMicros();
+
+    long getFailedAttempts();
+
+    long getRetries();
+
+    /**
+     * 下标 i 为第 i+1 次执行的次数, 最后一项包含之后的所有执行
+     * @return
+     */
+    long[] getAttemptsByNumber();
+
+    long getRejectedExecutions();
+}
@@ -0,0 +1,191 @@
+package com.alecor.batch.metrics;
+
+
+import java.util.Arrays;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchMetricsSnapshot
+ * @date 2026/10/19 01:30
+ * @Description 处理器指标快照, 不可变
+ * @Version V1.0
+ */
+
+public final class BatchMetricsSnapshot {
+
+    private final String name;
+
+    private final long itemsAdded;
+
+    private final long batchesSealedBySize;
+
+    private final long batchesSealedByTime;
+
+    private final long batchesSealedByFlush;
+
+    private final BatchHistogram.Snapshot batchSize;
+
+    private final long queuedItems;
+
+    private final int queuedBatches;
+
+    private final long bufferedItems;
+
+    private final int inFlightBatches;
+
+    private final int parkedBatches;
+
+    private final BatchHistogram.Snapshot executeLatencyNanos;
+
+    private final long failedAttempts;
+
+    private final long[] attemptsByNumber;
+
+    private final long rejectedExecutions;
+
+    BatchMetricsSnapshot(String name, long itemsAdded, long batchesSealedBySize, long batchesSealedByTime, long batchesSealedByFlush,
+            BatchHistogram.Snapshot batchSize, long queuedItems, int queuedBatches, long bufferedItems, int inFlightBatches, int parkedBatches,
+            BatchHistogram.Snapshot executeLatencyNanos, long failedAttempts, long[] attemptsByNumber, long rejectedExecutions) {
+        this.name = name;
+        this.itemsAdded = itemsAdded;
+        this.batchesSealedBySize = batchesSealedBySize;
+        this.batchesSealedByTime = batchesSealedByTime;
+        this.batchesSealedByFlush = batchesSealedByFlush;
+        this.batchSize = batchSize;
+        this.queuedItems = queuedItems;
+        this.queuedBatches = queuedBatches;
+        this.bufferedItems = bufferedItems;
+        this.inFlightBatches = inFlightBatches;
+        this.parkedBatches = parkedBatches;
+        this.executeLatencyNanos = executeLatencyNanos;
+        this.failedAttempts = failedAttempts;
+        this.attemptsByNumber = attemptsByNumber;
+        this.rejectedExecutions = rejectedExecutions;
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    public long getItemsAdded() {
+        return this.itemsAdded;
+    }
+
+    /**
+     * 达到 batchSize 或 maxBatchBytes 封存的批次数
+     * @return
+     */
+    public long getBatchesSealedBySize() {
+        return this.batchesSealedBySize;
+    }
+
+    /**
+     * 定时 flush 或 key 缓冲区等待到期封存的批次数
+     * @return
+     */
+    public long getBatchesSealedByTime() {
+        return this.batchesSealedByTime;
+    }
+
+    /**
+     * 手动 flush、关闭或 key 缓冲区被淘汰时封存的批次数
+     * @return
+     */
+    public long getBatchesSealedByFlush() {
+        return this.batchesSealedByFlush;
+    }
+
+    public long getBatchesSealed() {
+        return this.batchesSealedBySize + this.batchesSealedByTime + this.batchesSealedByFlush;
+    }
+
+    /**
+     * 封存时的批次条数分布
+     * @return
+     */
+    public BatchHistogram.Snapshot getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * 等待分发的数据条数
+     * @return
+     */
+    public long getQueuedItems() {
+        return this.queuedItems;
+    }
+
+    public int getQueuedBatches() {
+        return this.queuedBatches;
+    }
+
+    /**
+     * 缓冲区中的数据条数, 未设置 maxBufferedItems 时为 -1
+     * @return
+     */
+    public long getBufferedItems() {
+        return this.bufferedItems;
+    }
+
+    /**
+     * 占用并发许可的批次数
+     * @return
+     */
+    public int getInFlightBatches() {
+        return this.inFlightBatches;
+    }
+
+    public int getParkedBatches() {
+        return this.parkedBatches;
+    }
+
+    /**
+     * executeBatch 耗时分布(纳秒), 含重试
+     * @return
+     */
+    public BatchHistogram.Snapshot getExecuteLatencyNanos() {
+        return this.executeLatencyNanos;
+    }
+
+    public long getFailedAttempts() {
+        return this.failedAttempts;
+    }
+
+    /**
+     * 下标 i 为第 i+1 次执行的次数, 最后一项包含之后的所有执行
+     * @return
+     */
+    public long[] getAttemptsByNumber() {
+        return this.attemptsByNumber.clone();
+    }
+
+    /**
+     * 重试次数, 即第二次及之后的执行次数
+     * @return
+     */
+    public long getRetries() {
+        long retries = 0L;
+        for (int i = 1; i < this.attemptsByNumber.length; i++) {
+            retries += this.attemptsByNumber[i];
+        }
+        return retries;
+    }
+
+    /**
+     * 内部线程池 BatchAbortPolicy 拒绝的任务数
+     * @return
+     */
+    public long getRejectedExecutions() {
+        return this.rejectedExecutions;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchMetricsSnapshot{name=" + this.name + ", itemsAdded=" + this.itemsAdded + ", sealedBySize=" + this.batchesSealedBySize
+                + ", sealedByTime=" + this.batchesSealedByTime + ", sealedByFlush=" + this.batchesSealedByFlush + ", batchSize=" + this.batchSize
+                + ", queuedItems=" + this.queuedItems + ", queuedBatches=" + this.queuedBatches + ", bufferedItems=" + this.bufferedItems
+                + ", inFlightBatches=" + this.inFlightBatches + ", parkedBatches=" + this.parkedBatches + ", executeLatencyNanos=" + this.executeLatencyNanos
+                + ", failedAttempts=" + this.failedAttempts + ", attemptsByNumber=" + Arrays.toString(this.attemptsByNumber)
+                + ", rejectedExecutions=" + this.rejectedExecutions + '}';
+    }
+}
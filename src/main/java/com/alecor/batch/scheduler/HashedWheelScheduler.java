@@ -0,0 +1,357 @@
+package com.alecor.batch.scheduler;
+
+
+
+import com.alecor.batch.thread.BatchRejectedExecutionException;
+import com.alecor.batch.thread.BatchScheduler;
+
+import java.io.Closeable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * @author yuan_kf
+ * @ClassName HashedWheelScheduler
+ * @date 2026/10/18 23:10
+ * @Description 基于哈希时间轮的定时器, 添加与取消均为 O(1), 任意多个处理器共享一个时间轮线程
+ *
+ * 1、时间轮由 ticksPerWheel 个槽组成, 每个槽为双向链表, 时间轮线程每个 tick 处理一个槽
+ * 2、定时任务按到期 tick 放入对应槽, 超过一圈的任务记录剩余圈数
+ * 3、添加与取消先进入无锁队列, 由时间轮线程在下一个 tick 统一处理
+ * 4、到期精度为 tick 粒度, 任务最多延迟一个 tick 执行
+ * 5、默认在时间轮线程上执行任务, 任务较重时应指定 taskExecutor
+ *
+ * @Version V1.0
+ */
+
+public class HashedWheelScheduler implements BatchScheduler, Closeable {
+
+    /**
+     * 每个 tick 最多转入时间轮的任务数, 避免时间轮线程被大量新任务拖住
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    private static volatile HashedWheelScheduler shared;
+
+    private final long tickNanos;
+
+    private final Bucket[] wheel;
+
+    private final int mask;
+
+    /**
+     * 执行到期任务, 为空时在时间轮线程上执行
+     */
+    private final Executor taskExecutor;
+
+    private final Queue<WheelTimeout> scheduled = new ConcurrentLinkedQueue<>();
+
+    private final Queue<WheelTimeout> cancelled = new ConcurrentLinkedQueue<>();
+
+    /**
+     * 未到期且未取消的任务数
+     */
+    private final AtomicLong pendingTimers = new AtomicLong();
+
+    private final long startNanos;
+
+    private final Thread worker;
+
+    private volatile boolean closed;
+
+    /**
+     * 已处理的 tick 数, 仅时间轮线程访问
+     */
+    private long tick;
+
+    /**
+     * 默认 tick 为10毫秒, 512个槽, 在时间轮线程上执行任务
+     */
+    public HashedWheelScheduler() {
+        this(10L, TimeUnit.MILLISECONDS, 512, null);
+    }
+
+    /**
+     *
+     * @param tickDuration tick 粒度, 即定时精度
+     * @param unit
+     * @param ticksPerWheel 槽数, 向上取整为2的幂
+     * @param taskExecutor 执行到期任务, 为空时在时间轮线程上执行
+     */
+    public HashedWheelScheduler(long tickDuration, TimeUnit unit, int ticksPerWheel, Executor taskExecutor) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tickDuration must be > 0");
+        }
+        if (ticksPerWheel < 1 || ticksPerWheel > 1 << 30) {
+            throw new IllegalArgumentException("ticksPerWheel must be in [1, 2^30]");
+        }
+        this.tickNanos = Math.max(1L, unit.toNanos(tickDuration));
+        int size = 1;
+        while (size < ticksPerWheel) {
+            size <<= 1;
+        }
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            this.wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.taskExecutor = taskExecutor;
+        this.startNanos = System.nanoTime();
+        this.worker = BatchScheduler.daemonThreadFactory("timer-wheel").newThread(this::work);
+        this.worker.start();
+    }
+
+    /**
+     * 进程内共享的时间轮, 首次调用时创建, 不需要关闭
+     *
+     * 到期任务交给按需创建的守护线程执行, 同步重试或刷新时的分发阻塞不会拖住时间轮线程及其他处理器的定时任务
+     * @return
+     */
+    public static HashedWheelScheduler shared() {
+        HashedWheelScheduler scheduler = shared;
+        if (scheduler == null) {
+            synchronized (HashedWheelScheduler.class) {
+                scheduler = shared;
+                if (scheduler == null) {
+                    scheduler = new HashedWheelScheduler(10L, TimeUnit.MILLISECONDS, 512,
+                            Executors.newCachedThreadPool(BatchScheduler.daemonThreadFactory("timer-wheel-task")));
+                    shared = scheduler;
+                }
+            }
+        }
+        return scheduler;
+    }
+
+    /**
+     *
+     * @param command
+     * @param interval 延迟毫秒数
+     * @param executor
+     * @return
+     */
+    @Override
+    public ScheduledCancellable schedule(Runnable command, Long interval, String executor) {
+        if (this.closed) {
+            throw new BatchRejectedExecutionException("rejected execution of " + command + " on closed timer wheel", true);
+        }
+        long deadline = System.nanoTime() - this.startNanos + TimeUnit.MILLISECONDS.toNanos(Math.max(0L, interval));
+        WheelTimeout timeout = new WheelTimeout(command, deadline);
+        this.pendingTimers.incrementAndGet();
+        this.scheduled.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * 未到期且未取消的定时任务数
+     * @return
+     */
+    public long pendingTimers() {
+        return this.pendingTimers.get();
+    }
+
+    /**
+     * 停止时间轮线程, 未到期的任务不再执行
+     */
+    @Override
+    public void close() {
+        if (this == shared) {
+            throw new IllegalStateException("the shared timer wheel cannot be closed");
+        }
+        this.closed = true;
+        LockSupport.unpark(this.worker);
+    }
+
+    private void work() {
+        while (!this.closed) {
+            long deadline = this.tickNanos * (this.tick + 1);
+            long sleep;
+            while ((sleep = deadline - (System.nanoTime() - this.startNanos)) > 0) {
+                LockSupport.parkNanos(this, sleep);
+                if (this.closed) {
+                    return;
+                }
+            }
+            this.removeCancelled();
+            this.transferScheduled();
+            this.wheel[(int) (this.tick & this.mask)].expire(this);
+            this.tick++;
+        }
+    }
+
+    private void removeCancelled() {
+        WheelTimeout timeout;
+        while ((timeout = this.cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+            }
+        }
+    }
+
+    private void transferScheduled() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            WheelTimeout timeout = this.scheduled.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.state.get() != WheelTimeout.INIT) {
+                continue;
+            }
+            long calculated = timeout.deadline / this.tickNanos;
+            timeout.remainingRounds = (calculated - this.tick) / this.wheel.length;
+            // 已过期的任务放入当前槽, 本 tick 执行
+            long ticks = Math.max(calculated, this.tick);
+            this.wheel[(int) (ticks & this.mask)].add(timeout);
+        }
+    }
+
+    private void run(WheelTimeout timeout) {
+        if (this.taskExecutor == null) {
+            timeout.runTask();
+            return;
+        }
+        try {
+            this.taskExecutor.execute(timeout::runTask);
+        } catch (RuntimeException exception) {
+            // 执行线程池已关闭, 丢弃任务
+        }
+    }
+
+    /**
+     * 时间轮中的定时任务
+     */
+    private final class WheelTimeout implements ScheduledCancellable {
+
+        private static final int INIT = 0;
+
+        private static final int CANCELLED = 1;
+
+        private static final int EXPIRED = 2;
+
+        private final Runnable task;
+
+        // 相对时间轮启动时刻的到期时间(纳秒)
+        private final long deadline;
+
+        private final AtomicInteger state = new AtomicInteger(INIT);
+
+        // 以下字段仅时间轮线程访问
+        private long remainingRounds;
+
+        private Bucket bucket;
+
+        private WheelTimeout prev;
+
+        private WheelTimeout next;
+
+        private WheelTimeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean cancel() {
+            if (!this.state.compareAndSet(INIT, CANCELLED)) {
+                return false;
+            }
+            HashedWheelScheduler.this.pendingTimers.decrementAndGet();
+            HashedWheelScheduler.this.cancelled.add(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return this.state.get() == CANCELLED;
+        }
+
+        private boolean expire() {
+            if (!this.state.compareAndSet(INIT, EXPIRED)) {
+                return false;
+            }
+            HashedWheelScheduler.this.pendingTimers.decrementAndGet();
+            return true;
+        }
+
+        private void runTask() {
+            try {
+                this.task.run();
+            } catch (RuntimeException exception) {
+                // 与定时线程池一致, 单个任务失败不影响其他任务
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(this.deadline - (System.nanoTime() - HashedWheelScheduler.this.startNanos), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(this.getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+        }
+    }
+
+    /**
+     * 时间轮中的一个槽, 仅时间轮线程访问
+     */
+    private static final class Bucket {
+
+        private WheelTimeout head;
+
+        private WheelTimeout tail;
+
+        private void add(WheelTimeout timeout) {
+            timeout.bucket = this;
+            if (this.head == null) {
+                this.head = this.tail = timeout;
+            } else {
+                this.tail.next = timeout;
+                timeout.prev = this.tail;
+                this.tail = timeout;
+            }
+        }
+
+        private void expire(HashedWheelScheduler scheduler) {
+            WheelTimeout timeout = this.head;
+            while (timeout != null) {
+                WheelTimeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    this.remove(timeout);
+                    if (timeout.expire()) {
+                        scheduler.run(timeout);
+                    }
+                } else if (timeout.isCancelled()) {
+                    this.remove(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        private void remove(WheelTimeout timeout) {
+            if (timeout.bucket != this) {
+                return;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                this.head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                this.tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package com.alecor.batch.spill;
+
+
+import com.alecor.batch.BatchCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchSpillQueue
+ * @date 2026/10/18 20:50
+ * @Description 溢写队列, 内存中排队的批次超过阈值后序列化到本地文件, 按先进先出顺序读回
+ *
+ * 1、每个批次格式为 [int 条数]([int 长度][数据])*, 顺序追加到当前文件, 文件写满后切换
+ * 2、内存中只保留每个批次的位置及附加信息
+ * 3、文件中的批次全部读回后删除该文件
+ * 4、溢写文件不保证崩溃后可恢复, 需要持久化时配合 BatchJournal 使用
+ *
+ * @Version V1.0
+ */
+
+public class BatchSpillQueue<T> implements Closeable {
+
+    private static final long DEFAULT_FILE_SIZE = 64L * 1024 * 1024;
+
+    private static final String FILE_PREFIX = "spill-";
+
+    private static final String FILE_SUFFIX = ".dat";
+
+    private final Path directory;
+
+    private final BatchCodec<T> codec;
+
+    private final long fileSize;
+
+    /**
+     * 已溢写未读回的批次
+     */
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+    /**
+     * 序列化缓冲区, 在锁内复用
+     */
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    private final DataOutputStream output = new DataOutputStream(this.bytes);
+
+    private final LongAdder spilledBytes = new LongAdder();
+
+    private final LongAdder spilledBatches = new LongAdder();
+
+    private final LongAdder readBackBytes = new LongAdder();
+
+    private final LongAdder readBackBatches = new LongAdder();
+
+    private final LongAdder readBackNanos = new LongAdder();
+
+    private SpillFile writeFile;
+
+    private long nextFileId;
+
+    private long pendingBytes;
+
+    private boolean closed;
+
+    public BatchSpillQueue(Path directory, BatchCodec<T> codec) throws IOException {
+        this(directory, codec, DEFAULT_FILE_SIZE);
+    }
+
+    /**
+     *
+     * @param directory 溢写目录, 打开时会清理目录中遗留的溢写文件
+     * @param codec 序列化方式
+     * @param fileSize 单个溢写文件大小(字节), 超过后切换新文件
+     * @throws IOException
+     */
+    public BatchSpillQueue(Path directory, BatchCodec<T> codec, long fileSize) throws IOException {
+        if (fileSize < 1) {
+            throw new IllegalArgumentException("fileSize must be >= 1");
+        }
+        this.directory = Files.createDirectories(directory);
+        this.codec = codec;
+        this.fileSize = fileSize;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path path : stream) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * 溢写一个批次
+     *
+     * @param items 批次数据
+     * @param attachment 读回时原样返回的附加信息(保留在内存中)
+     */
+    public synchronized void offer(List<T> items, Object attachment) {
+        if (this.closed) {
+            throw new IllegalStateException("Batch spill queue already closed");
+        }
+        this.bytes.reset();
+        try {
+            this.output.writeInt(items.size());
+            for (T item : items) {
+                byte[] data = this.codec.encode(item);
+                this.output.writeInt(data.length);
+                this.output.write(data);
+            }
+            if (this.writeFile == null || this.writeFile.position >= this.fileSize) {
+                this.roll();
+            }
+            SpillFile file = this.writeFile;
+            ByteBuffer buffer = ByteBuffer.wrap(this.bytes.toByteArray());
+            long position = file.position;
+            while (buffer.hasRemaining()) {
+                file.channel.write(buffer, file.position + buffer.position());
+            }
+            file.position += buffer.limit();
+            file.pending++;
+            this.entries.addLast(new Entry(file, position, buffer.limit(), attachment));
+            this.pendingBytes += buffer.limit();
+            this.spilledBytes.add(buffer.limit());
+            this.spilledBatches.increment();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("failed to spill batch to " + this.directory, exception);
+        }
+    }
+
+    /**
+     * 读回最早溢写的批次
+     * @return 队列为空时返回 null
+     * @throws BatchSpillReadException 读取失败或内容无法解码, 该批次已移出队列
+     */
+    public Spilled<T> poll() {
+        long startNanos = System.nanoTime();
+        Entry entry;
+        ByteBuffer buffer;
+        synchronized (this) {
+            entry = this.entries.pollFirst();
+            if (entry == null) {
+                return null;
+            }
+            buffer = ByteBuffer.allocate(entry.length);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (entry.file.channel.read(buffer, entry.position + buffer.position()) < 0) {
+                        throw new IOException("unexpected end of spill file " + entry.file.path);
+                    }
+                }
+            } catch (IOException exception) {
+                throw new BatchSpillReadException("failed to read spilled batch from " + entry.file.path, exception, entry.attachment);
+            } finally {
+                this.pendingBytes -= entry.length;
+                if (--entry.file.pending == 0 && entry.file != this.writeFile) {
+                    entry.file.delete();
+                }
+            }
+        }
+        buffer.flip();
+        List<T> items;
+        try {
+            int count = buffer.getInt();
+            items = new ArrayList<>(Math.min(count, entry.length / Integer.BYTES));
+            for (int i = 0; i < count; i++) {
+                byte[] data = new byte[buffer.getInt()];
+                buffer.get(data);
+                items.add(this.codec.decode(data));
+            }
+        } catch (RuntimeException exception) {
+            // 长度字段损坏(越界、负数)或解码失败
+            throw new BatchSpillReadException("corrupt spilled batch in " + entry.file.path, new IOException(exception), entry.attachment);
+        }
+        this.readBackBytes.add(entry.length);
+        this.readBackBatches.increment();
+        this.readBackNanos.add(System.nanoTime() - startNanos);
+        return new Spilled<>(items, entry.attachment);
+    }
+
+    /**
+     * 未读回的批次数
+     * @return
+     */
+    public synchronized int pendingBatches() {
+        return this.entries.size();
+    }
+
+    /**
+     * 未读回的字节数
+     * @return
+     */
+    public synchronized long pendingBytes() {
+        return this.pendingBytes;
+    }
+
+    /**
+     * 溢写延迟: 最早未读回批次已在磁盘上等待的毫秒数
+     * @return
+     */
+    public synchronized long lagMillis() {
+        Entry head = this.entries.peekFirst();
+        return head == null ? 0L : (System.nanoTime() - head.spilledAtNanos) / 1_000_000L;
+    }
+
+    /**
+     * 累计溢写字节数
+     * @return
+     */
+    public long spilledBytes() {
+        return this.spilledBytes.sum();
+    }
+
+    public long spilledBatches() {
+        return this.spilledBatches.sum();
+    }
+
+    /**
+     * 累计读回字节数
+     * @return
+     */
+    public long readBackBytes() {
+        return this.readBackBytes.sum();
+    }
+
+    public long readBackBatches() {
+        return this.readBackBatches.sum();
+    }
+
+    /**
+     * 读回吞吐(字节/秒), 按读取及反序列化耗时计算
+     * @return
+     */
+    public double readBackBytesPerSecond() {
+        long nanos = this.readBackNanos.sum();
+        return nanos == 0 ? 0D : this.readBackBytes.sum() * 1_000_000_000D / nanos;
+    }
+
+    private void roll() throws IOException {
+        if (this.writeFile != null && this.writeFile.pending == 0) {
+            this.writeFile.delete();
+        }
+        Path path = this.directory.resolve(String.format("%s%020d%s", FILE_PREFIX, this.nextFileId++, FILE_SUFFIX));
+        this.writeFile = new SpillFile(path, FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE));
+    }
+
+    /**
+     * 关闭并删除所有溢写文件, 未读回的批次将丢失
+     */
+    @Override
+    public synchronized void close() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        for (Entry entry : this.entries) {
+            entry.file.delete();
+        }
+        this.entries.clear();
+        if (this.writeFile != null) {
+            this.writeFile.delete();
+        }
+    }
+
+    /**
+     * 读回的批次
+     */
+    public static final class Spilled<T> {
+
+        private final List<T> items;
+
+        private final Object attachment;
+
+        private Spilled(List<T> items, Object attachment) {
+            this.items = items;
+            this.attachment = attachment;
+        }
+
+        public List<T> getItems() {
+            return this.items;
+        }
+
+        public Object getAttachment() {
+            return this.attachment;
+        }
+    }
+
+    private static final class Entry {
+
+        private final SpillFile file;
+
+        private final long position;
+
+        private final int length;
+
+        private final Object attachment;
+
+        private final long spilledAtNanos = System.nanoTime();
+
+        private Entry(SpillFile file, long position, int length, Object attachment) {
+            this.file = file;
+            this.position = position;
+            this.length = length;
+            this.attachment = attachment;
+        }
+    }
+
+    private static final class SpillFile {
+
+        private final Path path;
+
+        private final FileChannel channel;
+
+        private long position;
+
+        /**
+         * 未读回的批次数
+         */
+        private int pending;
+
+        private boolean deleted;
+
+        private SpillFile(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+        }
+
+        private void delete() {
+            if (this.deleted) {
+                return;
+            }
+            this.deleted = true;
+            try {
+                this.channel.close();
+                Files.deleteIfExists(this.path);
+            } catch (IOException exception) {
+                // 忽略, 下次打开时清理
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.alecor.batch.spill;
+
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchSpillReadException
+ * @date 2026/10/19 04:10
+ * @Description 溢写批次读回失败(文件读取失败或内容损坏), 该批次已从队列中移除, 携带溢写时的附加信息以便调用方释放其占用的资源
+ * @Version V1.0
+ */
+
+public class BatchSpillReadException extends UncheckedIOException {
+    
+    private final transient Object attachment;
+    
+    public BatchSpillReadException(String message, IOException cause, Object attachment) {
+        super(message, cause);
+        this.attachment = attachment;
+    }
+    
+    /**
+     * 溢写时传入的附加信息
+     * @return
+     */
+    public Object getAttachment() {
+        return this.attachment;
+    }
+}
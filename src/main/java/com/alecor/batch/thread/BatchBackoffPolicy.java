@@ -3,6 +3,7 @@ package com.alecor.batch.thread;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.Spliterator;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.function.Consumer;
 
 /**
@@ -35,6 +36,41 @@ public class BatchBackoffPolicy implements Iterable<Long> {
         return new ExponentialBackoff(checkDelay(initialDelay), maxNumberOfRetries);
     }
     
+    /**
+     * 全抖动补偿, 第 n 次重试延迟在 [0, min(maxDelay, baseDelay * 2^n)] 内均匀随机
+     * 多个处理器同时失败后重试时间被打散, 不会同步冲击下游
+     * @param baseDelay 初始延迟毫秒数
+     * @param maxDelay 最大延迟毫秒数
+     * @param maxNumberOfRetries 最大重试次数
+     * @return
+     */
+    public static BatchBackoffPolicy fullJitter(Long baseDelay, Long maxDelay, int maxNumberOfRetries) {
+        checkJitter(baseDelay, maxDelay, maxNumberOfRetries);
+        return new FullJitterBackoff(checkDelay(baseDelay), checkDelay(maxDelay), maxNumberOfRetries);
+    }
+    
+    /**
+     * 去相关抖动补偿, 每次延迟在 [baseDelay, 上次延迟 * 3] 内均匀随机, 不超过 maxDelay
+     * 与全抖动相比延迟不会过短, 总体重试次数更少
+     * @param baseDelay 初始延迟毫秒数
+     * @param maxDelay 最大延迟毫秒数
+     * @param maxNumberOfRetries 最大重试次数
+     * @return
+     */
+    public static BatchBackoffPolicy decorrelatedJitter(Long baseDelay, Long maxDelay, int maxNumberOfRetries) {
+        checkJitter(baseDelay, maxDelay, maxNumberOfRetries);
+        return new DecorrelatedJitterBackoff(checkDelay(baseDelay), checkDelay(maxDelay), maxNumberOfRetries);
+    }
+    
+    private static void checkJitter(Long baseDelay, Long maxDelay, int maxNumberOfRetries) {
+        if (baseDelay < 0 || maxDelay < baseDelay) {
+            throw new IllegalArgumentException("delays must satisfy 0 <= baseDelay <= maxDelay");
+        }
+        if (maxNumberOfRetries < 0) {
+            throw new IllegalArgumentException("maxNumberOfRetries must be >= 0");
+        }
+    }
+    
     private static int checkDelay(Long delay) {
         // 不能超过Int最大值
         if (delay >  Integer.MAX_VALUE) {
@@ -106,6 +142,81 @@ public class BatchBackoffPolicy implements Iterable<Long> {
         }
     }
     
+    private static class FullJitterBackoff extends BatchBackoffPolicy {
+        private final int baseDelay;
+        private final int maxDelay;
+        private final int numberOfElements;
+        
+        private FullJitterBackoff(int baseDelay, int maxDelay, int numberOfElements) {
+            this.baseDelay = baseDelay;
+            this.maxDelay = maxDelay;
+            this.numberOfElements = numberOfElements;
+        }
+        
+        @Override
+        public Iterator<Long> iterator() {
+            return new Iterator<Long>() {
+                private int currentlyConsumed;
+                
+                @Override
+                public boolean hasNext() {
+                    return this.currentlyConsumed < FullJitterBackoff.this.numberOfElements;
+                }
+                
+                @Override
+                public Long next() {
+                    if (!this.hasNext()) {
+                        throw new NoSuchElementException("Only up to " + FullJitterBackoff.this.numberOfElements + " elements");
+                    }
+                    // 指数上限, 移位超过30位时直接取 maxDelay 避免溢出
+                    int shift = this.currentlyConsumed++;
+                    long ceiling = shift >= 31 ? FullJitterBackoff.this.maxDelay
+                            : Math.min(FullJitterBackoff.this.maxDelay, (long) FullJitterBackoff.this.baseDelay << shift);
+                    return ThreadLocalRandom.current().nextLong(ceiling + 1);
+                }
+            };
+        }
+    }
+    
+    private static class DecorrelatedJitterBackoff extends BatchBackoffPolicy {
+        private final int baseDelay;
+        private final int maxDelay;
+        private final int numberOfElements;
+        
+        private DecorrelatedJitterBackoff(int baseDelay, int maxDelay, int numberOfElements) {
+            this.baseDelay = baseDelay;
+            this.maxDelay = maxDelay;
+            this.numberOfElements = numberOfElements;
+        }
+        
+        @Override
+        public Iterator<Long> iterator() {
+            return new Iterator<Long>() {
+                private int currentlyConsumed;
+                // 上次延迟, 首次以 baseDelay 为准
+                private long previous = DecorrelatedJitterBackoff.this.baseDelay;
+                
+                @Override
+                public boolean hasNext() {
+                    return this.currentlyConsumed < DecorrelatedJitterBackoff.this.numberOfElements;
+                }
+                
+                @Override
+                public Long next() {
+                    if (!this.hasNext()) {
+                        throw new NoSuchElementException("Only up to " + DecorrelatedJitterBackoff.this.numberOfElements + " elements");
+                    }
+                    ++this.currentlyConsumed;
+                    long base = DecorrelatedJitterBackoff.this.baseDelay;
+                    long upper = Math.max(base, Math.max(1L, this.previous) * 3);
+                    long delay = Math.min(DecorrelatedJitterBackoff.this.maxDelay, base + ThreadLocalRandom.current().nextLong(upper - base + 1));
+                    this.previous = delay;
+                    return delay;
+                }
+            };
+        }
+    }
+    
     /**
      * 不需要补偿
      */
@@ -0,0 +1,155 @@
+package com.alecor.batch.thread;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchBackpressurePolicy
+ * @date 2026/10/18 15:20
+ * @Description 缓冲区满时的背压策略
+ *
+ * 1、block 一直等待容量
+ * 2、timeout 等待指定时间，超时拒绝
+ * 3、dropNewest 丢弃新数据
+ * 4、dropOldest 丢弃缓冲区中最早的数据
+ * 5、callerRuns 由调用线程直接执行
+ *
+ * @Version V1.0
+ */
+
+public abstract class BatchBackpressurePolicy {
+
+    /**
+     * 缓冲区满时的处理结果
+     */
+    public enum Action {
+        // 已获取到容量
+        ACCEPT,
+        // 拒绝
+        REJECT,
+        // 丢弃新数据
+        DROP_NEWEST,
+        // 丢弃最早的数据
+        DROP_OLDEST,
+        // 调用线程执行
+        CALLER_RUNS
+    }
+
+    protected final LongAdder rejected = new LongAdder();
+
+    protected final LongAdder dropped = new LongAdder();
+
+    public static BatchBackpressurePolicy block() {
+        return new Block(-1L);
+    }
+
+    /**
+     * @param timeout 最长等待时间，超时后拒绝
+     * @param unit
+     * @return
+     */
+    public static BatchBackpressurePolicy timeout(long timeout, TimeUnit unit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("timeout must be >= 0");
+        }
+        return new Block(unit.toNanos(timeout));
+    }
+
+    public static BatchBackpressurePolicy dropNewest() {
+        return new Drop(Action.DROP_NEWEST);
+    }
+
+    public static BatchBackpressurePolicy dropOldest() {
+        return new Drop(Action.DROP_OLDEST);
+    }
+
+    public static BatchBackpressurePolicy callerRuns() {
+        return new CallerRuns();
+    }
+
+    /**
+     * 缓冲区已满时调用
+     *
+     * @param capacity 缓冲区剩余容量，返回 ACCEPT 时必须已从中获取一个许可
+     * @param timeoutNanos offer 指定的等待时间，小于0时使用策略自身的等待时间
+     * @return
+     * @throws InterruptedException
+     */
+    public abstract Action onFull(Semaphore capacity, long timeoutNanos) throws InterruptedException;
+
+    /**
+     * 是否会丢弃缓冲区中已有的数据(DROP_OLDEST), 不能与批次内合并同时使用
+     * @return
+     */
+    public boolean dropsOldest() {
+        return false;
+    }
+
+    /**
+     * 被拒绝的数据条数
+     * @return
+     */
+    public long rejected() {
+        return this.rejected.sum();
+    }
+
+    /**
+     * 被丢弃的数据条数
+     * @return
+     */
+    public long dropped() {
+        return this.dropped.sum();
+    }
+
+    private static class Block extends BatchBackpressurePolicy {
+        // 小于0表示一直等待
+        private final long timeoutNanos;
+
+        private Block(long timeoutNanos) {
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        @Override
+        public Action onFull(Semaphore capacity, long timeoutNanos) throws InterruptedException {
+            long wait = timeoutNanos >= 0 ? timeoutNanos : this.timeoutNanos;
+            if (wait < 0) {
+                capacity.acquire();
+                return Action.ACCEPT;
+            }
+            if (capacity.tryAcquire(wait, TimeUnit.NANOSECONDS)) {
+                return Action.ACCEPT;
+            }
+            this.rejected.increment();
+            return Action.REJECT;
+        }
+    }
+
+    private static class Drop extends BatchBackpressurePolicy {
+        private final Action action;
+
+        private Drop(Action action) {
+            this.action = action;
+        }
+
+        @Override
+        public Action onFull(Semaphore capacity, long timeoutNanos) {
+            this.dropped.increment();
+            return this.action;
+        }
+
+        @Override
+        public boolean dropsOldest() {
+            return this.action == Action.DROP_OLDEST;
+        }
+    }
+
+    private static class CallerRuns extends BatchBackpressurePolicy {
+
+        @Override
+        public Action onFull(Semaphore capacity, long timeoutNanos) {
+            return Action.CALLER_RUNS;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.alecor.batch.thread;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchCircuitOpenException
+ * @date 2026/10/19 00:20
+ * @Description 熔断器处于 OPEN 或探测中, 批次未执行即被拒绝
+ * @Version V1.0
+ */
+
+public class BatchCircuitOpenException extends BatchRejectedExecutionException {
+    
+    public BatchCircuitOpenException(String message) {
+        super(message, false);
+    }
+}
@@ -6,11 +6,14 @@ import com.alecor.batch.scheduler.ScheduledCancellableAdapter;
 
 import java.util.concurrent.Delayed;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionHandler;
 import java.util.concurrent.RunnableFuture;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
@@ -41,6 +44,19 @@ public interface BatchScheduler {
         return scheduler;
     }
     
+    /**
+     * 初始化批次分发线程池
+     *
+     * 线程数固定, 排队的是已封存的批次
+     *
+     * @param threads
+     * @return
+     */
+    static ThreadPoolExecutor initDispatcher(int threads) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                daemonThreadFactory("dispatcher"), new BatchAbortPolicy());
+    }
+    
     /**
      * 终止线程
      * @param scheduledThreadPoolExecutor
@@ -48,7 +64,7 @@ public interface BatchScheduler {
      * @param timeUnit
      * @return
      */
-    static boolean terminate(ScheduledThreadPoolExecutor scheduledThreadPoolExecutor, long timeout, TimeUnit timeUnit) {
+    static boolean terminate(ExecutorService scheduledThreadPoolExecutor, long timeout, TimeUnit timeUnit) {
         scheduledThreadPoolExecutor.shutdown();
         if (awaitTermination(scheduledThreadPoolExecutor, timeout, timeUnit)) {
             return true;
@@ -65,7 +81,7 @@ public interface BatchScheduler {
      * @param timeUnit
      * @return
      */
-    static boolean awaitTermination(ScheduledThreadPoolExecutor scheduledThreadPoolExecutor, long timeout, TimeUnit timeUnit) {
+    static boolean awaitTermination(ExecutorService scheduledThreadPoolExecutor, long timeout, TimeUnit timeUnit) {
         try {
             if (scheduledThreadPoolExecutor.awaitTermination(timeout, timeUnit)) {
                 return true;
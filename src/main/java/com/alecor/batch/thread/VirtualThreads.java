@@ -0,0 +1,38 @@
+package com.alecor.batch.thread;
+
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * @author yuan_kf
+ * @ClassName VirtualThreads
+ * @date 2026/10/18 22:30
+ * @Description 虚拟线程支持, Java 21 以下版本不可用
+ *
+ * 以多版本 jar 发布, Java 21 及以上运行时加载 META-INF/versions/21 中的实现
+ *
+ * @Version V1.0
+ */
+
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * 当前运行时是否支持虚拟线程
+     * @return
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * 每个任务一个虚拟线程的线程池
+     * @param namePrefix 线程名前缀
+     * @return
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        throw new UnsupportedOperationException("virtual threads require Java 21 or later");
+    }
+}
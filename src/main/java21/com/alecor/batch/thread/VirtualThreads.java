@@ -0,0 +1,27 @@
+package com.alecor.batch.thread;
+
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * @author yuan_kf
+ * @ClassName VirtualThreads
+ * @date 2026/10/18 22:30
+ * @Description 虚拟线程支持, Java 21 实现
+ * @Version V1.0
+ */
+
+public final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    public static boolean isSupported() {
+        return true;
+    }
+
+    public static ExecutorService newVirtualThreadPerTaskExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix + "-virtual-", 1).factory());
+    }
+}
@@ -0,0 +1,88 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.thread.BatchBackoffPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName AdaptiveBatchSizeTest
+ * @date 2026/10/19 08:10
+ * @Description 自适应批次大小: 按当前大小加减, 只由封存批次的首次执行驱动
+ * @Version V1.0
+ */
+
+class AdaptiveBatchSizeTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(50L);
+
+    @Test
+    void fullFastBatchesGrowAndSlowOrFailedBatchesShrinkFromCurrentSize() {
+        // 步长 (1000 - 10) / 20 = 49
+        AdaptiveBatchSize adaptive = new AdaptiveBatchSize(100, 10, 1000, 10L, TimeUnit.MILLISECONDS);
+        adaptive.onAttempt(request(100), 1, FAST, true);
+        assertEquals(149, adaptive.currentBatchSize());
+        // 未满的批次执行够快不能说明可以加大
+        adaptive.onAttempt(request(20), 1, FAST, true);
+        assertEquals(149, adaptive.currentBatchSize());
+
+        adaptive.onAttempt(request(149), 1, SLOW, true);
+        assertEquals(104, adaptive.currentBatchSize());
+        // 按时间封存的小批次失败, 从当前大小缩小而不是从本次数据量
+        adaptive.onAttempt(request(1), 1, FAST, false);
+        assertEquals(52, adaptive.currentBatchSize());
+    }
+
+    @Test
+    void retriesAndSubBatchesAreIgnored() {
+        AdaptiveBatchSize adaptive = new AdaptiveBatchSize(100, 10, 1000, 10L, TimeUnit.MILLISECONDS);
+        BatchRequest<String> request = request(100);
+        adaptive.onAttempt(request, 2, FAST, false);
+        adaptive.onAttempt(request.slice(0, 1), 1, FAST, false);
+        request.markFailed(0);
+        adaptive.onAttempt(request.failedRequest(), 1, SLOW, false);
+        assertEquals(100, adaptive.currentBatchSize());
+    }
+
+    @Test
+    void failingSingleItemRetryDoesNotCollapseBatchSize() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        BatchHandler<Integer> handler = new BatchHandler<Integer>() {
+            @Override
+            public boolean executeBatch(BatchRequest<Integer> request) {
+                // 首次执行及第一次重试时第一条失败, 第二次重试成功
+                if (calls.incrementAndGet() < 3) {
+                    request.markFailed(0);
+                }
+                return true;
+            }
+        };
+        BatchProcessor<Integer> processor = BatchProcessor.builder(handler).setBatchSize(100).setAdaptiveBatchSize(10, 1000, 1L, TimeUnit.SECONDS)
+                .setBackoffPolicy(BatchBackoffPolicy.exponentialBackoff(1L, 3)).setJmxEnabled(false).build();
+        for (int i = 0; i < 100; i++) {
+            processor.add(i);
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(3, calls.get());
+        // 只有首次执行的失败缩小一半, 1条数据的重试失败不再降到最小值
+        assertEquals(50, processor.currentBatchSize());
+    }
+
+    private static BatchRequest<String> request(int size) {
+        BatchRequest<String> request = new BatchRequest<>(size);
+        for (int i = 0; i < size; i++) {
+            request.add(String.valueOf(i));
+        }
+        return request;
+    }
+}
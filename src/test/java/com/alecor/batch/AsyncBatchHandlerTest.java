@@ -0,0 +1,137 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.Listener.BatchResponse;
+import com.alecor.batch.handle.AsyncBatchHandler;
+import com.alecor.batch.thread.BatchBackoffPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName AsyncBatchHandlerTest
+ * @date 2026/10/19 10:00
+ * @Description 异步处理器: 在途批次不占用调用线程, 结果为 false 时重试, 异常完成按失败结束
+ * @Version V1.0
+ */
+
+class AsyncBatchHandlerTest {
+
+    private final List<BatchResponse> responses = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+
+    private final BatchProcessor.Listener<String> listener = new BatchProcessor.Listener<String>() {
+        @Override
+        public void beforBatch(BatchRequest<String> t) {
+        }
+
+        @Override
+        public void afterBatch(BatchResponse response) {
+            responses.add(response);
+        }
+
+        @Override
+        public void afterBatch(Exception exception, BatchResponse response) {
+            failures.add(exception);
+        }
+    };
+
+    @Test
+    void inFlightBatchesDoNotHoldTheCallerThread() throws Exception {
+        Queue<CompletableFuture<BatchResponse>> pending = new ConcurrentLinkedQueue<>();
+        Queue<BatchRequest<String>> requests = new ConcurrentLinkedQueue<>();
+        AsyncBatchHandler<String> handler = new AsyncBatchHandler<String>() {
+            @Override
+            public CompletableFuture<BatchResponse> executeBatchAsync(BatchRequest<String> request) {
+                CompletableFuture<BatchResponse> future = new CompletableFuture<>();
+                requests.add(request);
+                pending.add(future);
+                return future;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(this.listener, handler).setBatchSize(1).setConcurrentRequests(4)
+                .setJmxEnabled(false).build();
+        processor.add("a").add("b").add("c");
+        // 三个批次都未完成时 add() 已经返回
+        assertEquals(3, pending.size());
+        assertEquals(3, processor.metrics().getInFlightBatches());
+        assertTrue(this.responses.isEmpty());
+
+        CompletableFuture.runAsync(() -> {
+            for (BatchRequest<String> request : requests) {
+                pending.poll().complete(new BatchResponse(request, true));
+            }
+        });
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(3, this.responses.size());
+        assertTrue(this.responses.stream().noneMatch(BatchResponse::hasSuccess));
+        assertTrue(this.failures.isEmpty());
+        assertEquals(0, processor.metrics().getInFlightBatches());
+    }
+
+    @Test
+    void unsuccessfulResponseIsRetried() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        List<List<String>> attempts = Collections.synchronizedList(new ArrayList<>());
+        AsyncBatchHandler<String> handler = new AsyncBatchHandler<String>() {
+            @Override
+            public CompletableFuture<BatchResponse> executeBatchAsync(BatchRequest<String> request) {
+                attempts.add(new ArrayList<>(request.getBatchData()));
+                // 首次执行返回需要重试
+                boolean success = calls.incrementAndGet() > 1;
+                return CompletableFuture.supplyAsync(() -> new BatchResponse(request, success));
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(this.listener, handler).setBatchSize(2)
+                .setBackoffPolicy(BatchBackoffPolicy.exponentialBackoff(1L, 3)).setJmxEnabled(false).build();
+        processor.add("a").add("b");
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Arrays.asList("a", "b")), attempts);
+        assertEquals(1, this.responses.size());
+        assertFalse(this.responses.get(0).hasSuccess());
+        assertEquals(1L, processor.metrics().getRetries());
+        assertTrue(this.failures.isEmpty());
+    }
+
+    @Test
+    void exceptionalCompletionFailsTheBatch() throws Exception {
+        IllegalStateException cause = new IllegalStateException("downstream unavailable");
+        AtomicInteger calls = new AtomicInteger();
+        AsyncBatchHandler<String> handler = new AsyncBatchHandler<String>() {
+            @Override
+            public CompletableFuture<BatchResponse> executeBatchAsync(BatchRequest<String> request) {
+                calls.incrementAndGet();
+                return CompletableFuture.supplyAsync(() -> {
+                    throw cause;
+                });
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(this.listener, handler).setBatchSize(1)
+                .setBackoffPolicy(BatchBackoffPolicy.exponentialBackoff(1L, 3)).setJmxEnabled(false).build();
+        processor.add("a");
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        // 非业务异常不重试, 监听器收到的是原始异常
+        assertEquals(1, calls.get());
+        assertEquals(1, this.failures.size());
+        assertSame(cause, this.failures.get(0));
+        assertTrue(this.responses.isEmpty());
+    }
+}
@@ -0,0 +1,124 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.thread.BatchBackpressurePolicy;
+import com.alecor.batch.thread.BatchRejectedExecutionException;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchBackpressurePolicyTest
+ * @date 2026/10/19 09:20
+ * @Description 缓冲区满时各背压策略的处理结果及计数
+ * @Version V1.0
+ */
+
+class BatchBackpressurePolicyTest {
+
+    private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    void dropNewestDiscardsIncomingItems() throws Exception {
+        BatchBackpressurePolicy policy = BatchBackpressurePolicy.dropNewest();
+        BatchProcessor<String> processor = this.fill(policy);
+        processor.add("d");
+        assertFalse(processor.offer("e", 1L, TimeUnit.SECONDS));
+        assertEquals(2L, policy.dropped());
+        assertEquals(0L, policy.rejected());
+
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c")), this.batches);
+    }
+
+    @Test
+    void dropOldestReplacesBufferedItems() throws Exception {
+        BatchBackpressurePolicy policy = BatchBackpressurePolicy.dropOldest();
+        BatchProcessor<String> processor = this.fill(policy);
+        processor.add("d");
+        assertTrue(processor.offer("e", 1L, TimeUnit.SECONDS));
+        assertEquals(2L, policy.dropped());
+        assertEquals(3L, processor.metrics().getBufferedItems());
+
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Arrays.asList("c", "d", "e")), this.batches);
+    }
+
+    @Test
+    void timeoutRejectsAfterWaiting() throws Exception {
+        BatchBackpressurePolicy policy = BatchBackpressurePolicy.timeout(20L, TimeUnit.MILLISECONDS);
+        BatchProcessor<String> processor = this.fill(policy);
+        assertThrows(BatchRejectedExecutionException.class, () -> processor.add("d"));
+        long start = System.nanoTime();
+        // 等待时间以 offer 参数为准
+        assertFalse(processor.offer("e", 50L, TimeUnit.MILLISECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50L));
+        assertEquals(2L, policy.rejected());
+        assertEquals(0L, policy.dropped());
+
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c")), this.batches);
+    }
+
+    @Test
+    void callerRunsExecutesSingleItemBatchOnCallerThread() throws Exception {
+        BatchProcessor<String> processor = this.fill(BatchBackpressurePolicy.callerRuns());
+        processor.add("d");
+        assertEquals(Arrays.asList(Arrays.asList("d")), this.batches);
+        assertSame(Thread.currentThread(), this.threads.get(0));
+        // 单独执行的数据不占用缓冲区
+        assertEquals(3L, processor.metrics().getBufferedItems());
+
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Arrays.asList("d"), Arrays.asList("a", "b", "c")), this.batches);
+    }
+
+    @Test
+    void blockWaitsUntilBufferedBatchCompletes() throws Exception {
+        BatchProcessor<String> processor = this.fill(BatchBackpressurePolicy.block());
+        CompletableFuture<Void> producer = CompletableFuture.runAsync(() -> processor.add("d"));
+        Thread.sleep(50L);
+        assertFalse(producer.isDone());
+
+        processor.flush();
+        producer.get(5L, TimeUnit.SECONDS);
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c"), Arrays.asList("d")), this.batches);
+    }
+
+    /**
+     * 缓冲区容量3, batchSize 10, 写入 a、b、c 后缓冲区已满且批次未封存
+     */
+    private BatchProcessor<String> fill(BatchBackpressurePolicy policy) {
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                threads.add(Thread.currentThread());
+                batches.add(new ArrayList<>(request.getBatchData()));
+                return true;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(handler).setBatchSize(10).setMaxBufferedItems(3)
+                .setBackpressurePolicy(policy).setJmxEnabled(false).build();
+        for (String item : Arrays.asList("a", "b", "c")) {
+            processor.add(item);
+        }
+        assertEquals(3L, processor.metrics().getBufferedItems());
+        return processor;
+    }
+}
@@ -0,0 +1,213 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.thread.BatchBackoffPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchCircuitBreakerTest
+ * @date 2026/10/19 06:50
+ * @Description 熔断器状态变化及熔断期间暂存批次的恢复
+ * @Version V1.0
+ */
+
+class BatchCircuitBreakerTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1L);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(20L);
+
+    @Test
+    void opensOnceFailureRateReachesThresholdAfterMinimumCalls() {
+        BatchCircuitBreaker circuitBreaker = BatchCircuitBreaker.builder().setSlidingWindowSize(4).setMinimumNumberOfCalls(4)
+                .setFailureRateThreshold(0.5D).build();
+        List<String> transitions = record(circuitBreaker);
+        circuitBreaker.onResult(FAST, false);
+        circuitBreaker.onResult(FAST, false);
+        circuitBreaker.onResult(FAST, true);
+        // 未达到最小执行次数
+        assertEquals(BatchCircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertEquals(-1D, circuitBreaker.failureRate());
+
+        circuitBreaker.onResult(FAST, true);
+        assertEquals(BatchCircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertEquals(Arrays.asList("CLOSED->OPEN"), transitions);
+        assertFalse(circuitBreaker.tryAcquirePermission());
+    }
+
+    @Test
+    void slidingWindowEvictsOldestResult() {
+        BatchCircuitBreaker circuitBreaker = BatchCircuitBreaker.builder().setSlidingWindowSize(2).setMinimumNumberOfCalls(2)
+                .setFailureRateThreshold(1D).build();
+        circuitBreaker.onResult(FAST, false);
+        circuitBreaker.onResult(FAST, true);
+        circuitBreaker.onResult(FAST, false);
+        // 窗口内为 [失败, 成功]
+        assertEquals(0.5D, circuitBreaker.failureRate());
+        assertEquals(BatchCircuitBreaker.State.CLOSED, circuitBreaker.state());
+
+        circuitBreaker.onResult(FAST, false);
+        assertEquals(BatchCircuitBreaker.State.OPEN, circuitBreaker.state());
+    }
+
+    @Test
+    void opensOnSlowCallRate() {
+        BatchCircuitBreaker circuitBreaker = BatchCircuitBreaker.builder().setSlidingWindowSize(2).setMinimumNumberOfCalls(2)
+                .setSlowCallRateThreshold(0.5D, 10L, TimeUnit.MILLISECONDS).build();
+        circuitBreaker.onResult(FAST, true);
+        circuitBreaker.onResult(SLOW, true);
+        assertEquals(BatchCircuitBreaker.State.OPEN, circuitBreaker.state());
+    }
+
+    @Test
+    void halfOpenAdmitsOneProbeAndClosesOnSuccess() {
+        BatchCircuitBreaker circuitBreaker = open(BatchCircuitBreaker.builder().setSlidingWindowSize(1).setMinimumNumberOfCalls(1)
+                .setWaitDurationInOpenState(0L, TimeUnit.MILLISECONDS).build());
+        List<String> transitions = record(circuitBreaker);
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertEquals(BatchCircuitBreaker.State.HALF_OPEN, circuitBreaker.state());
+        // 探测批次未结束前不再放行
+        assertFalse(circuitBreaker.tryAcquirePermission());
+
+        circuitBreaker.onResult(FAST, true);
+        assertEquals(BatchCircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertEquals(-1D, circuitBreaker.failureRate());
+        assertEquals(Arrays.asList("OPEN->HALF_OPEN", "HALF_OPEN->CLOSED"), transitions);
+    }
+
+    @Test
+    void failedOrSlowProbeReopens() {
+        BatchCircuitBreaker circuitBreaker = open(BatchCircuitBreaker.builder().setSlidingWindowSize(1).setMinimumNumberOfCalls(1)
+                .setSlowCallRateThreshold(1D, 10L, TimeUnit.MILLISECONDS).setWaitDurationInOpenState(0L, TimeUnit.MILLISECONDS).build());
+        List<String> transitions = record(circuitBreaker);
+
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onResult(FAST, false);
+        assertEquals(BatchCircuitBreaker.State.OPEN, circuitBreaker.state());
+
+        // 成功但超过慢调用耗时
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        circuitBreaker.onResult(SLOW, true);
+        assertEquals(BatchCircuitBreaker.State.OPEN, circuitBreaker.state());
+        assertEquals(Arrays.asList("OPEN->HALF_OPEN", "HALF_OPEN->OPEN", "OPEN->HALF_OPEN", "HALF_OPEN->OPEN"), transitions);
+    }
+
+    @Test
+    void openStateRejectsUntilWaitDurationElapses() throws Exception {
+        BatchCircuitBreaker circuitBreaker = open(BatchCircuitBreaker.builder().setSlidingWindowSize(1).setMinimumNumberOfCalls(1)
+                .setWaitDurationInOpenState(50L, TimeUnit.MILLISECONDS).build());
+        List<String> transitions = record(circuitBreaker);
+        assertFalse(circuitBreaker.tryAcquirePermission());
+        // 进入 OPEN 之前开始的执行结束, 不影响状态
+        circuitBreaker.onResult(FAST, true);
+        assertEquals(BatchCircuitBreaker.State.OPEN, circuitBreaker.state());
+
+        Thread.sleep(60L);
+        assertTrue(circuitBreaker.tryAcquirePermission());
+        assertEquals(Arrays.asList("OPEN->HALF_OPEN"), transitions);
+    }
+
+    @Test
+    void parkedBatchIsCountedOnceByRetryBudget() throws Exception {
+        BatchCircuitBreaker circuitBreaker = BatchCircuitBreaker.builder().setSlidingWindowSize(1).setMinimumNumberOfCalls(1)
+                .setWaitDurationInOpenState(50L, TimeUnit.MILLISECONDS).build();
+        BatchRetryBudget retryBudget = new BatchRetryBudget(0.1D);
+        AtomicInteger calls = new AtomicInteger();
+        Queue<String> handled = new ConcurrentLinkedQueue<>();
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                if (calls.getAndIncrement() == 0) {
+                    // 首个批次失败, 熔断器打开
+                    throw new IllegalStateException("downstream unavailable");
+                }
+                handled.addAll(request.getBatchData());
+                return true;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(handler).setBatchSize(1).setBackoffPolicy(BatchBackoffPolicy.noBackoff())
+                .setCircuitBreaker(circuitBreaker, true).setRetryBudget(retryBudget).setJmxEnabled(false).build();
+        processor.add("a");
+        assertEquals(BatchCircuitBreaker.State.OPEN, circuitBreaker.state());
+        // 熔断期间被拒绝并暂存, 等待时间过后作为探测恢复执行
+        processor.add("b");
+        assertEquals(1, processor.parkedBatches());
+
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(BatchCircuitBreaker.State.CLOSED, circuitBreaker.state());
+        assertEquals("b", handled.peek());
+        assertEquals(2L, retryBudget.firstAttempts());
+    }
+
+    @Test
+    void resumedBatchesDoNotBlockTheTimerWhileARetryHoldsThePermit() throws Exception {
+        BatchCircuitBreaker circuitBreaker = BatchCircuitBreaker.builder().setSlidingWindowSize(4).setMinimumNumberOfCalls(4)
+                .setWaitDurationInOpenState(200L, TimeUnit.MILLISECONDS).build();
+        AtomicBoolean down = new AtomicBoolean(true);
+        // 恢复后 b 先失败一次, 重试等待期间占用唯一的并发许可
+        Set<String> failOnce = ConcurrentHashMap.newKeySet();
+        failOnce.add("b");
+        Queue<String> handled = new ConcurrentLinkedQueue<>();
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                String item = request.getBatchData().get(0);
+                if (down.get() || failOnce.remove(item)) {
+                    return false;
+                }
+                handled.add(item);
+                return true;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(handler).setBatchSize(1).setConcurrentRequests(1)
+                .setBackoffPolicy(BatchBackoffPolicy.exponentialBackoff(20L, 3)).setCircuitBreaker(circuitBreaker, true).setJmxEnabled(false).build();
+        // x 的首次执行及3次重试都失败, 熔断器打开
+        processor.add("x");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+        while (circuitBreaker.state() != BatchCircuitBreaker.State.OPEN && System.nanoTime() - deadline < 0L) {
+            Thread.sleep(1L);
+        }
+        assertEquals(BatchCircuitBreaker.State.OPEN, circuitBreaker.state());
+        for (String item : Arrays.asList("a", "b", "c", "d")) {
+            processor.add(item);
+        }
+        assertEquals(4, processor.parkedBatches());
+        down.set(false);
+
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d")), new HashSet<>(handled));
+        assertEquals(0, processor.parkedBatches());
+        assertEquals(0, processor.metrics().getInFlightBatches());
+    }
+
+    private static BatchCircuitBreaker open(BatchCircuitBreaker circuitBreaker) {
+        circuitBreaker.onResult(FAST, false);
+        assertEquals(BatchCircuitBreaker.State.OPEN, circuitBreaker.state());
+        return circuitBreaker;
+    }
+
+    private static List<String> record(BatchCircuitBreaker circuitBreaker) {
+        List<String> transitions = new ArrayList<>();
+        circuitBreaker.addStateListener((from, to) -> transitions.add(from + "->" + to));
+        return transitions;
+    }
+}
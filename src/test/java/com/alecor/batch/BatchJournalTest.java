@@ -0,0 +1,179 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.journal.BatchJournal;
+import com.alecor.batch.journal.JournalFsyncPolicy;
+import com.alecor.batch.journal.JournalTicket;
+import com.alecor.batch.thread.BatchBackoffPolicy;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchJournalTest
+ * @date 2026/10/19 06:20
+ * @Description 预写日志的重放与段回收
+ * @Version V1.0
+ */
+
+class BatchJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaySkipsAckedRecordsInSharedSegment() throws IOException {
+        BatchJournal journal = new BatchJournal(this.directory, 4096, JournalFsyncPolicy.never());
+        JournalTicket acked = new JournalTicket();
+        JournalTicket pending = new JournalTicket();
+        journal.append(bytes("a"), acked);
+        journal.append(bytes("b"), pending);
+        journal.append(bytes("c"), acked);
+        acked.ackAll();
+        journal.close();
+
+        assertEquals(Arrays.asList("b"), replay(new BatchJournal(this.directory, 4096, JournalFsyncPolicy.never())));
+    }
+
+    @Test
+    void fullyAckedSegmentsAreDeleted() throws IOException {
+        // 每段约放下4条记录
+        BatchJournal journal = new BatchJournal(this.directory, 48, JournalFsyncPolicy.never());
+        List<JournalTicket> tickets = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            JournalTicket ticket = new JournalTicket();
+            journal.append(bytes(String.valueOf(i)), ticket);
+            tickets.add(ticket);
+        }
+        assertTrue(segments() > 5);
+        tickets.forEach(JournalTicket::ackAll);
+        journal.close();
+
+        assertEquals(0, segments());
+    }
+
+    @Test
+    void replayedRecordsCanBeAcked() throws IOException {
+        BatchJournal journal = new BatchJournal(this.directory, 4096, JournalFsyncPolicy.never());
+        for (String item : Arrays.asList("a", "b", "c")) {
+            journal.append(bytes(item), new JournalTicket());
+        }
+        journal.close();
+
+        // 重放时只确认 b
+        BatchJournal reopened = new BatchJournal(this.directory, 4096, JournalFsyncPolicy.never());
+        reopened.replay((segment, offset, data) -> {
+            if ("b".equals(string(data))) {
+                JournalTicket ticket = new JournalTicket();
+                ticket.track(segment, offset);
+                ticket.ackAll();
+            }
+        });
+        reopened.close();
+
+        assertEquals(Arrays.asList("a", "c"), replay(new BatchJournal(this.directory, 4096, JournalFsyncPolicy.never())));
+    }
+
+    @Test
+    void failedBatchesAreRetainedWithoutPinningTheirSegments() throws Exception {
+        int items = 200;
+        // 每段约放下10条记录
+        BatchJournal journal = new BatchJournal(this.directory, 110, JournalFsyncPolicy.never());
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                // 偶数批次失败
+                return Integer.parseInt(request.getBatchData().get(0)) / 5 % 2 == 1;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(handler).setBatchSize(5).setJournal(journal, new StringCodec())
+                .setBackoffPolicy(BatchBackoffPolicy.noBackoff()).setJmxEnabled(false).build();
+        for (int i = 0; i < items; i++) {
+            processor.add(String.format("%03d", i));
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        // 只剩保留段: 100条失败数据约10段, 正常数据所在段全部回收
+        long left = segments();
+        assertTrue(left <= 11, () -> left + " segments left");
+        List<String> expected = IntStream.range(0, items).filter(i -> i / 5 % 2 == 0).mapToObj(i -> String.format("%03d", i)).collect(Collectors.toList());
+        assertEquals(expected, replay(new BatchJournal(this.directory, 110, JournalFsyncPolicy.never())));
+    }
+
+    @Test
+    void replayDoesNotBlockWhenBufferIsSmallerThanJournal() throws Exception {
+        BatchJournal journal = new BatchJournal(this.directory, 4096, JournalFsyncPolicy.never());
+        for (int i = 0; i < 10; i++) {
+            journal.append(bytes(String.valueOf(i)), new JournalTicket());
+        }
+        journal.close();
+
+        Queue<String> handled = new ConcurrentLinkedQueue<>();
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                handled.addAll(request.getBatchData());
+                return true;
+            }
+        };
+        // 未设置 flushInterval 与 linger, 缓冲区小于重放条数, 批次大小大于缓冲区
+        BatchProcessor<String> processor = BatchProcessor.builder(handler).setBatchSize(100).setMaxBufferedItems(3)
+                .setJournal(new BatchJournal(this.directory, 4096, JournalFsyncPolicy.never()), new StringCodec()).setJmxEnabled(false).build();
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(10, handled.size());
+        assertEquals(0, segments());
+    }
+
+    private long segments() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            return files.count();
+        }
+    }
+
+    private static List<String> replay(BatchJournal journal) {
+        List<String> replayed = new ArrayList<>();
+        journal.replay((segment, offset, data) -> replayed.add(string(data)));
+        journal.close();
+        return replayed;
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(byte[] data) {
+        return new String(data, StandardCharsets.UTF_8);
+    }
+
+    static final class StringCodec implements BatchCodec<String> {
+
+        @Override
+        public byte[] encode(String s) {
+            return bytes(s);
+        }
+
+        @Override
+        public String decode(byte[] data) {
+            return string(data);
+        }
+    }
+}
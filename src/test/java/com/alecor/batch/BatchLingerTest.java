@@ -0,0 +1,103 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.scheduler.HashedWheelScheduler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchLingerTest
+ * @date 2026/10/19 11:00
+ * @Description 批次最长等待时间: 从第一条数据开始计时, 按阈值封存时取消计时, 空闲时没有定时任务
+ * @Version V1.0
+ */
+
+class BatchLingerTest {
+
+    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+
+    private final HashedWheelScheduler wheel = new HashedWheelScheduler(5L, TimeUnit.MILLISECONDS, 64, this.pool);
+
+    private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+
+    private final AtomicLong sealedAt = new AtomicLong();
+
+    private final CountDownLatch handled = new CountDownLatch(1);
+
+    private final BatchHandler<String> handler = new BatchHandler<String>() {
+        @Override
+        public boolean executeBatch(BatchRequest<String> request) {
+            sealedAt.compareAndSet(0L, System.nanoTime());
+            batches.add(new ArrayList<>(request.getBatchData()));
+            handled.countDown();
+            return true;
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        this.wheel.close();
+        this.pool.shutdownNow();
+    }
+
+    @Test
+    void batchIsSealedLingerAfterItsFirstItem() throws Exception {
+        BatchProcessor<String> processor = BatchProcessor.builder(this.handler, this.wheel).setBatchSize(100)
+                .setLinger(100L, TimeUnit.MILLISECONDS).setJmxEnabled(false).build();
+        // 空闲时不唤醒定时器
+        assertEquals(0L, this.wheel.pendingTimers());
+
+        long start = System.nanoTime();
+        processor.add("a");
+        assertEquals(1L, this.wheel.pendingTimers());
+        Thread.sleep(30L);
+        // 后续数据不重新计时
+        processor.add("b");
+        assertEquals(1L, this.wheel.pendingTimers());
+
+        assertTrue(this.handled.await(5L, TimeUnit.SECONDS));
+        long waited = this.sealedAt.get() - start;
+        assertTrue(waited >= TimeUnit.MILLISECONDS.toNanos(100L), () -> waited + "ns");
+        assertTrue(waited < TimeUnit.MILLISECONDS.toNanos(1_000L), () -> waited + "ns");
+        assertEquals(Arrays.asList(Arrays.asList("a", "b")), this.batches);
+        assertEquals(1L, processor.metrics().getBatchesSealedByTime());
+        assertEquals(0L, this.wheel.pendingTimers());
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void sealingBySizeCancelsTheTimer() throws Exception {
+        BatchProcessor<String> processor = BatchProcessor.builder(this.handler, this.wheel).setBatchSize(2)
+                .setLinger(1L, TimeUnit.SECONDS).setJmxEnabled(false).build();
+        processor.add("a");
+        assertEquals(1L, this.wheel.pendingTimers());
+        processor.add("b");
+        assertEquals(Arrays.asList(Arrays.asList("a", "b")), this.batches);
+        assertEquals(0L, this.wheel.pendingTimers());
+        assertEquals(0L, processor.metrics().getBatchesSealedByTime());
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lingerCannotBeCombinedWithFlushInterval() {
+        assertThrows(IllegalArgumentException.class, () -> BatchProcessor.builder(this.handler, this.wheel).setFlushInterval(100L)
+                .setLinger(100L, TimeUnit.MILLISECONDS).setJmxEnabled(false).build());
+        assertThrows(IllegalArgumentException.class, () -> BatchProcessor.builder(this.handler, this.wheel).setLinger(0L, TimeUnit.MILLISECONDS));
+    }
+}
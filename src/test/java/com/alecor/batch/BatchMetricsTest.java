@@ -0,0 +1,76 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.metrics.BatchMetrics;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchMetricsTest
+ * @date 2026/10/19 07:30
+ * @Description 处理器指标的 JMX 注册与组合属性
+ * @Version V1.0
+ */
+
+class BatchMetricsTest {
+
+    private static final BatchHandler<Integer> HANDLER = new BatchHandler<Integer>() {
+        @Override
+        public boolean executeBatch(BatchRequest<Integer> request) {
+            return true;
+        }
+    };
+
+    @Test
+    void jmxIsDisabledByDefault() throws Exception {
+        BatchProcessor<Integer> processor = BatchProcessor.builder(HANDLER).setName("metrics-default").build();
+        try {
+            assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(objectName("metrics-default")));
+        } finally {
+            processor.close();
+        }
+    }
+
+    @Test
+    void compositeAttributeComesFromOneSnapshot() throws Exception {
+        BatchProcessor<Integer> processor = BatchProcessor.builder(HANDLER).setName("metrics-composite").setBatchSize(4).setJmxEnabled(true).build();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName objectName = objectName("metrics-composite");
+        try {
+            // 同名处理器关闭前不能再次构建
+            assertThrows(IllegalStateException.class, () -> BatchProcessor.builder(HANDLER).setName("metrics-composite").setJmxEnabled(true).build());
+            for (int i = 0; i < 10; i++) {
+                processor.add(i);
+            }
+            processor.flush();
+
+            CompositeData batchSize = (CompositeData) server.getAttribute(objectName, "BatchSize");
+            assertEquals(3L, batchSize.get("count"));
+            assertEquals(4L, batchSize.get("max"));
+            assertEquals(4L, batchSize.get("p50"));
+            assertEquals(10D / 3D, (Double) batchSize.get("mean"), 1e-9D);
+            CompositeData latency = (CompositeData) server.getAttribute(objectName, "ExecuteLatencyMicros");
+            assertEquals(3L, latency.get("count"));
+            assertTrue((Long) latency.get("p50") <= (Long) latency.get("max"));
+        } finally {
+            assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+        }
+        assertFalse(server.isRegistered(objectName));
+    }
+
+    private static ObjectName objectName(String name) throws Exception {
+        return new ObjectName(BatchMetrics.JMX_DOMAIN + ":type=BatchProcessor,name=" + ObjectName.quote(name));
+    }
+}
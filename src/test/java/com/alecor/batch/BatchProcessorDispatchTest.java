@@ -0,0 +1,110 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchProcessorDispatchTest
+ * @date 2026/10/19 09:10
+ * @Description 分发线程池: 批次在分发线程上执行, add() 不等待处理器, 在途批次数受 concurrentRequests 限制
+ * @Version V1.0
+ */
+
+class BatchProcessorDispatchTest {
+
+    @Test
+    void addDoesNotWaitForBlockedHandlers() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Queue<String> handled = new ConcurrentLinkedQueue<>();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                threads.add(Thread.currentThread());
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                } finally {
+                    running.decrementAndGet();
+                }
+                handled.addAll(request.getBatchData());
+                return true;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            BatchProcessor<String> processor = BatchProcessor.builder(handler).setBatchSize(1).setConcurrentRequests(2)
+                    .setDispatchExecutor(executor).setJmxEnabled(false).build();
+            for (String item : Arrays.asList("a", "b", "c", "d", "e", "f")) {
+                processor.add(item);
+            }
+            // 处理器全部阻塞时 add() 已经返回
+            assertTrue(started.await(5L, TimeUnit.SECONDS));
+            assertEquals(2, processor.metrics().getInFlightBatches());
+            // 其余批次等待许可, 不占用分发线程
+            assertEquals(4L, processor.metrics().getQueuedItems());
+
+            release.countDown();
+            assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+            assertEquals(new HashSet<>(Arrays.asList("a", "b", "c", "d", "e", "f")), new HashSet<>(handled));
+            assertEquals(2, maxRunning.get());
+            assertFalse(threads.contains(Thread.currentThread()));
+            assertEquals(0, processor.metrics().getQueuedBatches());
+            // 外部线程池不随处理器关闭
+            assertFalse(executor.isShutdown());
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void asyncDispatchRunsHandlerOffTheCallerThread() throws Exception {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Queue<Integer> handled = new ConcurrentLinkedQueue<>();
+        BatchHandler<Integer> handler = new BatchHandler<Integer>() {
+            @Override
+            public boolean executeBatch(BatchRequest<Integer> request) {
+                threads.add(Thread.currentThread());
+                handled.addAll(request.getBatchData());
+                return true;
+            }
+        };
+        BatchProcessor<Integer> processor = BatchProcessor.builder(handler).setBatchSize(10).setConcurrentRequests(3)
+                .setAsyncDispatch(true).setJmxEnabled(false).build();
+        for (int i = 0; i < 1_000; i++) {
+            processor.add(i);
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(1_000, handled.size());
+        assertFalse(threads.contains(Thread.currentThread()));
+        // 内部线程池的线程数等于 concurrentRequests
+        assertTrue(threads.size() <= 3, () -> threads.size() + " dispatch threads");
+    }
+}
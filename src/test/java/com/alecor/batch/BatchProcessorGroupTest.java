@@ -0,0 +1,112 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.scheduler.HashedWheelScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchProcessorGroupTest
+ * @date 2026/10/19 10:40
+ * @Description 处理器组: 组内处理器共享定时器与分发线程池, 统一刷新、统一关闭
+ * @Version V1.0
+ */
+
+class BatchProcessorGroupTest {
+
+    @Test
+    void processorsShareTheGroupDispatchThreads() throws Exception {
+        Queue<String> handled = new ConcurrentLinkedQueue<>();
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                threads.add(Thread.currentThread());
+                handled.addAll(request.getBatchData());
+                return true;
+            }
+        };
+        BatchProcessorGroup group = new BatchProcessorGroup(2);
+        List<BatchProcessor<String>> processors = new ArrayList<>();
+        for (int p = 0; p < 5; p++) {
+            BatchProcessor<String> processor = group.builder(handler).setBatchSize(100).setFlushInterval(20L).setJmxEnabled(false).build();
+            for (int i = 0; i < 3; i++) {
+                processor.add(p + "-" + i);
+            }
+            processors.add(processor);
+        }
+        assertEquals(5, group.size());
+
+        // 由组内定时器按 flushInterval 刷新
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+        while (handled.size() < 15 && System.nanoTime() - deadline < 0L) {
+            Thread.sleep(5L);
+        }
+        assertEquals(15, handled.size());
+        assertTrue(threads.size() <= 2, () -> threads.size() + " dispatch threads");
+        assertFalse(threads.contains(Thread.currentThread()));
+
+        // 单独关闭的处理器不再计入
+        assertTrue(processors.get(0).awaitClose(5L, TimeUnit.SECONDS));
+        assertEquals(4, group.size());
+
+        assertTrue(group.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(0, group.size());
+        assertThrows(IllegalStateException.class, () -> processors.get(1).add("late"));
+        assertThrows(IllegalStateException.class, () -> group.builder(handler));
+    }
+
+    @Test
+    void flushAndCloseReachEveryProcessorButNotExternalResources() throws Exception {
+        Queue<String> handled = new ConcurrentLinkedQueue<>();
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                handled.addAll(request.getBatchData());
+                return true;
+            }
+        };
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        HashedWheelScheduler wheel = new HashedWheelScheduler(10L, TimeUnit.MILLISECONDS, 64, pool);
+        try {
+            BatchProcessorGroup group = new BatchProcessorGroup(wheel, pool);
+            BatchProcessor<String> first = group.builder(handler).setBatchSize(100).setJmxEnabled(false).build();
+            BatchProcessor<String> second = group.builder(handler).setBatchSize(100).setJmxEnabled(false).build();
+            first.add("a");
+            second.add("b");
+            group.flush();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5L);
+            while (handled.size() < 2 && System.nanoTime() - deadline < 0L) {
+                Thread.sleep(5L);
+            }
+            assertEquals(2, handled.size());
+
+            second.add("c");
+            assertTrue(group.awaitClose(10L, TimeUnit.SECONDS));
+            assertEquals(3, handled.size());
+            // 外部定时器与线程池由调用方关闭
+            assertFalse(pool.isShutdown());
+            assertDoesNotThrow(() -> wheel.schedule(() -> { }, 1L, "same"));
+        } finally {
+            wheel.close();
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchProcessorKeyOrderTest
+ * @date 2026/10/19 03:30
+ * @Description 分区模式下同一 key 的批次按封存顺序串行到达处理器
+ * @Version V1.0
+ */
+
+class BatchProcessorKeyOrderTest {
+
+    private static final int KEYS = 4;
+
+    private static final int PRODUCERS = 8;
+
+    private static final int ITEMS_PER_PRODUCER = 4000;
+
+    @Test
+    void sameKeyBatchesReachSinkInSealOrder() throws Exception {
+        runProducers(64);
+    }
+
+    @Test
+    void evictedKeyBatchesReachSinkInSealOrder() throws Exception {
+        // 打开的 key 少于 key 数, 频繁淘汰
+        runProducers(2);
+    }
+
+    private static void runProducers(int maxOpenKeys) throws Exception {
+        OrderCheckingHandler handler = new OrderCheckingHandler();
+        BatchProcessor<Item> processor = BatchProcessor.builder(handler).setKeyExtractor(item -> ((Item) item).key).setMaxOpenKeys(maxOpenKeys)
+                .setBatchSize(7).setAsyncDispatch(true).setConcurrentRequests(8).setJmxEnabled(false).build();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            producers[p] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exception) {
+                    return;
+                }
+                for (int seq = 0; seq < ITEMS_PER_PRODUCER; seq++) {
+                    processor.add(new Item(seq % KEYS, producer, seq));
+                }
+            });
+            producers[p].start();
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertTrue(processor.awaitClose(30L, TimeUnit.SECONDS));
+
+        assertTrue(handler.violations.isEmpty(), () -> "out of order: " + handler.violations);
+        assertEquals((long) PRODUCERS * ITEMS_PER_PRODUCER, handler.handled.get());
+    }
+
+    static final class Item {
+
+        final int key;
+
+        final int producer;
+
+        final int seq;
+
+        Item(int key, int producer, int seq) {
+            this.key = key;
+            this.producer = producer;
+            this.seq = seq;
+        }
+    }
+
+    /**
+     * 检查同一 key 同时只有一个批次在执行, 且每个生产线程写入同一 key 的数据按写入顺序到达
+     */
+    static final class OrderCheckingHandler extends BatchHandler<Item> {
+
+        final Set<Object> inFlight = ConcurrentHashMap.newKeySet();
+
+        final Map<Long, Integer> lastSeq = new ConcurrentHashMap<>();
+
+        final Queue<String> violations = new ConcurrentLinkedQueue<>();
+
+        final AtomicLong handled = new AtomicLong();
+
+        @Override
+        public boolean executeBatch(BatchRequest<Item> request) {
+            Object key = request.getKey();
+            if (!this.inFlight.add(key)) {
+                this.violations.add("key " + key + " has two batches in flight");
+            }
+            try {
+                List<Item> items = request.getBatchData();
+                for (Item item : items) {
+                    long slot = (long) item.key << 32 | item.producer;
+                    Integer previous = this.lastSeq.put(slot, item.seq);
+                    if (previous != null && previous >= item.seq) {
+                        this.violations.add("key " + item.key + " producer " + item.producer + ": " + item.seq + " after " + previous);
+                    }
+                }
+                this.handled.addAndGet(items.size());
+                // 让同一 key 的后续批次有机会抢先
+                LockSupport.parkNanos(ThreadLocalRandom.current().nextInt(50_000));
+            } finally {
+                this.inFlight.remove(key);
+            }
+            return true;
+        }
+    }
+}
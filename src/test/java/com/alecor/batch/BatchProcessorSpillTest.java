@@ -0,0 +1,134 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.Listener.BatchResponse;
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.spill.BatchSpillQueue;
+import com.alecor.batch.spill.BatchSpillReadException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchProcessorSpillTest
+ * @date 2026/10/19 04:20
+ * @Description 溢写批次读回, 包括读回失败时归还并发许可、容量许可及 key
+ * @Version V1.0
+ */
+
+class BatchProcessorSpillTest {
+
+    private static final String CORRUPT = "c-corrupt";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void corruptBatchIsRemovedAndReportedWithItsAttachment() throws Exception {
+        try (BatchSpillQueue<String> queue = new BatchSpillQueue<>(this.directory, new FailingCodec())) {
+            Object attachment = new Object();
+            queue.offer(Arrays.asList("a", "b"), "first");
+            queue.offer(Arrays.asList(CORRUPT), attachment);
+            queue.offer(Arrays.asList("d"), "third");
+
+            assertEquals(Arrays.asList("a", "b"), queue.poll().getItems());
+            BatchSpillReadException exception = assertThrows(BatchSpillReadException.class, queue::poll);
+            assertSame(attachment, exception.getAttachment());
+            assertEquals(Arrays.asList("d"), queue.poll().getItems());
+            assertNull(queue.poll());
+            assertEquals(0, queue.pendingBatches());
+        }
+    }
+
+    @Test
+    void failedReadBackReleasesPermitCapacityAndKey() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        Queue<String> handled = new ConcurrentLinkedQueue<>();
+        Queue<Exception> failures = new ConcurrentLinkedQueue<>();
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                try {
+                    release.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                }
+                handled.addAll(request.getBatchData());
+                return true;
+            }
+        };
+        BatchProcessor.Listener<String> listener = new BatchProcessor.Listener<String>() {
+            @Override
+            public void beforBatch(BatchRequest<String> t) {
+            }
+
+            @Override
+            public void afterBatch(BatchResponse response) {
+            }
+
+            @Override
+            public void afterBatch(Exception exception, BatchResponse response) {
+                failures.add(exception);
+            }
+        };
+        BatchSpillQueue<String> queue = new BatchSpillQueue<>(this.directory, new FailingCodec());
+        BatchProcessor<String> processor = BatchProcessor.builder(listener, handler).setKeyExtractor(item -> ((String) item).substring(0, 1))
+                .setBatchSize(1).setConcurrentRequests(1).setSpill(queue, 1L).setMaxBufferedItems(4).setJmxEnabled(false).build();
+
+        // a0 占用唯一的并发许可, b0 在内存中排队, 其后的批次溢写
+        processor.add("a0");
+        processor.add("b0");
+        processor.add(CORRUPT);
+        processor.add("d0");
+        release.countDown();
+
+        // 读回失败的批次也要归还容量许可
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10L);
+        while (processor.metrics().getBufferedItems() > 0L && System.nanoTime() - deadline < 0L) {
+            Thread.sleep(1L);
+        }
+        assertEquals(0L, processor.metrics().getBufferedItems());
+        // 与读回失败的批次同一 key, 该批次未释放 key 时无法分发
+        processor.add("c1");
+
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(1, failures.size(), () -> "failures: " + failures);
+        assertInstanceOf(BatchSpillReadException.class, failures.peek());
+        assertEquals(Arrays.asList("a0", "b0", "d0", "c1"), Arrays.asList(handled.toArray()));
+    }
+
+    /**
+     * 解码 CORRUPT 时失败, 模拟溢写文件内容损坏
+     */
+    static final class FailingCodec implements BatchCodec<String> {
+
+        @Override
+        public byte[] encode(String s) {
+            return s.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            String s = new String(bytes, StandardCharsets.UTF_8);
+            if (CORRUPT.equals(s)) {
+                throw new IllegalStateException("corrupt record");
+            }
+            return s;
+        }
+    }
+}
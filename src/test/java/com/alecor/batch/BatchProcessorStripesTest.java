@@ -0,0 +1,90 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchProcessorStripesTest
+ * @date 2026/10/19 09:00
+ * @Description 分段写入: 多个生产线程并发写入时每条数据恰好处理一次, 各分段独立按 batchSize 封存
+ * @Version V1.0
+ */
+
+class BatchProcessorStripesTest {
+
+    private static final int PRODUCERS = 8;
+
+    private static final int ITEMS = 5_000;
+
+    @Test
+    void concurrentProducersDeliverEveryItemExactlyOnce() throws Exception {
+        Queue<Integer> handled = new ConcurrentLinkedQueue<>();
+        Queue<Integer> sizes = new ConcurrentLinkedQueue<>();
+        BatchHandler<Integer> handler = new BatchHandler<Integer>() {
+            @Override
+            public boolean executeBatch(BatchRequest<Integer> request) {
+                List<Integer> data = request.getBatchData();
+                sizes.add(data.size());
+                handled.addAll(data);
+                return true;
+            }
+        };
+        BatchProcessor<Integer> processor = BatchProcessor.builder(handler).setBatchSize(100).setStripes(4).setConcurrentRequests(4)
+                .setJmxEnabled(false).build();
+        ExecutorService producers = Executors.newFixedThreadPool(PRODUCERS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int p = 0; p < PRODUCERS; p++) {
+            int base = p * ITEMS;
+            producers.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException exception) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < ITEMS; i++) {
+                    processor.add(base + i);
+                }
+            });
+        }
+        start.countDown();
+        producers.shutdown();
+        assertTrue(producers.awaitTermination(30L, TimeUnit.SECONDS));
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(PRODUCERS * ITEMS, handled.size());
+        Set<Integer> distinct = new HashSet<>(handled);
+        assertEquals(PRODUCERS * ITEMS, distinct.size());
+        assertTrue(sizes.stream().allMatch(size -> size > 0 && size <= 100), () -> "batch sizes " + sizes);
+        // 关闭时最多每个分段各剩一个未满的批次
+        assertTrue(sizes.stream().filter(size -> size < 100).count() <= 4, () -> "batch sizes " + sizes);
+        assertEquals((long) PRODUCERS * ITEMS, processor.metrics().getItemsAdded());
+    }
+
+    @Test
+    void stripesMustBePositive() {
+        BatchHandler<Integer> handler = new BatchHandler<Integer>() {
+            @Override
+            public boolean executeBatch(BatchRequest<Integer> request) {
+                return true;
+            }
+        };
+        assertThrows(IllegalArgumentException.class, () -> BatchProcessor.builder(handler).setStripes(0));
+    }
+}
@@ -0,0 +1,110 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchRateLimiterTest
+ * @date 2026/10/19 05:40
+ * @Description 限流器预约计算: 空闲后的首个批次不等待, 后续批次按速率排队, 长期速率不超过配置
+ * @Version V1.0
+ */
+
+class BatchRateLimiterTest {
+
+    private static final long TOLERANCE_NANOS = TimeUnit.MILLISECONDS.toNanos(5L);
+
+    @Test
+    void firstBatchAfterIdleDoesNotWaitWithoutBurst() {
+        BatchRateLimiter limiter = new BatchRateLimiter(10D, 0D, 0L, TimeUnit.SECONDS);
+        assertEquals(0L, limiter.reserve(1));
+        assertTrue(limiter.isThrottled());
+    }
+
+    @Test
+    void batchesWaitForEarlierReservationsOnly() {
+        // 每个批次100毫秒
+        BatchRateLimiter limiter = new BatchRateLimiter(10D, 0D, 0L, TimeUnit.SECONDS);
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            long expected = TimeUnit.MILLISECONDS.toNanos(100L * i) - (System.nanoTime() - start);
+            long wait = limiter.reserve(1);
+            assertTrue(Math.abs(wait - expected) <= TOLERANCE_NANOS, "batch " + i + " waited " + wait + "ns, expected " + expected + "ns");
+        }
+        assertEquals(4L, limiter.throttledBatches());
+    }
+
+    @Test
+    void largeBatchIsPaidByTheNextBatch() {
+        // 每条1毫秒
+        BatchRateLimiter limiter = new BatchRateLimiter(0D, 1000D, 0L, TimeUnit.SECONDS);
+        assertEquals(0L, limiter.reserve(50));
+        long wait = limiter.reserve(1);
+        assertTrue(Math.abs(wait - TimeUnit.MILLISECONDS.toNanos(50L)) <= TOLERANCE_NANOS, "waited " + wait + "ns");
+    }
+
+    @Test
+    void idleTimeIsCreditedUpToMaxBurst() {
+        // 空闲200毫秒后最多抵扣100毫秒, 即1个批次的令牌
+        BatchRateLimiter limiter = new BatchRateLimiter(10D, 0D, 100L, TimeUnit.MILLISECONDS);
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200L));
+        assertEquals(0L, limiter.reserve(1));
+        assertEquals(0L, limiter.reserve(1));
+        assertFalse(limiter.reserve(1) == 0L);
+    }
+
+    @Test
+    void sustainedRateDoesNotExceedLimit() {
+        // 按预约等待后执行, 实际速率应接近 200/s
+        BatchRateLimiter limiter = new BatchRateLimiter(200D, 0D, 0L, TimeUnit.SECONDS);
+        int batches = 100;
+        long start = System.nanoTime();
+        for (int i = 0; i < batches; i++) {
+            long deadline = System.nanoTime() + limiter.reserve(1);
+            for (long remaining; (remaining = deadline - System.nanoTime()) > 0L; ) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9D;
+        // 首个批次不等待, 99个间隔共0.495秒
+        assertTrue(seconds >= 0.495D, "took " + seconds + "s");
+        assertTrue(seconds < 0.495D * 1.5D, "took " + seconds + "s");
+    }
+
+    @Test
+    void throttledInlineBatchDoesNotBlockTheProducer() throws Exception {
+        List<Long> executed = Collections.synchronizedList(new ArrayList<>());
+        BatchHandler<Integer> handler = new BatchHandler<Integer>() {
+            @Override
+            public boolean executeBatch(BatchRequest<Integer> request) {
+                executed.add(System.nanoTime());
+                return true;
+            }
+        };
+        // 每个批次100毫秒, 未配置分发线程池
+        BatchProcessor<Integer> processor = BatchProcessor.builder(handler).setBatchSize(1).setConcurrentRequests(2)
+                .setRateLimiter(new BatchRateLimiter(10D, 0D, 0L, TimeUnit.SECONDS)).setJmxEnabled(false).build();
+        processor.add(1);
+        long start = System.nanoTime();
+        processor.add(2);
+        long took = System.nanoTime() - start;
+        assertTrue(took < TimeUnit.MILLISECONDS.toNanos(50L), "add() blocked for " + took + "ns");
+
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(2, executed.size());
+        long gap = executed.get(1) - executed.get(0);
+        assertTrue(gap >= TimeUnit.MILLISECONDS.toNanos(95L), "second batch ran after " + gap + "ns");
+    }
+}
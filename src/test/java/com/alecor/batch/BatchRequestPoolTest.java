@@ -0,0 +1,95 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.Listener.BatchResponse;
+import com.alecor.batch.handle.BatchHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchRequestPoolTest
+ * @date 2026/10/19 09:50
+ * @Description 批次对象池: 归还时清空, 池满时丢弃, 开启复用后处理器只在少量批次对象间轮换
+ * @Version V1.0
+ */
+
+class BatchRequestPoolTest {
+
+    @Test
+    void releasedRequestsAreClearedAndReused() {
+        AtomicInteger created = new AtomicInteger();
+        BatchRequestPool<String> pool = new BatchRequestPool<>(() -> {
+            created.incrementAndGet();
+            return new BatchRequest<>(4);
+        }, 1);
+        BatchRequest<String> first = pool.acquire();
+        BatchRequest<String> second = pool.acquire();
+        assertEquals(2, created.get());
+        first.add("a");
+        first.add("b");
+
+        pool.release(first);
+        // 池满, 丢弃
+        pool.release(second);
+        BatchRequest<String> reused = pool.acquire();
+        assertSame(first, reused);
+        assertEquals(0, reused.numberOfActions());
+        assertTrue(reused.getBatchData().isEmpty());
+        assertNotSame(second, pool.acquire());
+        assertEquals(3, created.get());
+    }
+
+    @Test
+    void processorRotatesBetweenRecycledRequests() throws Exception {
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        Set<BatchRequest<String>> requests = Collections.newSetFromMap(new IdentityHashMap<>());
+        BatchProcessor.Listener<String> listener = new BatchProcessor.Listener<String>() {
+            @Override
+            public void beforBatch(BatchRequest<String> t) {
+                requests.add(t);
+            }
+
+            @Override
+            public void afterBatch(BatchResponse response) {
+            }
+
+            @Override
+            public void afterBatch(Exception exception, BatchResponse response) {
+            }
+        };
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                handled.addAll(request.getBatchData());
+                return true;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(listener, handler).setBatchSize(2).setRecycleRequests(true)
+                .setJmxEnabled(false).build();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            expected.add(String.valueOf(i));
+            processor.add(String.valueOf(i));
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(expected, handled);
+        // 批次依次执行, 写入中的批次与执行中的批次两个对象轮换
+        assertTrue(requests.size() <= 2, () -> requests.size() + " requests allocated");
+        // 归还时已清空
+        assertTrue(requests.stream().allMatch(request -> request.numberOfActions() == 0));
+    }
+}
@@ -0,0 +1,110 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.Listener.BatchResponse;
+import com.alecor.batch.handle.AsyncBatchHandler;
+import com.alecor.batch.thread.BatchBackoffPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchRetryBisectTest
+ * @date 2026/10/19 05:10
+ * @Description 重试用尽后的二分隔离: 已完成的异步结果不递归, 子批次计入重试预算
+ * @Version V1.0
+ */
+
+class BatchRetryBisectTest {
+
+    @Test
+    void completedFuturesDoNotRecurse() throws Exception {
+        // 每条数据都失败, 二分共执行 2n-1 个子批次
+        int items = 20_000;
+        AtomicInteger executions = new AtomicInteger();
+        Queue<Object> poisoned = new ConcurrentLinkedQueue<>();
+        Queue<BatchResponse> responses = new ConcurrentLinkedQueue<>();
+        BatchProcessor<Integer> processor = BatchProcessor.builder(new RecordingListener(responses), new FailingHandler(executions))
+                .setBatchSize(items).setBackoffPolicy(BatchBackoffPolicy.noBackoff())
+                .setBisectOnFailure((item, exception) -> poisoned.add(item)).setJmxEnabled(false).build();
+        for (int i = 0; i < items; i++) {
+            processor.add(i);
+        }
+        assertTrue(processor.awaitClose(30L, TimeUnit.SECONDS));
+
+        assertEquals(items, poisoned.size());
+        assertEquals(2 * items - 1, executions.get());
+        assertEquals(1, responses.size());
+        // BatchResponse.hasSuccess() 为 false 表示处理成功
+        assertEquals(false, responses.peek().hasSuccess());
+    }
+
+    @Test
+    void bisectionStopsWhenRetryBudgetIsExhausted() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        Queue<Object> poisoned = new ConcurrentLinkedQueue<>();
+        Queue<BatchResponse> responses = new ConcurrentLinkedQueue<>();
+        BatchProcessor<Integer> processor = BatchProcessor.builder(new RecordingListener(responses), new FailingHandler(executions))
+                .setBatchSize(8).setBackoffPolicy(BatchBackoffPolicy.noBackoff()).setRetryBudget(new BatchRetryBudget(0D, 0, 0))
+                .setBisectOnFailure((item, exception) -> poisoned.add(item)).setJmxEnabled(false).build();
+        for (int i = 0; i < 8; i++) {
+            processor.add(i);
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        // 只有首次执行, 子批次均被预算拒绝
+        assertEquals(1, executions.get());
+        assertTrue(poisoned.isEmpty());
+        assertEquals(1, responses.size());
+        assertEquals(true, responses.peek().hasSuccess());
+    }
+
+    /**
+     * 任何批次都以失败完成, 结果在调用线程上已完成
+     */
+    static final class FailingHandler extends AsyncBatchHandler<Integer> {
+
+        private final AtomicInteger executions;
+
+        FailingHandler(AtomicInteger executions) {
+            this.executions = executions;
+        }
+
+        @Override
+        public CompletableFuture<BatchResponse> executeBatchAsync(BatchRequest<Integer> request) {
+            this.executions.incrementAndGet();
+            return CompletableFuture.completedFuture(new BatchResponse(request, false));
+        }
+    }
+
+    static final class RecordingListener implements BatchProcessor.Listener<Integer> {
+
+        private final Queue<BatchResponse> responses;
+
+        RecordingListener(Queue<BatchResponse> responses) {
+            this.responses = responses;
+        }
+
+        @Override
+        public void beforBatch(BatchRequest<Integer> t) {
+        }
+
+        @Override
+        public void afterBatch(BatchResponse response) {
+            this.responses.add(response);
+        }
+
+        @Override
+        public void afterBatch(Exception exception, BatchResponse response) {
+            this.responses.add(response);
+        }
+    }
+}
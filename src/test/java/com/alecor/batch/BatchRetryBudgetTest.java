@@ -0,0 +1,117 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.thread.BatchBackoffPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchRetryBudgetTest
+ * @date 2026/10/19 10:50
+ * @Description 抖动补偿的延迟范围与次数, 重试预算按首次执行比例放行重试
+ * @Version V1.0
+ */
+
+class BatchRetryBudgetTest {
+
+    @Test
+    void fullJitterStaysUnderExponentialCeiling() {
+        BatchBackoffPolicy policy = BatchBackoffPolicy.fullJitter(10L, 100L, 8);
+        Set<Long> seen = new HashSet<>();
+        for (int sample = 0; sample < 1_000; sample++) {
+            Iterator<Long> delays = policy.iterator();
+            for (int n = 0; n < 8; n++) {
+                long delay = delays.next();
+                long ceiling = Math.min(100L, 10L << n);
+                assertTrue(delay >= 0L && delay <= ceiling, () -> delay + " outside [0, " + ceiling + "]");
+                seen.add(delay);
+            }
+            assertFalse(delays.hasNext());
+            assertThrows(NoSuchElementException.class, delays::next);
+        }
+        // 延迟被打散
+        assertTrue(seen.size() > 50, () -> seen.size() + " distinct delays");
+    }
+
+    @Test
+    void decorrelatedJitterGrowsFromPreviousDelay() {
+        BatchBackoffPolicy policy = BatchBackoffPolicy.decorrelatedJitter(10L, 200L, 6);
+        for (int sample = 0; sample < 1_000; sample++) {
+            long previous = 10L;
+            int count = 0;
+            for (long delay : policy) {
+                long upper = Math.min(200L, previous * 3);
+                long current = delay;
+                assertTrue(current >= 10L && current <= upper, () -> current + " outside [10, " + upper + "]");
+                previous = delay;
+                count++;
+            }
+            assertEquals(6, count);
+        }
+    }
+
+    @Test
+    void jitterBoundsAreValidated() {
+        assertThrows(IllegalArgumentException.class, () -> BatchBackoffPolicy.fullJitter(100L, 10L, 3));
+        assertThrows(IllegalArgumentException.class, () -> BatchBackoffPolicy.decorrelatedJitter(10L, 100L, -1));
+    }
+
+    @Test
+    void retriesAreLimitedToRatioOfFirstAttempts() {
+        // 无每秒保底次数, 每次首次执行存入0.5个令牌
+        BatchRetryBudget budget = new BatchRetryBudget(0.5D, 0, 100);
+        for (int i = 0; i < 4; i++) {
+            budget.onFirstAttempt();
+        }
+        assertEquals(2D, budget.balance());
+        assertTrue(budget.tryAcquire());
+        assertTrue(budget.tryAcquire());
+        assertFalse(budget.tryAcquire());
+        assertEquals(4L, budget.firstAttempts());
+        assertEquals(2L, budget.allowedRetries());
+        assertEquals(1L, budget.deniedRetries());
+
+        // 余额不超过上限
+        BatchRetryBudget capped = new BatchRetryBudget(1D, 0, 3);
+        for (int i = 0; i < 10; i++) {
+            capped.onFirstAttempt();
+        }
+        assertEquals(3D, capped.balance());
+    }
+
+    @Test
+    void exhaustedBudgetStopsProcessorRetries() throws Exception {
+        BatchRetryBudget budget = new BatchRetryBudget(0D, 0, 100);
+        AtomicInteger calls = new AtomicInteger();
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                calls.incrementAndGet();
+                return false;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(handler).setBatchSize(1)
+                .setBackoffPolicy(BatchBackoffPolicy.exponentialBackoff(1L, 3)).setRetryBudget(budget).setJmxEnabled(false).build();
+        processor.add("a").add("b");
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        // 补偿次数未用尽, 但预算不允许重试
+        assertEquals(2, calls.get());
+        assertEquals(2L, budget.firstAttempts());
+        assertEquals(2L, budget.deniedRetries());
+        assertEquals(0L, budget.allowedRetries());
+    }
+}
@@ -0,0 +1,83 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchWeigherTest
+ * @date 2026/10/19 09:30
+ * @Description 按字节数封存批次: 达到 maxBatchBytes 封存, 会超过上限时先封存, 超过上限的单条数据单独成批
+ * @Version V1.0
+ */
+
+class BatchWeigherTest {
+
+    @Test
+    void batchesAreSealedOnAccumulatedBytes() throws Exception {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                batches.add(new ArrayList<>(request.getBatchData()));
+                return true;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(handler).setBatchSize(100)
+                .setWeigher(item -> (long) ((String) item).length()).setMaxBatchBytes(10L).setJmxEnabled(false).build();
+        // 4 + 4 + 2 正好达到上限
+        processor.add("aaaa").add("bbbb").add("cc");
+        assertEquals(1, batches.size());
+        // 1 + 12 会超过上限, 先封存 d, 12 字节的数据单独成批
+        processor.add("d").add("eeeeeeeeeeee");
+        assertEquals(3, batches.size());
+        processor.add("f");
+        assertEquals(3L, processor.metrics().getBatchesSealedBySize());
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(Arrays.asList("aaaa", "bbbb", "cc"), Arrays.asList("d"), Arrays.asList("eeeeeeeeeeee"), Arrays.asList("f")),
+                batches);
+    }
+
+    @Test
+    void batchSizeStillApplies() throws Exception {
+        List<Integer> sizes = Collections.synchronizedList(new ArrayList<>());
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                sizes.add(request.numberOfActions());
+                return true;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(handler).setBatchSize(3)
+                .setWeigher(item -> 1L).setMaxBatchBytes(1_000L).setJmxEnabled(false).build();
+        for (int i = 0; i < 7; i++) {
+            processor.add(String.valueOf(i));
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(3, 3, 1), sizes);
+    }
+
+    @Test
+    void maxBatchBytesRequiresWeigher() {
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                return true;
+            }
+        };
+        assertThrows(IllegalArgumentException.class, () -> BatchProcessor.builder(handler).setMaxBatchBytes(10L).setJmxEnabled(false).build());
+    }
+}
@@ -0,0 +1,120 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.Listener.BatchResponse;
+import com.alecor.batch.handle.ByteBufferBatchHandler;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName ByteBufferBatchRequestTest
+ * @date 2026/10/19 07:10
+ * @Description 堆外批次: 直接内存延迟分配, 处理器总是复用堆外批次
+ * @Version V1.0
+ */
+
+class ByteBufferBatchRequestTest {
+
+    @Test
+    void emptyRequestIsReadableAndRecyclable() {
+        ByteBufferBatchRequest request = new ByteBufferBatchRequest(8);
+        assertEquals(0, request.sizeInBytes());
+        assertEquals(0, request.records().remaining());
+        assertTrue(request.getBatchData().isEmpty());
+
+        // 超过初始容量时扩容
+        request.addRecord(bytes("abc")).addRecord(bytes("de"));
+        assertEquals(2 * Integer.BYTES + 5, request.sizeInBytes());
+        assertEquals(Arrays.asList("abc", "de"), strings(request.getBatchData()));
+
+        request.recycle();
+        assertEquals(0, request.sizeInBytes());
+        request.addRecord(ByteBuffer.wrap(bytes("f")));
+        assertEquals(Arrays.asList("f"), strings(request.getBatchData()));
+    }
+
+    @Test
+    void byteBufferRequestsAreRecycledWithoutOptIn() throws Exception {
+        Queue<String> handled = new ConcurrentLinkedQueue<>();
+        Set<BatchRequest<byte[]>> requests = Collections.newSetFromMap(new IdentityHashMap<>());
+        BatchProcessor.Listener<byte[]> listener = new BatchProcessor.Listener<byte[]>() {
+            @Override
+            public void beforBatch(BatchRequest<byte[]> t) {
+                requests.add(t);
+            }
+
+            @Override
+            public void afterBatch(BatchResponse response) {
+            }
+
+            @Override
+            public void afterBatch(Exception exception, BatchResponse response) {
+            }
+        };
+        // 未调用 setRecycleRequests
+        BatchProcessor<byte[]> processor = BatchProcessor.builder(listener, new RecordingHandler(handled)).setBatchSize(1).setJmxEnabled(false).build();
+        for (int i = 0; i < 20; i++) {
+            processor.add(bytes(String.valueOf(i)));
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(20, handled.size());
+        // 批次依次执行, 只在两个对象间轮换
+        assertTrue(requests.size() <= 2, () -> requests.size() + " requests allocated");
+    }
+
+    @Test
+    void keyedByteBufferBatchesAreRecycled() throws Exception {
+        Queue<String> handled = new ConcurrentLinkedQueue<>();
+        BatchProcessor<byte[]> processor = BatchProcessor.builder(new RecordingHandler(handled)).setBatchSize(2).setRecycleRequests(true)
+                .setKeyExtractor(record -> ((byte[]) record)[0]).setJmxEnabled(false).build();
+        for (String item : Arrays.asList("a0", "b0", "a1", "b1", "a2")) {
+            processor.add(bytes(item));
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList("a0", "a1", "b0", "b1", "a2"), Arrays.asList(handled.toArray()));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> strings(List<byte[]> records) {
+        return records.stream().map(record -> new String(record, StandardCharsets.UTF_8)).collect(Collectors.toList());
+    }
+
+    static final class RecordingHandler extends ByteBufferBatchHandler {
+
+        private final Queue<String> handled;
+
+        RecordingHandler(Queue<String> handled) {
+            this.handled = handled;
+        }
+
+        @Override
+        public boolean executeBatch(ByteBuffer records, int count) {
+            for (int i = 0; i < count; i++) {
+                byte[] record = new byte[records.getInt()];
+                records.get(record);
+                this.handled.add(new String(record, StandardCharsets.UTF_8));
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.thread.BatchBackpressurePolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName CoalescingBatchRequestTest
+ * @date 2026/10/19 08:40
+ * @Description 批次内合并: 同 key 数据原地合并, batchSize 按合并后条数判断, 不能与 dropOldest 同时使用
+ * @Version V1.0
+ */
+
+class CoalescingBatchRequestTest {
+
+    @Test
+    void sameKeyItemsAreMergedInFirstSeenOrder() {
+        CoalescingBatchRequest<String> request = new CoalescingBatchRequest<>(item -> item.substring(0, 1), (a, b) -> a + b.substring(1));
+        for (String item : Arrays.asList("a1", "b1", "a2", "c1", "a3")) {
+            request.add(item);
+        }
+        assertEquals(Arrays.asList("a123", "b1", "c1"), request.getBatchData());
+        assertEquals(3, request.numberOfActions());
+        assertEquals(5, request.addedItems());
+        assertEquals(5D / 3D, request.coalescingRatio(), 1e-9D);
+
+        request.recycle();
+        assertEquals(1D, request.coalescingRatio());
+        request.add("a9");
+        assertEquals(Arrays.asList("a9"), request.getBatchData());
+    }
+
+    @Test
+    void batchSizeCountsMergedItems() throws Exception {
+        List<List<String>> batches = new ArrayList<>();
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                batches.add(new ArrayList<>(request.getBatchData()));
+                return true;
+            }
+        };
+        // 后写覆盖
+        BatchProcessor<String> processor = BatchProcessor.builder(handler).setBatchSize(2)
+                .setCoalescing(item -> ((String) item).substring(0, 1), (a, b) -> b).setJmxEnabled(false).build();
+        for (String item : Arrays.asList("a1", "a2", "a3", "b1", "c1", "c2")) {
+            processor.add(item);
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(Arrays.asList("a3", "b1"), Arrays.asList("c2")), batches);
+    }
+
+    @Test
+    void dropOldestIsRejectedWithCoalescing() {
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                return true;
+            }
+        };
+        assertThrows(IllegalArgumentException.class, () -> BatchProcessor.builder(handler).setMaxBufferedItems(10)
+                .setBackpressurePolicy(BatchBackpressurePolicy.dropOldest()).setCoalescing(item -> item, (a, b) -> b).setJmxEnabled(false).build());
+    }
+}
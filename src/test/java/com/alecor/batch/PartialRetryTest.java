@@ -0,0 +1,116 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.Listener.BatchResponse;
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.thread.BatchBackoffPolicy;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName PartialRetryTest
+ * @date 2026/10/19 10:20
+ * @Description 单条数据失败: markFailed 标记的数据才会重试, 重试用尽后通过 BatchResponse 取得失败的数据
+ * @Version V1.0
+ */
+
+class PartialRetryTest {
+
+    private final List<List<String>> attempts = Collections.synchronizedList(new ArrayList<>());
+
+    private final List<BatchResponse> responses = Collections.synchronizedList(new ArrayList<>());
+
+    private final BatchProcessor.Listener<String> listener = new BatchProcessor.Listener<String>() {
+        @Override
+        public void beforBatch(BatchRequest<String> t) {
+        }
+
+        @Override
+        public void afterBatch(BatchResponse response) {
+            responses.add(response);
+        }
+
+        @Override
+        public void afterBatch(Exception exception, BatchResponse response) {
+        }
+    };
+
+    @Test
+    void onlyMarkedItemsAreRetried() throws Exception {
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                List<String> data = request.getBatchData();
+                attempts.add(new ArrayList<>(data));
+                // b 失败一次, d 失败两次
+                if (attempts.size() == 1) {
+                    request.markFailed(data.indexOf("b"));
+                    request.markFailed(data.indexOf("d"));
+                } else if (attempts.size() == 2) {
+                    request.markFailed(data.indexOf("d"));
+                }
+                return true;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(this.listener, handler).setBatchSize(5)
+                .setBackoffPolicy(BatchBackoffPolicy.exponentialBackoff(1L, 3)).setJmxEnabled(false).build();
+        for (String item : Arrays.asList("a", "b", "c", "d", "e")) {
+            processor.add(item);
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c", "d", "e"), Arrays.asList("b", "d"), Arrays.asList("d")), this.attempts);
+        assertEquals(1, this.responses.size());
+        assertFalse(this.responses.get(0).hasSuccess());
+        assertTrue(this.responses.get(0).getFailedItems().isEmpty());
+    }
+
+    @Test
+    void exhaustedRetryReportsRemainingFailedItems() throws Exception {
+        BatchHandler<String> handler = new BatchHandler<String>() {
+            @Override
+            public boolean executeBatch(BatchRequest<String> request) {
+                List<String> data = request.getBatchData();
+                attempts.add(new ArrayList<>(data));
+                request.markFailed(data.indexOf("c"));
+                return true;
+            }
+        };
+        BatchProcessor<String> processor = BatchProcessor.builder(this.listener, handler).setBatchSize(3)
+                .setBackoffPolicy(BatchBackoffPolicy.exponentialBackoff(1L, 1)).setJmxEnabled(false).build();
+        processor.add("a").add("b").add("c");
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b", "c"), Arrays.asList("c")), this.attempts);
+        assertEquals(1, this.responses.size());
+        BatchResponse response = this.responses.get(0);
+        // hasSuccess 为 true 表示失败
+        assertTrue(response.hasSuccess());
+        assertEquals(Arrays.asList("c"), response.getBatchRequest().getBatchData());
+        BitSet failed = new BitSet();
+        failed.set(0);
+        assertEquals(failed, response.getFailedItems());
+    }
+
+    @Test
+    void markFailedChecksIndex() {
+        BatchRequest<String> request = new BatchRequest<>(2);
+        request.add("a");
+        assertThrows(IndexOutOfBoundsException.class, () -> request.markFailed(1));
+        request.markFailed(0);
+        assertTrue(request.hasFailedItems());
+        assertEquals(Arrays.asList("a"), request.failedRequest().getBatchData());
+    }
+}
@@ -0,0 +1,111 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.DoubleBatchHandler;
+import com.alecor.batch.handle.IntBatchHandler;
+import com.alecor.batch.handle.LongBatchHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName PrimitiveBatchRequestTest
+ * @date 2026/10/19 09:40
+ * @Description 原始类型批次: addInt/addLong/addDouble 写入的数据按原值交给对应的处理器
+ * @Version V1.0
+ */
+
+class PrimitiveBatchRequestTest {
+
+    @Test
+    void requestGrowsAndExposesBoxedView() {
+        IntBatchRequest request = new IntBatchRequest(2);
+        for (int i = 0; i < 5; i++) {
+            request.addInt(i * 10);
+        }
+        assertEquals(5, request.numberOfActions());
+        assertEquals(40, request.getInt(4));
+        assertEquals(Arrays.asList(0, 10, 20, 30, 40), request.getBatchData());
+        assertArrayEquals(new int[]{0, 10, 20, 30, 40}, Arrays.copyOf(request.values(), request.numberOfActions()));
+    }
+
+    @Test
+    void intValuesAreDeliveredInBatches() throws Exception {
+        List<int[]> batches = Collections.synchronizedList(new ArrayList<>());
+        IntBatchHandler handler = new IntBatchHandler() {
+            @Override
+            public boolean executeBatch(int[] values, int length) {
+                batches.add(Arrays.copyOf(values, length));
+                return true;
+            }
+        };
+        BatchProcessor<Integer> processor = BatchProcessor.builder(handler).setBatchSize(4).setJmxEnabled(false).build();
+        for (int i = 0; i < 9; i++) {
+            processor.addInt(i);
+        }
+        // 装箱写入同样可用
+        processor.add(9);
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(3, batches.size());
+        assertArrayEquals(new int[]{0, 1, 2, 3}, batches.get(0));
+        assertArrayEquals(new int[]{4, 5, 6, 7}, batches.get(1));
+        assertArrayEquals(new int[]{8, 9}, batches.get(2));
+    }
+
+    @Test
+    void longAndDoubleValuesKeepTheirBits() throws Exception {
+        List<long[]> longs = Collections.synchronizedList(new ArrayList<>());
+        LongBatchHandler longHandler = new LongBatchHandler() {
+            @Override
+            public boolean executeBatch(long[] values, int length) {
+                longs.add(Arrays.copyOf(values, length));
+                return true;
+            }
+        };
+        BatchProcessor<Long> longProcessor = BatchProcessor.builder(longHandler).setBatchSize(3).setJmxEnabled(false).build();
+        longProcessor.addLong(Long.MIN_VALUE).addLong(0L).addLong(Long.MAX_VALUE);
+        assertTrue(longProcessor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(1, longs.size());
+        assertArrayEquals(new long[]{Long.MIN_VALUE, 0L, Long.MAX_VALUE}, longs.get(0));
+
+        List<double[]> doubles = Collections.synchronizedList(new ArrayList<>());
+        DoubleBatchHandler doubleHandler = new DoubleBatchHandler() {
+            @Override
+            public boolean executeBatch(double[] values, int length) {
+                doubles.add(Arrays.copyOf(values, length));
+                return true;
+            }
+        };
+        BatchProcessor<Double> doubleProcessor = BatchProcessor.builder(doubleHandler).setBatchSize(3).setJmxEnabled(false).build();
+        doubleProcessor.addDouble(-0.0D).addDouble(Double.NaN).addDouble(1.5D);
+        assertTrue(doubleProcessor.awaitClose(10L, TimeUnit.SECONDS));
+        assertEquals(1, doubles.size());
+        // assertArrayEquals 按 doubleToLongBits 比较, 区分 -0.0 与 0.0
+        assertArrayEquals(new double[]{-0.0D, Double.NaN, 1.5D}, doubles.get(0));
+    }
+
+    @Test
+    void mismatchedPrimitiveTypeIsRejected() throws Exception {
+        IntBatchHandler handler = new IntBatchHandler() {
+            @Override
+            public boolean executeBatch(int[] values, int length) {
+                return true;
+            }
+        };
+        BatchProcessor<Integer> processor = BatchProcessor.builder(handler).setJmxEnabled(false).build();
+        assertThrows(IllegalStateException.class, () -> processor.addLong(1L));
+        assertThrows(IllegalStateException.class, () -> processor.addDouble(1D));
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,72 @@
+package com.alecor.batch;
+
+
+import com.alecor.batch.handle.BatchHandler;
+import com.alecor.batch.thread.VirtualThreads;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName VirtualThreadDispatchTest
+ * @date 2026/10/19 10:10
+ * @Description 虚拟线程分发: Java 21 上批次在虚拟线程上执行, 低版本退回内部分发线程池, 数据都能处理完成
+ * @Version V1.0
+ */
+
+class VirtualThreadDispatchTest {
+
+    @Test
+    void everyItemIsHandledOffTheCallerThread() throws Exception {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        Queue<Integer> handled = new ConcurrentLinkedQueue<>();
+        BatchHandler<Integer> handler = new BatchHandler<Integer>() {
+            @Override
+            public boolean executeBatch(BatchRequest<Integer> request) throws Exception {
+                threads.add(Thread.currentThread());
+                // 模拟阻塞 IO
+                Thread.sleep(1L);
+                handled.addAll(request.getBatchData());
+                return true;
+            }
+        };
+        BatchProcessor<Integer> processor = BatchProcessor.builder(handler).setBatchSize(10).setConcurrentRequests(8)
+                .setVirtualThreads(true).setJmxEnabled(false).build();
+        for (int i = 0; i < 1_000; i++) {
+            processor.add(i);
+        }
+        assertTrue(processor.awaitClose(10L, TimeUnit.SECONDS));
+
+        assertEquals(1_000, handled.size());
+        assertEquals(1_000, new HashSet<>(handled).size());
+        assertFalse(threads.contains(Thread.currentThread()));
+        if (VirtualThreads.isSupported()) {
+            Method isVirtual = Thread.class.getMethod("isVirtual");
+            for (Thread thread : threads) {
+                assertTrue((Boolean) isVirtual.invoke(thread), thread::getName);
+            }
+        } else {
+            // 退回内部分发线程池, 线程数等于 concurrentRequests
+            assertTrue(threads.size() <= 8, () -> threads.size() + " dispatch threads");
+        }
+    }
+
+    @Test
+    void unsupportedRuntimeCannotCreateVirtualThreads() {
+        if (!VirtualThreads.isSupported()) {
+            assertThrows(UnsupportedOperationException.class, () -> VirtualThreads.newVirtualThreadPerTaskExecutor("test"));
+        }
+    }
+}
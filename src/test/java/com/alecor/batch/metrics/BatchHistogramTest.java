@@ -0,0 +1,106 @@
+package com.alecor.batch.metrics;
+
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName BatchHistogramTest
+ * @date 2026/10/19 07:50
+ * @Description 对数分桶直方图的分桶边界、相对误差及分位数计算
+ * @Version V1.0
+ */
+
+class BatchHistogramTest {
+
+    @Test
+    void bucketsCoverEveryValueWithinRelativeError() {
+        SplittableRandom random = new SplittableRandom(42L);
+        for (int i = 0; i < 100_000; i++) {
+            long value = i < 1 << 16 ? i : random.nextLong(Long.MAX_VALUE);
+            int index = BatchHistogram.index(value);
+            long highest = BatchHistogram.highestEquivalentValue(index);
+            assertTrue(highest >= value, () -> value + " above bucket " + index);
+            // 上一个桶的上界小于该值, 即值落在唯一的桶内
+            assertTrue(index == 0 || BatchHistogram.highestEquivalentValue(index - 1) < value, () -> value + " below bucket " + index);
+            assertTrue(highest - value <= value / 16, () -> value + " recorded as " + highest);
+        }
+        assertEquals(Long.MAX_VALUE, BatchHistogram.highestEquivalentValue(BatchHistogram.index(Long.MAX_VALUE)));
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        BatchHistogram histogram = new BatchHistogram();
+        for (long value = 0; value < 16; value++) {
+            histogram.record(value);
+        }
+        // 负数按0记录
+        histogram.record(-5L);
+        BatchHistogram.Snapshot snapshot = histogram.snapshot();
+
+        assertEquals(17L, snapshot.getCount());
+        assertEquals(0L, snapshot.getValueAtQuantile(0D));
+        assertEquals(7L, snapshot.getP50());
+        assertEquals(15L, snapshot.getMax());
+        assertEquals(120D / 17D, snapshot.getMean(), 1e-9D);
+    }
+
+    @Test
+    void quantilesReturnBucketUpperBoundCappedAtMax() {
+        BatchHistogram histogram = new BatchHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        BatchHistogram.Snapshot snapshot = histogram.snapshot();
+
+        // 第500个值所在桶为 [496, 511]
+        assertEquals(511L, snapshot.getP50());
+        assertEquals(BatchHistogram.highestEquivalentValue(BatchHistogram.index(990L)), snapshot.getP99());
+        assertEquals(1000L, snapshot.getP999());
+        assertEquals(1000L, snapshot.getValueAtQuantile(1D));
+        assertEquals(500.5D, snapshot.getMean(), 1e-9D);
+
+        BatchHistogram.Summary summary = snapshot.summary();
+        assertEquals(snapshot.getCount(), summary.getCount());
+        assertEquals(snapshot.getP50(), summary.getP50());
+        assertEquals(snapshot.getP99(), summary.getP99());
+        assertEquals(snapshot.getMax(), summary.getMax());
+    }
+
+    @Test
+    void emptySnapshotIsZero() {
+        BatchHistogram.Snapshot snapshot = new BatchHistogram().snapshot();
+        assertEquals(0L, snapshot.getCount());
+        assertEquals(0L, snapshot.getP99());
+        assertEquals(0D, snapshot.getMean());
+        assertEquals(0L, snapshot.getMax());
+    }
+
+    @Test
+    void concurrentRecordsAreNotLost() throws Exception {
+        BatchHistogram histogram = new BatchHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (long value = 0; value < 10_000; value++) {
+                    histogram.record(value);
+                }
+            });
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10L, TimeUnit.SECONDS));
+
+        BatchHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(40_000L, snapshot.getCount());
+        assertEquals(9_999L, snapshot.getMax());
+        assertEquals(4_999.5D, snapshot.getMean(), 1e-9D);
+    }
+}
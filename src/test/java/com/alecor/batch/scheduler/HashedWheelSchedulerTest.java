@@ -0,0 +1,102 @@
+package com.alecor.batch.scheduler;
+
+
+import com.alecor.batch.thread.BatchRejectedExecutionException;
+import com.alecor.batch.thread.BatchScheduler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * @author yuan_kf
+ * @ClassName HashedWheelSchedulerTest
+ * @date 2026/10/19 10:30
+ * @Description 时间轮: 任务不早于延迟执行, 超过一圈的延迟按剩余圈数执行, 取消后不再执行
+ * @Version V1.0
+ */
+
+class HashedWheelSchedulerTest {
+
+    @Test
+    void tasksRunInDeadlineOrderNoEarlierThanTheirDelay() throws Exception {
+        try (HashedWheelScheduler scheduler = new HashedWheelScheduler(5L, TimeUnit.MILLISECONDS, 64, null)) {
+            List<Long> order = Collections.synchronizedList(new ArrayList<>());
+            AtomicBoolean early = new AtomicBoolean();
+            CountDownLatch done = new CountDownLatch(3);
+            long start = System.nanoTime();
+            for (long delay : new long[]{60L, 20L, 40L}) {
+                scheduler.schedule(() -> {
+                    if (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(delay)) {
+                        early.set(true);
+                    }
+                    order.add(delay);
+                    done.countDown();
+                }, delay, "same");
+            }
+            assertEquals(3L, scheduler.pendingTimers());
+            assertTrue(done.await(5L, TimeUnit.SECONDS));
+
+            assertEquals(Arrays.asList(20L, 40L, 60L), order);
+            assertFalse(early.get());
+            assertEquals(0L, scheduler.pendingTimers());
+        }
+    }
+
+    @Test
+    void delaysLongerThanOneRotationWaitForRemainingRounds() throws Exception {
+        // 一圈 4 * 5 = 20 毫秒
+        try (HashedWheelScheduler scheduler = new HashedWheelScheduler(5L, TimeUnit.MILLISECONDS, 4, null)) {
+            AtomicLong elapsed = new AtomicLong();
+            CountDownLatch done = new CountDownLatch(1);
+            long start = System.nanoTime();
+            scheduler.schedule(() -> {
+                elapsed.set(System.nanoTime() - start);
+                done.countDown();
+            }, 70L, "same");
+            assertTrue(done.await(5L, TimeUnit.SECONDS));
+
+            assertTrue(elapsed.get() >= TimeUnit.MILLISECONDS.toNanos(70L), () -> elapsed.get() + "ns");
+        }
+    }
+
+    @Test
+    void cancelledTaskNeverRuns() throws Exception {
+        try (HashedWheelScheduler scheduler = new HashedWheelScheduler(5L, TimeUnit.MILLISECONDS, 64, null)) {
+            AtomicBoolean ran = new AtomicBoolean();
+            BatchScheduler.ScheduledCancellable cancellable = scheduler.schedule(() -> ran.set(true), 30L, "same");
+            assertTrue(cancellable.cancel());
+            assertTrue(cancellable.isCancelled());
+            assertFalse(cancellable.cancel());
+            assertEquals(0L, scheduler.pendingTimers());
+
+            // 失败的任务不影响之后的任务
+            CountDownLatch done = new CountDownLatch(1);
+            scheduler.schedule(() -> {
+                throw new IllegalStateException("boom");
+            }, 10L, "same");
+            scheduler.schedule(done::countDown, 60L, "same");
+            assertTrue(done.await(5L, TimeUnit.SECONDS));
+            assertFalse(ran.get());
+        }
+    }
+
+    @Test
+    void closedSchedulerRejectsTasks() {
+        HashedWheelScheduler scheduler = new HashedWheelScheduler();
+        scheduler.close();
+        assertThrows(BatchRejectedExecutionException.class, () -> scheduler.schedule(() -> { }, 10L, "same"));
+        assertThrows(IllegalStateException.class, () -> HashedWheelScheduler.shared().close());
+    }
+}